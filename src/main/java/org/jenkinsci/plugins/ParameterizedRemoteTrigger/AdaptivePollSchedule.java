@@ -0,0 +1,82 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import hudson.Extension;
+
+import java.util.Random;
+
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Polls quickly at first and then backs off exponentially up to a maximum interval, so that short remote builds are
+ * noticed quickly and long ones aren't polled needlessly often.
+ * 
+ * Every delay is randomised a little, so that builds which were started together don't keep polling the remote server
+ * at the same moment. Once a remote build is running, the first poll is scheduled for when the remote server expects
+ * it to finish (based on the duration of its previous builds), but no later than a few maximum intervals away: the
+ * estimate may be hours, and it is wrong for builds that fail early.
+ */
+public class AdaptivePollSchedule extends PollSchedule {
+
+    public static final int     DEFAULT_INITIAL_INTERVAL = 2;
+    public static final int     DEFAULT_MAX_INTERVAL     = 60;
+
+    // each delay is randomly moved up or down by up to this fraction, and by no more than MAX_JITTER milliseconds
+    private static final double JITTER                   = 0.2;
+    private static final long   MAX_JITTER               = 5000;
+    // the first poll of a running build waits for its expected duration, but for no more than this many maximum
+    // intervals
+    private static final int    MAX_EXPECTED_INTERVALS   = 5;
+    private static final Random RANDOM                   = new Random();
+
+    private final int           initialInterval;
+    private final int           maxInterval;
+
+    @DataBoundConstructor
+    public AdaptivePollSchedule(int initialInterval, int maxInterval) {
+        this.initialInterval = initialInterval;
+        this.maxInterval = maxInterval;
+    }
+
+    public int getInitialInterval() {
+        if (this.initialInterval < 1) {
+            return DEFAULT_INITIAL_INTERVAL;
+        }
+        return this.initialInterval;
+    }
+
+    public int getMaxInterval() {
+        if (this.maxInterval < getInitialInterval()) {
+            return Math.max(DEFAULT_MAX_INTERVAL, getInitialInterval());
+        }
+        return this.maxInterval;
+    }
+
+    @Override
+    public long getDelay(Phase phase, int attempt, int pollInterval, long estimatedRemaining) {
+        long delay;
+        long maxDelay = getMaxInterval() * 1000L;
+
+        if (phase == Phase.RUNNING && attempt == 0 && estimatedRemaining > 0) {
+            // no point in asking before the build is expected to be done, as long as that is not too far off
+            delay = Math.min(estimatedRemaining, MAX_EXPECTED_INTERVALS * maxDelay);
+        } else {
+            // initialInterval * 2^attempt, without overflowing for long waits
+            delay = getInitialInterval() * 1000L;
+            for (int i = 0; i < attempt && delay < maxDelay; i++) {
+                delay *= 2;
+            }
+            delay = Math.min(delay, maxDelay);
+        }
+
+        long jitter = Math.min((long) (delay * JITTER), MAX_JITTER);
+        return Math.max(1000L, delay - jitter + (long) (2 * jitter * RANDOM.nextDouble()));
+    }
+
+    @Extension
+    public static class DescriptorImpl extends PollScheduleDescriptor {
+        @Override
+        public String getDisplayName() {
+            return "Adaptive (exponential back-off with jitter)";
+        }
+    }
+}
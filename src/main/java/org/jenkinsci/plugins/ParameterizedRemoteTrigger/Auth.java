@@ -110,7 +110,7 @@ public class Auth extends AbstractDescribableImpl<Auth> {
      * Looks up the credentialsID attached to this object in the Global Credentials plugin datastore
      * @return the matched credentials
      */
-    private UsernamePasswordCredentials getCredentials() {
+    UsernamePasswordCredentials getCredentials() {
         String credetialId = this.getCreds();
         StandardUsernameCredentials matchedCredentials = null;
         Item item = null;
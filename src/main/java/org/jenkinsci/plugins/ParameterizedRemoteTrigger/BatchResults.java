@@ -0,0 +1,180 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import hudson.FilePath;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The result file of a batch: one line per row of the parameter file, with the result of the remote build triggered
+ * for it ("row,result,build").
+ *
+ * Rows whose remote build was triggered (and, when blocking, succeeded) are acknowledged. When a batch is run again
+ * with the result file of an earlier run still in place, the acknowledged rows are kept and skipped, and only the
+ * others are triggered again.
+ *
+ * While the batch runs, the results are written to a ".part" file next to the result file, which takes the place of
+ * the result file once the batch is done. The result file is never truncated, and every line of the ".part" file is
+ * flushed as soon as it is written, so that a run which was aborted (or crashed) halfway loses no acknowledged row:
+ * the next run starts from the ".part" file it left behind.
+ */
+public class BatchResults implements Closeable {
+
+    public static final String TRIGGERED = "TRIGGERED";
+    public static final String SUCCESS   = "SUCCESS";
+
+    private static final String HEADER   = "row,result,build";
+
+    private final BitSet       acknowledged;
+    private final FilePath     file;
+    private final FilePath     partFile;
+    private final Writer       writer;
+    private int                acknowledgedCount;
+
+    /**
+     * Reads the acknowledged rows from the result file, and starts writing the results anew with just those.
+     *
+     * @param file
+     *            The result file
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public BatchResults(FilePath file) throws IOException, InterruptedException {
+        this.file = file;
+        this.partFile = file.getParent().child(file.getName() + ".part");
+
+        // an earlier run that was aborted halfway left its results in the ".part" file. It takes the place of the
+        // result file, unless it was cut short before it held every acknowledged row of the result file (in which
+        // case it holds nothing else either, as results are only added after those)
+        if (this.partFile.exists()) {
+            BitSet missing = readAcknowledged(file, null);
+            missing.andNot(readAcknowledged(this.partFile, null));
+            if (missing.isEmpty()) {
+                replaceResultFile();
+            } else {
+                this.partFile.delete();
+            }
+        }
+
+        // only the acknowledged lines are kept; there are as many of them as rows, but each is just a few bytes
+        List<String> kept = new ArrayList<String>();
+        this.acknowledged = readAcknowledged(file, kept);
+        this.acknowledgedCount = kept.size();
+
+        this.writer = new OutputStreamWriter(this.partFile.write(), "UTF-8");
+        this.writer.write(HEADER + "\n");
+        for (String line : kept) {
+            this.writer.write(line + "\n");
+        }
+        this.writer.flush();
+    }
+
+    /**
+     * @param results
+     *            A result file, which may not exist
+     * @param lines
+     *            Gets the line of each acknowledged row, if not null
+     * @return the acknowledged rows
+     */
+    private static BitSet readAcknowledged(FilePath results, List<String> lines) throws IOException,
+            InterruptedException {
+        BitSet rows = new BitSet();
+        if (!results.exists()) {
+            return rows;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(results.read(), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",");
+                if (fields.length < 2 || !isAcknowledged(fields[1])) {
+                    continue;
+                }
+                try {
+                    int row = Integer.parseInt(fields[0]);
+                    if (!rows.get(row)) {
+                        rows.set(row);
+                        if (lines != null) {
+                            lines.add(line);
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    // the header, or a line that was cut short
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return rows;
+    }
+
+    private static boolean isAcknowledged(String result) {
+        return result.equals(TRIGGERED) || result.equals(SUCCESS);
+    }
+
+    /**
+     * @param row
+     *            Row number, starting at 1
+     * @return true if the row was acknowledged by an earlier run, and should not be triggered again
+     */
+    public synchronized boolean isAcknowledged(int row) {
+        return this.acknowledged.get(row);
+    }
+
+    /**
+     * @return how many rows were acknowledged by an earlier run
+     */
+    public synchronized int getAcknowledgedCount() {
+        return this.acknowledgedCount;
+    }
+
+    /**
+     * Records the result of a row.
+     *
+     * @param row
+     *            Row number, starting at 1
+     * @param result
+     *            {@link #TRIGGERED}, the result of the remote build, or anything else if it failed
+     * @param buildNumber
+     *            Number of the remote build, or -1 if it was never triggered
+     * @throws IOException
+     */
+    public synchronized void add(int row, String result, int buildNumber) throws IOException {
+        this.writer.write(row + "," + result + "," + (buildNumber < 0 ? "" : Integer.toString(buildNumber)) + "\n");
+        this.writer.flush();
+    }
+
+    /**
+     * Replaces the result file with the results written so far.
+     *
+     * @throws IOException
+     */
+    public synchronized void close() throws IOException {
+        this.writer.close();
+        try {
+            replaceResultFile();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while replacing " + this.file.getRemote());
+        }
+    }
+
+    private void replaceResultFile() throws IOException, InterruptedException {
+        try {
+            this.partFile.renameTo(this.file);
+        } catch (IOException e) {
+            // some platforms don't rename over an existing file. Nothing is lost if we stop in between, as the next
+            // run starts from the ".part" file
+            this.file.delete();
+            this.partFile.renameTo(this.file);
+        }
+    }
+}
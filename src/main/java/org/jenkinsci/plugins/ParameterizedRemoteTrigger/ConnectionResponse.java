@@ -0,0 +1,47 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.sf.json.JSONObject;
+
+/**
+ * What came back from a single HTTP call to a remote Jenkins server: the response code, the response headers and the
+ * (parsed) response body.
+ */
+public class ConnectionResponse {
+
+    private final int                 responseCode;
+    private final Map<String, String> headers;
+    private final JSONObject          body;
+
+    public ConnectionResponse(int responseCode, Map<String, String> headers, JSONObject body) {
+        this.responseCode = responseCode;
+        // header names are case-insensitive
+        Map<String, String> headerMap = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        headerMap.putAll(headers);
+        this.headers = Collections.unmodifiableMap(headerMap);
+        this.body = body;
+    }
+
+    public int getResponseCode() {
+        return this.responseCode;
+    }
+
+    /**
+     * @param name
+     *            header name (case-insensitive)
+     * @return the header value, or null if the remote server did not send it
+     */
+    public String getHeader(String name) {
+        return this.headers.get(name);
+    }
+
+    /**
+     * @return the parsed JSON body, or null if the remote server returned an empty body
+     */
+    public JSONObject getBody() {
+        return this.body;
+    }
+}
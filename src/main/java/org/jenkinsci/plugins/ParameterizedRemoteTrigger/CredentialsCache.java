@@ -0,0 +1,83 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import hudson.util.Secret;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.cloudbees.plugins.credentials.common.UsernamePasswordCredentials;
+
+/**
+ * Credentials looked up from the Credentials plugin, by the remote server and job-level override they are used for.
+ *
+ * Looking credentials up means going through every credential in the store, which is too expensive to do for every
+ * call to a remote server. The cache is cleared whenever the credentials, the remote server configuration or a job
+ * configuration is saved, so that changes are picked up by the next build step that runs.
+ */
+public final class CredentialsCache {
+
+    private static final ConcurrentMap<String, UsernamePasswordCredentials> CREDENTIALS = new ConcurrentHashMap<String, UsernamePasswordCredentials>();
+
+    private CredentialsCache() {
+    }
+
+    /**
+     * @param remoteServer
+     *            Server the credentials are used for
+     * @param overrideAuth
+     *            Whether these are the job-level credentials rather than those of the remote server
+     * @param auth
+     *            Credentials as configured
+     * @return "username:password" (or ":" if there are none), before any macros in it are expanded
+     * @throws IOException
+     *             if the configured credentials don't exist (any more)
+     */
+    public static String getUsernameTokenConcat(RemoteJenkinsServer remoteServer, boolean overrideAuth, Auth auth)
+            throws IOException {
+        if (auth.getAuthType() == null || !auth.getAuthType().equals(auth.CREDENTIALS_PLUGIN)) {
+            // nothing to look up
+            return auth.getUsername() + ":" + auth.getPassword();
+        }
+
+        String key = remoteServer.getDisplayName() + "\n" + overrideAuth + "\n" + auth.getCreds();
+        UsernamePasswordCredentials credentials = CREDENTIALS.get(key);
+        if (credentials == null) {
+            credentials = auth.getCredentials();
+            if (credentials == null) {
+                throw new IOException("No username/password credentials with ID [" + auth.getCreds() + "] were found.");
+            }
+            CREDENTIALS.put(key, credentials);
+        }
+
+        return credentials.getUsername() + ":" + Secret.toString(credentials.getPassword());
+    }
+
+    /**
+     * Forgets every cached credential.
+     */
+    public static void invalidate() {
+        CREDENTIALS.clear();
+    }
+
+    /**
+     * Clears the cache whenever something that the cached credentials were looked up from is saved.
+     */
+    @Extension
+    public static class Invalidator extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            // credentials stores, the remote server configuration, and jobs (for their job-level credentials). Builds
+            // are saved all the time, but never change credentials
+            if (o instanceof Item || o instanceof RemoteBuildConfiguration.DescriptorImpl
+                    || o.getClass().getName().startsWith("com.cloudbees.plugins.credentials.")) {
+                invalidate();
+            }
+        }
+    }
+}
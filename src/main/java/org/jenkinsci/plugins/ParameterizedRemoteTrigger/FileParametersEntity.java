@@ -0,0 +1,203 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import hudson.FilePath;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.http.Consts;
+import org.apache.http.entity.AbstractHttpEntity;
+
+/**
+ * The file parameters of a remote build, sent as a "multipart/form-data" request body, one part per file.
+ *
+ * The files are streamed from the workspace (through the remoting channel if it is on an agent) straight into the
+ * connection, through a buffer of a fixed size, so they are never held in memory on the controller. As the size of
+ * the body is not known up front, it is sent chunked. Progress is reported to the build log as the files are sent.
+ *
+ * The entity can be written any number of times (the files are read again each time), which lets failed calls be
+ * retried with it.
+ */
+public class FileParametersEntity extends AbstractHttpEntity {
+
+    private static final int             BUFFER_SIZE       = 64 * 1024;
+    // progress is reported every time this much more has been sent
+    private static final long            PROGRESS_INTERVAL = 10 * 1024 * 1024;
+    private static final byte[]          CRLF              = "\r\n".getBytes(Consts.ASCII);
+
+    private final Map<String, FilePath>  files;
+    private final String                 boundary;
+    private final PrintStream            logger;
+
+    /**
+     * @param files
+     *            Files to send, by the name of the file parameter of the remote job
+     * @param logger
+     *            Where to report the progress of the upload
+     */
+    public FileParametersEntity(Map<String, FilePath> files, PrintStream logger) {
+        this.files = Collections.unmodifiableMap(new LinkedHashMap<String, FilePath>(files));
+        this.boundary = "----RemoteTrigger" + UUID.randomUUID().toString().replace("-", "");
+        this.logger = logger;
+        setContentType("multipart/form-data; boundary=" + this.boundary);
+        setChunked(true);
+    }
+
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    public boolean isStreaming() {
+        return false;
+    }
+
+    /**
+     * @return -1, as the body is sent chunked
+     */
+    public long getContentLength() {
+        return -1;
+    }
+
+    /**
+     * HttpClient only ever calls {@link #writeTo}; this is for code that reads the body instead (to buffer or log it,
+     * say). The body is written into a pipe by a thread of its own, so the files still aren't held in memory. If
+     * writing it fails, reading the stream fails at its end.
+     */
+    public InputStream getContent() throws IOException {
+        Content content = new Content();
+        new NamingThreadFactory(new DaemonThreadFactory(), "File parameters " + this.boundary).newThread(content)
+                .start();
+        return content;
+    }
+
+    public void writeTo(OutputStream outstream) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        for (Map.Entry<String, FilePath> file : this.files.entrySet()) {
+            FilePath path = file.getValue();
+            long size = getLength(path);
+
+            write(outstream, "--" + this.boundary);
+            write(outstream, "Content-Disposition: form-data; name=\"" + escape(file.getKey()) + "\"; filename=\""
+                    + escape(path.getName()) + "\"");
+            write(outstream, "Content-Type: application/octet-stream");
+            outstream.write(CRLF);
+
+            this.logger.println("Uploading " + path.getRemote() + " as file parameter " + file.getKey() + " ("
+                    + toMegaBytes(size) + " MB).");
+
+            long sent = 0;
+            long nextReport = PROGRESS_INTERVAL;
+            InputStream in = path.read();
+            try {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    outstream.write(buffer, 0, read);
+                    sent += read;
+                    if (sent >= nextReport) {
+                        this.logger.println("  " + toMegaBytes(sent) + " of " + toMegaBytes(size) + " MB sent"
+                                + (size > 0 ? " (" + sent * 100 / size + "%)" : "") + ".");
+                        nextReport += PROGRESS_INTERVAL;
+                    }
+                }
+            } finally {
+                in.close();
+            }
+            outstream.write(CRLF);
+
+            this.logger.println("Uploaded " + path.getName() + " (" + toMegaBytes(sent) + " MB).");
+        }
+
+        write(outstream, "--" + this.boundary + "--");
+        outstream.flush();
+    }
+
+    private static long getLength(FilePath path) throws IOException {
+        try {
+            return path.length();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while uploading " + path.getRemote());
+        }
+    }
+
+    private static void write(OutputStream outstream, String line) throws IOException {
+        outstream.write(line.getBytes(Consts.UTF_8));
+        outstream.write(CRLF);
+    }
+
+    /**
+     * @return the name with anything that would end the quoted string it goes in escaped
+     */
+    private static String escape(String name) {
+        return name.replace("\"", "%22").replace("\r", "%0D").replace("\n", "%0A");
+    }
+
+    private static long toMegaBytes(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+
+    /**
+     * The body, as read from the pipe that {@link #run} writes it into.
+     */
+    private class Content extends FilterInputStream implements Runnable {
+        private final PipedOutputStream out;
+        // why writing the body failed, once the pipe has been closed
+        private volatile Throwable      failure;
+
+        Content() throws IOException {
+            super(new PipedInputStream(BUFFER_SIZE));
+            this.out = new PipedOutputStream((PipedInputStream) this.in);
+        }
+
+        public void run() {
+            try {
+                writeTo(this.out);
+            } catch (Throwable e) {
+                this.failure = e;
+            } finally {
+                try {
+                    this.out.close();
+                } catch (IOException e) {
+                    // the reader has closed its end already
+                }
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read == -1) {
+                checkFailure();
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read == -1) {
+                checkFailure();
+            }
+            return read;
+        }
+
+        private void checkFailure() throws IOException {
+            if (this.failure != null) {
+                throw new IOException("Could not read the file parameters: " + this.failure.getMessage(),
+                        this.failure);
+            }
+        }
+    }
+}
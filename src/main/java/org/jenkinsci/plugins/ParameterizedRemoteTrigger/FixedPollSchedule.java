@@ -0,0 +1,30 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import hudson.Extension;
+
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Polls every "pollInterval" seconds, no matter what we are waiting for.
+ */
+public class FixedPollSchedule extends PollSchedule {
+
+    @DataBoundConstructor
+    public FixedPollSchedule() {
+    }
+
+    @Override
+    public long getDelay(Phase phase, int attempt, int pollInterval, long estimatedRemaining) {
+        // pollInterval is in seconds
+        return pollInterval * 1000L;
+    }
+
+    // listed first, so that it stays the default
+    @Extension(ordinal = 100)
+    public static class DescriptorImpl extends PollScheduleDescriptor {
+        @Override
+        public String getDisplayName() {
+            return "Fixed poll interval";
+        }
+    }
+}
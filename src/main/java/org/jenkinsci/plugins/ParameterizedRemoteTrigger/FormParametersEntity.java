@@ -0,0 +1,85 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.http.Consts;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+/**
+ * The parameters of a remote build, sent as an "application/x-www-form-urlencoded" request body instead of in the
+ * URL, so that there is no limit to how many (or how large) they can be.
+ *
+ * Each parameter is encoded as it is written to the connection, so the encoded form is never built up in memory. The
+ * entity can be written any number of times, which lets failed calls be retried with it.
+ */
+public class FormParametersEntity extends AbstractHttpEntity {
+
+    private static final ContentType CONTENT_TYPE = ContentType.APPLICATION_FORM_URLENCODED.withCharset(Consts.UTF_8);
+
+    private final List<String>       parameters;
+
+    /**
+     * @param parameters
+     *            Parameters for the remote job, as "name=value" strings (not encoded yet)
+     */
+    public FormParametersEntity(List<String> parameters) {
+        this.parameters = Collections.unmodifiableList(new ArrayList<String>(parameters));
+        setContentType(CONTENT_TYPE.toString());
+    }
+
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    public boolean isStreaming() {
+        return false;
+    }
+
+    /**
+     * @return -1, as the length is only known once the parameters have been encoded, which happens while sending them
+     */
+    public long getContentLength() {
+        return -1;
+    }
+
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        writeTo(content);
+        return new ByteArrayInputStream(content.toByteArray());
+    }
+
+    public void writeTo(OutputStream outstream) throws IOException {
+        // encoded parameters are plain ASCII
+        Writer writer = new OutputStreamWriter(outstream, Consts.ASCII);
+        boolean first = true;
+        for (String parameter : this.parameters) {
+            if (!first) {
+                writer.write('&');
+            }
+            first = false;
+
+            // only the first "=" separates the name from the value, any others are part of the value
+            int separator = parameter.indexOf('=');
+            if (separator < 0) {
+                writer.write(URLEncoder.encode(parameter, "UTF-8"));
+            } else {
+                writer.write(URLEncoder.encode(parameter.substring(0, separator), "UTF-8"));
+                writer.write('=');
+                writer.write(URLEncoder.encode(parameter.substring(separator + 1), "UTF-8"));
+            }
+        }
+        // the stream belongs to the connection, so it is only flushed
+        writer.flush();
+    }
+}
@@ -0,0 +1,526 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+import net.sf.json.JsonConfig;
+
+/**
+ * Parses a JSON response straight off the wire, keeping only the fields that were asked for.
+ *
+ * The fields are given in the same syntax as the "tree" parameter of the Jenkins remote API (i.e.:
+ * "cancelled,executable[number]"), so the same string can be sent to the remote server and used to parse its answer.
+ * Everything else in the response is skipped while reading, without being turned into strings or objects, so memory
+ * use depends on the size of the selected fields rather than on the size of the response. This also holds for remote
+ * servers that ignore (or don't support) the "tree" parameter and send everything.
+ *
+ * The elements of an array can also be streamed to an {@link ElementHandler} one at a time (see "streaming"), rather
+ * than collected, for arrays that may be too long to keep (i.e.: the test cases of a test report).
+ */
+public class JsonProjection {
+
+    /**
+     * Receives the elements of a streamed array, one at a time, as they are parsed.
+     */
+    public interface ElementHandler {
+        /**
+         * Called before the response is parsed, which may happen more than once if a call is retried; anything
+         * received from an earlier attempt should be forgotten.
+         */
+        void reset();
+
+        /**
+         * @param element
+         *            the element, with only the fields of the projection
+         * @throws IOException
+         */
+        void element(Object element) throws IOException;
+    }
+
+    /**
+     * Keeps every field, i.e.: builds the full DOM.
+     */
+    public static final JsonProjection ALL = new JsonProjection(null);
+
+    // json-lib creates a new (and far from small) configuration for every value added without one. This one is only
+    // ever read, so all parsers share it
+    private static final JsonConfig    CONFIG = new JsonConfig();
+
+    // null means "everything below this point". Kept as arrays, so that a field name can be looked up while it is
+    // still in the parse buffer, without turning it into a string first
+    private final String[]         fieldNames;
+    private final JsonProjection[] fieldProjections;
+    // if set, arrays of this projection are passed to it element by element, rather than collected
+    private final ElementHandler   handler;
+    // every handler anywhere below this projection, if this is the root of a streaming projection
+    private final ElementHandler[] handlers;
+
+    private JsonProjection(String[] fieldNames, JsonProjection[] fieldProjections, ElementHandler handler,
+            ElementHandler[] handlers) {
+        this.fieldNames = fieldNames;
+        this.fieldProjections = fieldProjections;
+        this.handler = handler;
+        this.handlers = handlers;
+    }
+
+    private JsonProjection(Map<String, JsonProjection> fields) {
+        this.handler = null;
+        this.handlers = new ElementHandler[0];
+        if (fields == null) {
+            this.fieldNames = null;
+            this.fieldProjections = null;
+        } else {
+            this.fieldNames = fields.keySet().toArray(new String[fields.size()]);
+            this.fieldProjections = new JsonProjection[this.fieldNames.length];
+            for (int i = 0; i < this.fieldNames.length; i++) {
+                this.fieldProjections[i] = fields.get(this.fieldNames[i]);
+            }
+        }
+    }
+
+    /**
+     * @param tree
+     *            fields to keep, in "tree" parameter syntax. A null or empty tree keeps everything.
+     * @return the projection
+     */
+    public static JsonProjection fromTree(String tree) {
+        if (tree == null || tree.trim().length() == 0) {
+            return ALL;
+        }
+
+        int[] position = { 0 };
+        JsonProjection projection = parseTree(tree, position);
+        if (position[0] < tree.length()) {
+            throw new IllegalArgumentException("Unexpected '" + tree.charAt(position[0]) + "' in tree: " + tree);
+        }
+        return projection;
+    }
+
+    private static JsonProjection parseTree(String tree, int[] position) {
+        Map<String, JsonProjection> fields = new HashMap<String, JsonProjection>();
+
+        while (position[0] < tree.length()) {
+            int start = position[0];
+            while (position[0] < tree.length() && ",[]{}".indexOf(tree.charAt(position[0])) < 0) {
+                position[0]++;
+            }
+            String name = tree.substring(start, position[0]).trim();
+
+            JsonProjection child = ALL;
+            if (position[0] < tree.length() && tree.charAt(position[0]) == '[') {
+                position[0]++;
+                child = parseTree(tree, position);
+                if (position[0] >= tree.length() || tree.charAt(position[0]) != ']') {
+                    throw new IllegalArgumentException("Unmatched '[' in tree: " + tree);
+                }
+                position[0]++;
+            }
+            if (position[0] < tree.length() && tree.charAt(position[0]) == '{') {
+                // a range only limits how much the remote server sends, there is nothing to do for it here
+                int end = tree.indexOf('}', position[0]);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unmatched '{' in tree: " + tree);
+                }
+                position[0] = end + 1;
+            }
+
+            if (name.length() > 0) {
+                fields.put(name, child);
+            }
+
+            if (position[0] < tree.length() && tree.charAt(position[0]) == ',') {
+                position[0]++;
+            } else {
+                break;
+            }
+        }
+
+        return new JsonProjection(fields);
+    }
+
+    /**
+     * Streams the array at the given path to a handler, rather than collecting its elements. The array shows up in
+     * the parsed object as an empty array.
+     *
+     * @param handler
+     *            Receives the elements of the array
+     * @param path
+     *            Field names leading to the array (i.e.: "suites", "cases"); all of them must be part of the
+     *            projection
+     * @return a copy of this projection that streams the array
+     */
+    public JsonProjection streaming(ElementHandler handler, String... path) {
+        JsonProjection streaming = streaming(handler, path, 0);
+        List<ElementHandler> handlers = new ArrayList<ElementHandler>(Arrays.asList(this.handlers));
+        handlers.add(handler);
+        return new JsonProjection(streaming.fieldNames, streaming.fieldProjections, streaming.handler,
+                handlers.toArray(new ElementHandler[handlers.size()]));
+    }
+
+    private JsonProjection streaming(ElementHandler handler, String[] path, int depth) {
+        if (depth == path.length) {
+            return new JsonProjection(this.fieldNames, this.fieldProjections, handler, this.handlers);
+        }
+        int index = this.fieldNames == null ? -1 : indexOf(path[depth]);
+        if (index < 0) {
+            throw new IllegalArgumentException("The field " + path[depth] + " is not part of the projection.");
+        }
+        JsonProjection[] fieldProjections = this.fieldProjections.clone();
+        fieldProjections[index] = fieldProjections[index].streaming(handler, path, depth + 1);
+        return new JsonProjection(this.fieldNames, fieldProjections, this.handler, this.handlers);
+    }
+
+    /**
+     * Reads a JSON object, keeping only the fields of this projection.
+     *
+     * @param reader
+     *            the JSON text; it is read up to the end of the first value
+     * @return the parsed object, or null if the reader was empty
+     * @throws IOException
+     *             if reading fails, or the text is not a JSON object
+     */
+    public JSONObject parse(Reader reader) throws IOException {
+        for (ElementHandler handler : this.handlers) {
+            handler.reset();
+        }
+        Parser parser = new Parser(reader);
+
+        int c = parser.peek();
+        if (c < 0) {
+            return null;
+        }
+        if (c != '{') {
+            throw parser.error("Expected a JSON object");
+        }
+        return (JSONObject) parser.readValue(this);
+    }
+
+    /**
+     * @return the index of the field, or -1 if it isn't part of this projection
+     */
+    private int indexOf(CharSequence name) {
+        for (int i = 0; i < this.fieldNames.length; i++) {
+            if (this.fieldNames[i].contentEquals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Minimal pull parser over a fixed-size character buffer.
+     */
+    private static class Parser {
+        private final Reader        reader;
+        private final char[]        buffer = new char[8192];
+        private int                 position;
+        private int                 limit;
+        private long                offset;
+        // re-used for every string and number that is kept
+        private final StringBuilder text   = new StringBuilder();
+
+        Parser(Reader reader) {
+            this.reader = reader;
+        }
+
+        private boolean fill() throws IOException {
+            if (this.position < this.limit) {
+                return true;
+            }
+            this.offset += this.limit;
+            this.position = 0;
+            this.limit = Math.max(0, this.reader.read(this.buffer));
+            return this.limit > 0;
+        }
+
+        /**
+         * @return the next non-whitespace character without consuming it, or -1 at the end of the input
+         */
+        int peek() throws IOException {
+            while (fill()) {
+                char c = this.buffer[this.position];
+                if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                    return c;
+                }
+                this.position++;
+            }
+            return -1;
+        }
+
+        private char next() throws IOException {
+            if (!fill()) {
+                throw error("Unexpected end of JSON");
+            }
+            return this.buffer[this.position++];
+        }
+
+        private void expect(char expected) throws IOException {
+            if (peek() != expected) {
+                throw error("Expected '" + expected + "'");
+            }
+            this.position++;
+        }
+
+        IOException error(String message) {
+            return new IOException(message + " at character " + (this.offset + this.position) + " of the response");
+        }
+
+        Object readValue(JsonProjection projection) throws IOException {
+            int c = peek();
+            switch (c) {
+            case '{':
+                return readObject(projection, new JSONObject());
+            case '[':
+                return readArray(projection, new JSONArray());
+            case '"':
+                this.position++;
+                return readString();
+            default:
+                return readLiteral();
+            }
+        }
+
+        /**
+         * Reads a field value into the object. json-lib copies every object or array that is added to another one,
+         * so those are added empty, and filled in where they ended up.
+         */
+        private void readField(JSONObject object, String name, JsonProjection projection) throws IOException {
+            int c = peek();
+            if (c == '{') {
+                object.element(name, new JSONObject(), CONFIG);
+                readObject(projection, object.getJSONObject(name));
+            } else if (c == '[') {
+                object.element(name, new JSONArray(), CONFIG);
+                readArray(projection, object.getJSONArray(name));
+            } else {
+                object.element(name, readValue(projection), CONFIG);
+            }
+        }
+
+        /**
+         * Same as "readField", for the next element of an array.
+         */
+        private void readElement(JSONArray array, JsonProjection projection) throws IOException {
+            int c = peek();
+            if (c == '{') {
+                array.add(new JSONObject(), CONFIG);
+                readObject(projection, array.getJSONObject(array.size() - 1));
+            } else if (c == '[') {
+                array.add(new JSONArray(), CONFIG);
+                readArray(projection, array.getJSONArray(array.size() - 1));
+            } else {
+                array.add(readValue(projection), CONFIG);
+            }
+        }
+
+        private JSONObject readObject(JsonProjection projection, JSONObject object) throws IOException {
+            expect('{');
+
+            if (peek() == '}') {
+                this.position++;
+                return object;
+            }
+            while (true) {
+                expect('"');
+                readText();
+                expect(':');
+
+                String name;
+                JsonProjection field;
+                if (projection.fieldNames == null) {
+                    name = this.text.toString();
+                    field = ALL;
+                } else {
+                    int index = projection.indexOf(this.text);
+                    name = index < 0 ? null : projection.fieldNames[index];
+                    field = index < 0 ? null : projection.fieldProjections[index];
+                }
+
+                if (field == null) {
+                    skipValue();
+                } else {
+                    try {
+                        readField(object, name, field);
+                    } catch (JSONException e) {
+                        throw error(e.getMessage());
+                    }
+                }
+
+                if (peek() == ',') {
+                    this.position++;
+                } else {
+                    expect('}');
+                    return object;
+                }
+            }
+        }
+
+        private JSONArray readArray(JsonProjection projection, JSONArray array) throws IOException {
+            expect('[');
+
+            if (peek() == ']') {
+                this.position++;
+                return array;
+            }
+            while (true) {
+                // the projection applies to every element of the array
+                if (projection.handler != null) {
+                    projection.handler.element(readValue(projection));
+                } else {
+                    readElement(array, projection);
+                }
+
+                if (peek() == ',') {
+                    this.position++;
+                } else {
+                    expect(']');
+                    return array;
+                }
+            }
+        }
+
+        /**
+         * Reads the rest of a string, after its opening quote.
+         */
+        private String readString() throws IOException {
+            readText();
+            return this.text.toString();
+        }
+
+        /**
+         * Reads the rest of a string, after its opening quote, into the text buffer.
+         */
+        private void readText() throws IOException {
+            this.text.setLength(0);
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return;
+                }
+                if (c == '\\') {
+                    c = next();
+                    switch (c) {
+                    case 'b':
+                        c = '\b';
+                        break;
+                    case 'f':
+                        c = '\f';
+                        break;
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'u':
+                        c = (char) Integer.parseInt(new String(new char[] { next(), next(), next(), next() }), 16);
+                        break;
+                    default:
+                        // '"', '\\' and '/' stand for themselves
+                        break;
+                    }
+                }
+                this.text.append(c);
+            }
+        }
+
+        private Object readLiteral() throws IOException {
+            this.text.setLength(0);
+            while (fill()) {
+                char c = this.buffer[this.position];
+                if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                    break;
+                }
+                this.text.append(c);
+                this.position++;
+            }
+
+            if (this.text.length() == 0) {
+                int c = peek();
+                throw error(c < 0 ? "Unexpected end of JSON" : "Unexpected '" + (char) c + "'");
+            }
+
+            String literal = this.text.toString();
+            if (literal.equals("true")) {
+                return Boolean.TRUE;
+            }
+            if (literal.equals("false")) {
+                return Boolean.FALSE;
+            }
+            if (literal.equals("null")) {
+                return JSONNull.getInstance();
+            }
+
+            try {
+                if (literal.indexOf('.') < 0 && literal.indexOf('e') < 0 && literal.indexOf('E') < 0) {
+                    long value = Long.parseLong(literal);
+                    if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                        return Integer.valueOf((int) value);
+                    }
+                    return Long.valueOf(value);
+                }
+                return Double.valueOf(literal);
+            } catch (NumberFormatException e) {
+                throw error("Unexpected '" + literal + "'");
+            }
+        }
+
+        /**
+         * Skips over a value without keeping any of it.
+         */
+        private void skipValue() throws IOException {
+            int depth = 0;
+            do {
+                int c = peek();
+                if (c < 0) {
+                    throw error("Unexpected end of JSON");
+                }
+                this.position++;
+
+                if (c == '"') {
+                    while (true) {
+                        char s = next();
+                        if (s == '\\') {
+                            next();
+                        } else if (s == '"') {
+                            break;
+                        }
+                    }
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                } else if (depth == 0) {
+                    // a number or literal: skip to the end of it
+                    while (fill()) {
+                        char l = this.buffer[this.position];
+                        if (l == ',' || l == '}' || l == ']' || l == ' ' || l == '\t' || l == '\n' || l == '\r') {
+                            break;
+                        }
+                        this.position++;
+                    }
+                }
+
+                if (depth > 0) {
+                    // inside a container, separators and nested values are all skipped the same way
+                    int n = peek();
+                    if (n == ',' || n == ':') {
+                        this.position++;
+                    }
+                }
+            } while (depth > 0);
+        }
+    }
+}
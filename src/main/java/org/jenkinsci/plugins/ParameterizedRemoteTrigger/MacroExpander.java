@@ -0,0 +1,95 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import hudson.EnvVars;
+import hudson.Util;
+import hudson.model.AbstractBuild;
+import hudson.model.TaskListener;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jenkinsci.plugins.tokenmacro.MacroEvaluationException;
+import org.jenkinsci.plugins.tokenmacro.TokenMacro;
+
+/**
+ * Resolves the environment variables, build variables and token macros in the settings of one run of a
+ * {@link RemoteBuildConfiguration}: the job name, token, credentials and parameters of every remote job it triggers.
+ *
+ * The environment of the build is looked up once, on first use, and then shared by all of them (rather than looked
+ * up again for every string, as TokenMacro.expandAll does). The result for each string is remembered, so the same
+ * string is only ever expanded once per run. Strings without a "$" are returned as they are.
+ *
+ * It is safe to use from several threads at once, e.g.: when remote jobs are triggered in parallel.
+ */
+public class MacroExpander implements ParameterTemplate.Expander {
+
+    private final AbstractBuild<?, ?>       build;
+    private final TaskListener              listener;
+    private final Map<String, String>       expanded = new ConcurrentHashMap<String, String>();
+
+    // guarded by "this"
+    private EnvVars                         environment;
+    private Map<String, String>             buildVariables;
+
+    public MacroExpander(AbstractBuild<?, ?> build, TaskListener listener) {
+        this.build = build;
+        this.listener = listener;
+    }
+
+    /**
+     * Expands the string, falling back to the string as it is (and saying so in the build log) if it can't be.
+     *
+     * @param input
+     *            String to be tokenized/replaced
+     * @return String with resolved Environment variables
+     */
+    public String expand(String input) {
+        try {
+            return expandOrFail(input);
+        } catch (Exception e) {
+            this.listener.getLogger().println(
+                    String.format("Failed to resolve parameters in string %s due to following error:\n%s", input,
+                            e.getMessage()));
+        }
+        return input;
+    }
+
+    /**
+     * Same as "expand", but lets the caller decide what to do when the string can't be expanded.
+     *
+     * @param input
+     * @return String with resolved Environment variables
+     * @throws MacroEvaluationException
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public String expandOrFail(String input) throws MacroEvaluationException, IOException, InterruptedException {
+        if (input == null || input.indexOf('$') < 0) {
+            return input;
+        }
+        String result = this.expanded.get(input);
+        if (result == null) {
+            // the same steps as TokenMacro.expandAll, but with the environment of the build looked up only once
+            result = getEnvironment().expand(input);
+            result = Util.replaceMacro(result, getBuildVariables());
+            result = TokenMacro.expand(this.build, this.listener, result);
+            this.expanded.put(input, result);
+        }
+        return result;
+    }
+
+    private synchronized EnvVars getEnvironment() throws IOException, InterruptedException {
+        if (this.environment == null) {
+            this.environment = this.build.getEnvironment(this.listener);
+        }
+        return this.environment;
+    }
+
+    private synchronized Map<String, String> getBuildVariables() {
+        if (this.buildVariables == null) {
+            this.buildVariables = this.build.getBuildVariables();
+        }
+        return this.buildVariables;
+    }
+}
@@ -0,0 +1,179 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+
+/**
+ * Reads the rows of a batch parameter file one at a time, so that files with any number of rows can be used without
+ * holding them in memory.
+ *
+ * Two formats are understood:
+ * <ul>
+ * <li>CSV: the first line holds the parameter names, every line after it one set of values. Values may be quoted
+ * (with "" for a quote inside a quoted value), in which case they may also contain commas and line breaks.</li>
+ * <li>JSON lines (files ending in ".jsonl" or ".json"): every line holds one JSON object, whose properties are the
+ * parameters.</li>
+ * </ul>
+ * Empty lines are skipped in both.
+ */
+public class ParameterTable implements Closeable {
+
+    private final BufferedReader reader;
+    private final boolean        jsonLines;
+    private final List<String>   header;
+    private int                  rowNumber;
+    private int                  lineNumber;
+
+    /**
+     * @param in
+     *            Contents of the file, which is closed along with the table
+     * @param fileName
+     *            Name of the file, which tells its format
+     * @throws IOException
+     */
+    public ParameterTable(InputStream in, String fileName) throws IOException {
+        this.reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        String lowerCaseName = fileName.toLowerCase();
+        this.jsonLines = lowerCaseName.endsWith(".jsonl") || lowerCaseName.endsWith(".json");
+
+        if (this.jsonLines) {
+            this.header = null;
+        } else {
+            this.header = readRecord();
+            if (this.header == null) {
+                throw new IOException("The parameter file " + fileName + " is empty, it needs at least a header line.");
+            }
+        }
+    }
+
+    /**
+     * @return the parameters of the next row, as "name=value" strings, or null if there are no more rows
+     * @throws IOException
+     *             if the file can't be read, or the row isn't well-formed
+     */
+    public List<String> next() throws IOException {
+        List<String> parameters = new ArrayList<String>();
+
+        if (this.jsonLines) {
+            String line;
+            do {
+                line = readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.trim().length() == 0);
+
+            JSONObject row;
+            try {
+                row = JSONObject.fromObject(line);
+            } catch (JSONException e) {
+                throw new IOException("Line " + this.lineNumber + " of the parameter file is not a JSON object: "
+                        + e.getMessage());
+            }
+            for (Iterator<?> names = row.keys(); names.hasNext();) {
+                String name = (String) names.next();
+                parameters.add(name + "=" + row.get(name));
+            }
+        } else {
+            List<String> values = readRecord();
+            if (values == null) {
+                return null;
+            }
+            if (values.size() > this.header.size()) {
+                throw new IOException("Line " + this.lineNumber + " of the parameter file has " + values.size()
+                        + " values, but there are only " + this.header.size() + " parameter names.");
+            }
+            for (int i = 0; i < values.size(); i++) {
+                parameters.add(this.header.get(i) + "=" + values.get(i));
+            }
+        }
+
+        this.rowNumber++;
+        return parameters;
+    }
+
+    /**
+     * @return number of the row last returned by {@link #next()}, starting at 1 (header lines don't count)
+     */
+    public int getRowNumber() {
+        return this.rowNumber;
+    }
+
+    public void close() throws IOException {
+        this.reader.close();
+    }
+
+    private String readLine() throws IOException {
+        String line = this.reader.readLine();
+        if (line != null) {
+            this.lineNumber++;
+        }
+        return line;
+    }
+
+    /**
+     * @return the values of the next non-empty CSV record, or null at the end of the file
+     */
+    private List<String> readRecord() throws IOException {
+        String line;
+        do {
+            line = readLine();
+            if (line == null) {
+                return null;
+            }
+        } while (line.trim().length() == 0);
+
+        List<String> values = new ArrayList<String>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+
+        while (true) {
+            if (i == line.length()) {
+                if (!quoted) {
+                    break;
+                }
+                // a quoted value with a line break in it
+                line = readLine();
+                if (line == null) {
+                    throw new IOException("The parameter file ends inside a quoted value.");
+                }
+                value.append('\n');
+                i = 0;
+                continue;
+            }
+
+            char c = line.charAt(i++);
+            if (quoted) {
+                if (c == '"') {
+                    if (i < line.length() && line.charAt(i) == '"') {
+                        value.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString().trim());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString().trim());
+        return values;
+    }
+}
@@ -0,0 +1,189 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The parameters of a remote job as configured, compiled once (when the configuration is loaded or saved) rather
+ * than on every build.
+ *
+ * Comments and empty lines are dropped, and every line without a macro or variable in it is URL-encoded right away.
+ * Only the lines that do have one (i.e.: contain a "$") are left as slots, to be expanded and encoded for each build.
+ * Instances never change, so they can be shared by any number of builds at once.
+ */
+public final class ParameterTemplate {
+
+    /**
+     * Expands the macros and variables in a string, for one build.
+     */
+    public interface Expander {
+        String expand(String input);
+    }
+
+    private static final ParameterTemplate EMPTY = new ParameterTemplate(Collections.<String> emptyList());
+
+    // the lines of the template; "encoded" holds their encoded form, or null for the slots
+    private final String[]                 lines;
+    private final String[]                 encoded;
+    private final boolean                  dynamic;
+
+    private ParameterTemplate(List<String> lines) {
+        this.lines = lines.toArray(new String[lines.size()]);
+        this.encoded = new String[this.lines.length];
+        boolean dynamic = false;
+        for (int i = 0; i < this.lines.length; i++) {
+            if (this.lines[i].indexOf('$') < 0) {
+                this.encoded[i] = encodeParameter(this.lines[i]);
+            } else {
+                dynamic = true;
+            }
+        }
+        this.dynamic = dynamic;
+    }
+
+    /**
+     * @param parameters
+     *            The raw string entered by the user, one "name=value" per line
+     * @return the compiled template
+     */
+    public static ParameterTemplate compile(String parameters) {
+        if (parameters == null || parameters.length() == 0) {
+            return EMPTY;
+        }
+        List<String> lines = new ArrayList<String>();
+        for (String line : parameters.split("\n")) {
+            // same as "getCleanedParameters" of the build step: drop empty lines and comments
+            if (!line.equals("") && !line.equals(" ") && !line.startsWith("#")) {
+                lines.add(line);
+            }
+        }
+        return new ParameterTemplate(lines);
+    }
+
+    /**
+     * @return true if there are no parameters at all
+     */
+    public boolean isEmpty() {
+        return this.lines.length == 0;
+    }
+
+    /**
+     * @param expander
+     *            Expands the slots for the build at hand; it isn't called at all if there are none
+     * @return the parameters for the build
+     */
+    public Resolved resolve(Expander expander) {
+        if (!this.dynamic) {
+            return new Resolved(this.lines, this.encoded);
+        }
+        String[] lines = new String[this.lines.length];
+        String[] encoded = new String[this.lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            if (this.encoded[i] != null) {
+                lines[i] = this.lines[i];
+                encoded[i] = this.encoded[i];
+            } else {
+                lines[i] = expander.expand(this.lines[i]);
+                encoded[i] = encodeParameter(lines[i]);
+            }
+        }
+        return new Resolved(lines, encoded);
+    }
+
+    /**
+     * Encodes one "name=value" parameter for a query string. Only the "=" characters are left as they are, so that
+     * the name and the value stay apart.
+     *
+     * @param parameter
+     * @return the encoded parameter
+     */
+    static String encodeParameter(String parameter) {
+        // Step #1 - break apart the parameter-pairs (because we don't want to encode the "=" character)
+        String[] splitParameters = parameter.split("=");
+
+        // Step #2 - encode each individual parameter item, and reunite them
+        StringBuilder encodedParameter = new StringBuilder(parameter.length() + 16);
+        for (int i = 0; i < splitParameters.length; i++) {
+            if (i > 0) {
+                encodedParameter.append('=');
+            }
+            encodedParameter.append(RemoteBuildRequest.encodeValue(splitParameters[i]));
+        }
+        return encodedParameter.toString();
+    }
+
+    /**
+     * The parameters of one build, with every macro and variable resolved, both as they are and URL-encoded.
+     */
+    public static final class Resolved {
+
+        private final String[] lines;
+        private final String[] encoded;
+
+        private Resolved(String[] lines, String[] encoded) {
+            this.lines = lines;
+            this.encoded = encoded;
+        }
+
+        /**
+         * @param parameters
+         *            Parameters as "name=value" strings, with nothing left to resolve
+         * @return the parameters, encoded
+         */
+        public static Resolved of(List<String> parameters) {
+            String[] lines = parameters.toArray(new String[parameters.size()]);
+            String[] encoded = new String[lines.length];
+            for (int i = 0; i < lines.length; i++) {
+                encoded[i] = encodeParameter(lines[i]);
+            }
+            return new Resolved(lines, encoded);
+        }
+
+        /**
+         * @param parameters
+         *            More parameters as "name=value" strings, with nothing left to resolve
+         * @return these parameters followed by the given ones; only the latter are encoded
+         */
+        public Resolved plus(List<String> parameters) {
+            Resolved more = of(parameters);
+            String[] lines = new String[this.lines.length + more.lines.length];
+            String[] encoded = new String[lines.length];
+            System.arraycopy(this.lines, 0, lines, 0, this.lines.length);
+            System.arraycopy(more.lines, 0, lines, this.lines.length, more.lines.length);
+            System.arraycopy(this.encoded, 0, encoded, 0, this.encoded.length);
+            System.arraycopy(more.encoded, 0, encoded, this.encoded.length, more.encoded.length);
+            return new Resolved(lines, encoded);
+        }
+
+        public boolean isEmpty() {
+            return this.lines.length == 0;
+        }
+
+        /**
+         * @return the parameters as "name=value" strings (not encoded)
+         */
+        public List<String> getParameters() {
+            return Collections.unmodifiableList(Arrays.asList(this.lines));
+        }
+
+        /**
+         * @return the parameters as a URL-encoded query string (without the leading "?")
+         */
+        public String getQueryString() {
+            int length = 0;
+            for (String parameter : this.encoded) {
+                length += parameter.length() + 1;
+            }
+            StringBuilder query = new StringBuilder(length);
+            for (int i = 0; i < this.encoded.length; i++) {
+                if (i > 0) {
+                    query.append('&');
+                }
+                query.append(this.encoded[i]);
+            }
+            return query.toString();
+        }
+    }
+}
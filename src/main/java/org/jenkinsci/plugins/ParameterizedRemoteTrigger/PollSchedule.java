@@ -0,0 +1,55 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import hudson.DescriptorExtensionList;
+import hudson.ExtensionPoint;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import jenkins.model.Jenkins;
+
+/**
+ * Decides how long to wait between two polls of the remote server, while waiting for the remote job to become idle,
+ * for the remote build to leave the queue, to start, or to finish.
+ */
+public abstract class PollSchedule extends AbstractDescribableImpl<PollSchedule> implements ExtensionPoint {
+
+    /**
+     * What we are waiting for.
+     */
+    public enum Phase {
+        // waiting for the last build of the remote job to finish, before triggering a new one
+        PRE_CHECK,
+        // waiting for the triggered build to leave the remote queue
+        QUEUED,
+        // waiting for the triggered build to start
+        NOT_STARTED,
+        // waiting for the triggered build to finish
+        RUNNING
+    }
+
+    /**
+     * Gets the number of milliseconds to wait before the next poll.
+     * 
+     * @param phase
+     *            What we are waiting for
+     * @param attempt
+     *            Number of polls already made in this phase, 0 for the first poll after entering it
+     * @param pollInterval
+     *            Poll interval configured for the build step, in seconds
+     * @param estimatedRemaining
+     *            Number of milliseconds until the remote build is expected to finish, or -1 if that is not known
+     * @return milliseconds until the next poll
+     */
+    public abstract long getDelay(Phase phase, int attempt, int pollInterval, long estimatedRemaining);
+
+    @Override
+    public PollScheduleDescriptor getDescriptor() {
+        return (PollScheduleDescriptor) super.getDescriptor();
+    }
+
+    public static DescriptorExtensionList<PollSchedule, PollScheduleDescriptor> all() {
+        return Jenkins.getInstance().<PollSchedule, PollScheduleDescriptor> getDescriptorList(PollSchedule.class);
+    }
+
+    public static abstract class PollScheduleDescriptor extends Descriptor<PollSchedule> {
+    }
+}
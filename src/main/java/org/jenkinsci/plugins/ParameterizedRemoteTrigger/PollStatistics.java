@@ -0,0 +1,49 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+/**
+ * Counts the polls made by one build step while it waits on the remote server, so that the poll schedule in use can
+ * be compared against polling at a fixed interval.
+ */
+public class PollStatistics {
+
+    private long polls;
+    private long timeWaited;
+
+    /**
+     * @param polls
+     *            Number of polls made after waiting
+     * @param timeWaited
+     *            Milliseconds spent waiting for those polls
+     */
+    public synchronized void add(long polls, long timeWaited) {
+        this.polls += polls;
+        this.timeWaited += timeWaited;
+    }
+
+    public synchronized long getPolls() {
+        return this.polls;
+    }
+
+    public synchronized long getTimeWaited() {
+        return this.timeWaited;
+    }
+
+    /**
+     * @param pollSchedule
+     *            Poll schedule that was used
+     * @param pollInterval
+     *            Fixed poll interval to compare against, in seconds
+     * @return one-line summary for the console
+     */
+    public synchronized String getSummary(PollSchedule pollSchedule, int pollInterval) {
+        long fixedPolls = this.timeWaited / (Math.max(1, pollInterval) * 1000L);
+        long saved = fixedPolls - this.polls;
+
+        String summary = "Poll schedule: " + pollSchedule.getDescriptor().getDisplayName() + ". Polled " + this.polls
+                + " times while waiting " + this.timeWaited / 1000 + " seconds";
+        if (saved >= 0) {
+            return summary + ", saving " + saved + " polls compared to polling every " + pollInterval + " seconds.";
+        }
+        return summary + ", " + -saved + " polls more than polling every " + pollInterval + " seconds.";
+    }
+}
@@ -0,0 +1,439 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import hudson.FilePath;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.regex.Pattern;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Downloads artifacts of a finished remote build into the workspace.
+ *
+ * A few artifacts are downloaded at the same time. Each one is streamed from the connection straight to the
+ * workspace (wherever it is), through a buffer of a fixed size, while its SHA-256 checksum is computed on the way.
+ * When a download breaks off, it picks up where it left off with a range request, rather than starting over. Artifacts
+ * are written next to their final name first, and only renamed once they are complete. Artifacts whose path would
+ * take them outside of the target directory are not downloaded.
+ */
+public class RemoteArtifactDownloader {
+
+    // how many artifacts are downloaded at the same time
+    public static final int           PARALLEL_DOWNLOADS = 4;
+
+    private static final int          BUFFER_SIZE        = 64 * 1024;
+    // how long to wait before resuming a download that broke off
+    private static final long         RETRY_DELAY        = 2000;
+
+    private final RemoteJenkinsServer remoteServer;
+    private final String              authorization;
+    private final String              buildUrl;
+    private final int                 retryLimit;
+
+    /**
+     * @param remoteServer
+     * @param authorization
+     *            Value of the "Authorization" header to use, or null if none is needed
+     * @param buildUrl
+     *            Fully qualified URL of the remote build
+     * @param retryLimit
+     *            How many times a download that broke off is resumed
+     */
+    public RemoteArtifactDownloader(RemoteJenkinsServer remoteServer, String authorization, String buildUrl,
+            int retryLimit) {
+        this.remoteServer = remoteServer;
+        this.authorization = authorization;
+        this.buildUrl = buildUrl;
+        this.retryLimit = retryLimit;
+    }
+
+    /**
+     * @param patterns
+     *            Comma-separated Ant-style patterns (i.e.: "target/*.jar, reports/**")
+     * @param relativePath
+     *            Path of an artifact, relative to the artifacts of its build
+     * @return true if the artifact matches any of the patterns
+     */
+    public static boolean matches(String patterns, String relativePath) {
+        for (String pattern : patterns.split(",")) {
+            pattern = pattern.trim();
+            if (pattern.length() > 0 && toRegex(pattern).matcher(relativePath).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param relativePath
+     *            Path of an artifact, as the remote server listed it
+     * @return the path with any "." and ".." resolved and "/" as separator, or null if it is absolute or leads
+     *         outside of the directory it is relative to
+     */
+    static String normalize(String relativePath) {
+        if (relativePath.startsWith("/") || relativePath.startsWith("\\")
+                || relativePath.matches("^[A-Za-z]:.*")) {
+            return null;
+        }
+        List<String> segments = new ArrayList<String>();
+        for (String segment : relativePath.split("[/\\\\]")) {
+            if (segment.length() == 0 || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                if (segments.isEmpty()) {
+                    return null;
+                }
+                segments.remove(segments.size() - 1);
+            } else {
+                segments.add(segment);
+            }
+        }
+        if (segments.isEmpty()) {
+            return null;
+        }
+        StringBuilder normalized = new StringBuilder();
+        for (String segment : segments) {
+            if (normalized.length() > 0) {
+                normalized.append('/');
+            }
+            normalized.append(segment);
+        }
+        return normalized.toString();
+    }
+
+    private static Pattern toRegex(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' && i + 1 < pattern.length() && pattern.charAt(i + 1) == '*') {
+                // "**/" also matches no directory at all
+                if (i + 2 < pattern.length() && pattern.charAt(i + 2) == '/') {
+                    regex.append("(?:.*/)?");
+                    i += 2;
+                } else {
+                    regex.append(".*");
+                    i++;
+                }
+            } else if (c == '*') {
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Downloads the given artifacts, and waits for all of them.
+     *
+     * @param relativePaths
+     *            Paths of the artifacts, relative to the artifacts of the build
+     * @param targetDir
+     *            Directory in the workspace to download them to; they keep their relative path below it
+     * @param deadline
+     *            Deadline of the build step
+     * @param logger
+     *            Where to report on the downloads
+     * @return how many bytes were downloaded
+     * @throws IOException
+     *             if any of the artifacts could not be downloaded
+     * @throws InterruptedException
+     */
+    public long download(List<String> relativePaths, final FilePath targetDir, final RemoteBuildDeadline deadline,
+            final PrintStream logger) throws IOException, InterruptedException {
+        if (relativePaths.isEmpty()) {
+            return 0;
+        }
+        int parallelism = Math.min(PARALLEL_DOWNLOADS, relativePaths.size());
+        logger.println("Downloading " + relativePaths.size() + " artifacts to " + targetDir.getRemote() + ", "
+                + parallelism + " at a time.");
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new NamingThreadFactory(
+                new DaemonThreadFactory(), "Remote artifact download from " + this.buildUrl));
+        List<Future<Long>> downloads = new ArrayList<Future<Long>>();
+        // the threads trace their downloads below the span of the caller
+        final RemoteTriggerTrace.Span parentSpan = RemoteTriggerTrace.current();
+        long started = System.currentTimeMillis();
+        long total = 0;
+        int failures = 0;
+        try {
+            for (final String relativePath : relativePaths) {
+                downloads.add(executor.submit(new Callable<Long>() {
+                    public Long call() throws Exception {
+                        String targetPath = normalize(relativePath);
+                        if (targetPath == null) {
+                            throw new IOException("Its path leads outside of " + targetDir.getRemote() + ".");
+                        }
+                        RemoteTriggerTrace.Span span = parentSpan.child("download " + relativePath).activate();
+                        try {
+                            long bytes = downloadArtifact(relativePath, targetDir.child(targetPath), deadline,
+                                    logger);
+                            span.attribute("bytes", bytes);
+                            return bytes;
+                        } finally {
+                            span.end();
+                        }
+                    }
+                }));
+            }
+            for (int i = 0; i < downloads.size(); i++) {
+                try {
+                    total += downloads.get(i).get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof InterruptedException) {
+                        throw (InterruptedException) e.getCause();
+                    }
+                    failures++;
+                    synchronized (logger) {
+                        logger.println("Could not download " + relativePaths.get(i) + ": " + e.getCause().getMessage());
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long elapsed = System.currentTimeMillis() - started;
+        logger.println("Downloaded " + (relativePaths.size() - failures) + " artifacts, " + formatTransfer(total, elapsed)
+                + ".");
+        if (failures > 0) {
+            throw new IOException(failures + " of " + relativePaths.size() + " artifacts could not be downloaded.");
+        }
+        return total;
+    }
+
+    /**
+     * @return how many bytes were downloaded
+     */
+    private long downloadArtifact(String relativePath, FilePath target, RemoteBuildDeadline deadline,
+            PrintStream logger) throws IOException, InterruptedException {
+        String url = this.buildUrl + "/artifact/" + encodePath(relativePath);
+        FilePath partFile = target.getParent().child(target.getName() + ".part");
+        target.getParent().mkdirs();
+
+        long started = System.currentTimeMillis();
+        Transfer transfer = new Transfer(partFile);
+        boolean complete = false;
+        try {
+            try {
+                int attempt = 0;
+                while (true) {
+                    try {
+                        fetch(url, transfer, deadline);
+                        break;
+                    } catch (IOException e) {
+                        if (deadline.isExpired()) {
+                            throw new RemoteBuildDeadline.DeadlineExceededException(deadline.getTimeout());
+                        }
+                        if (e instanceof HttpStatusException && !((HttpStatusException) e).isRetriable()
+                                || ++attempt > this.retryLimit) {
+                            throw e;
+                        }
+                        synchronized (logger) {
+                            logger.println("Download of " + relativePath + " broke off (" + e.getMessage()
+                                    + "), resuming at byte " + transfer.received + " (attempt " + attempt
+                                    + " out of " + this.retryLimit + ").");
+                        }
+                        deadline.sleep(RETRY_DELAY);
+                    }
+                }
+            } finally {
+                transfer.out.close();
+            }
+            partFile.renameTo(target);
+            complete = true;
+        } finally {
+            if (!complete) {
+                deletePartFile(partFile);
+            }
+        }
+
+        long elapsed = System.currentTimeMillis() - started;
+        synchronized (logger) {
+            logger.println("Downloaded " + relativePath + " (" + formatTransfer(transfer.received, elapsed)
+                    + ", SHA-256 " + Hex.encodeHexString(transfer.digest.digest()) + ").");
+        }
+        return transfer.received;
+    }
+
+    /**
+     * Removes what was received of a download that failed, so that it doesn't end up in the workspace.
+     */
+    private static void deletePartFile(FilePath partFile) {
+        try {
+            partFile.delete();
+        } catch (IOException e) {
+            // there is nothing more we can do about it
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Requests the artifact from where the transfer has got to, and copies the rest of it.
+     */
+    private void fetch(String url, Transfer transfer, RemoteBuildDeadline deadline) throws IOException,
+            InterruptedException {
+        HttpGet request = new HttpGet(url);
+        if (this.authorization != null) {
+            request.setHeader("Authorization", this.authorization);
+        }
+        if (transfer.received > 0) {
+            request.setHeader("Range", "bytes=" + transfer.received + "-");
+        }
+
+        RemoteRequestLimiter requestLimiter = this.remoteServer.getRequestLimiter();
+        requestLimiter.acquireRequest(deadline);
+        CloseableHttpResponse response = null;
+        ScheduledFuture<?> abortOnExpiry = deadline.abortOnExpiry(request);
+        long started = System.nanoTime();
+        long receivedBefore = transfer.received;
+        boolean failed = true;
+        try {
+            response = this.remoteServer.getConnectionPool().execute(request);
+
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode == 416 && transfer.received > 0) {
+                // there is nothing after what we already have, so it was complete after all
+                failed = false;
+                return;
+            }
+            if (statusCode >= 400) {
+                throw new HttpStatusException(statusCode, url);
+            }
+            if (statusCode != 206 && transfer.received > 0) {
+                // the remote server sends the whole thing again, instead of the part we asked for
+                transfer.restart();
+                receivedBefore = 0;
+            }
+
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                failed = false;
+                return;
+            }
+            byte[] buffer = new byte[BUFFER_SIZE];
+            InputStream in = entity.getContent();
+            try {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    transfer.out.write(buffer, 0, read);
+                    transfer.digest.update(buffer, 0, read);
+                    transfer.received += read;
+                }
+            } finally {
+                in.close();
+            }
+            failed = false;
+        } finally {
+            if (abortOnExpiry != null) {
+                abortOnExpiry.cancel(false);
+            }
+            if (response != null) {
+                EntityUtils.consumeQuietly(response.getEntity());
+                response.close();
+            }
+            requestLimiter.releaseRequest();
+            RemoteTriggerMetrics.forServer(this.remoteServer).recordRequest(started,
+                    transfer.received - receivedBefore, failed);
+        }
+    }
+
+    private static String encodePath(String relativePath) {
+        StringBuilder encoded = new StringBuilder();
+        for (String segment : relativePath.split("/")) {
+            if (encoded.length() > 0) {
+                encoded.append('/');
+            }
+            encoded.append(RemoteBuildRequest.encodeValue(segment));
+        }
+        return encoded.toString();
+    }
+
+    private static String formatTransfer(long bytes, long elapsed) {
+        double seconds = Math.max(elapsed, 1) / 1000.0;
+        return String.format("%.1f MB in %.1f s, %.1f MB/s", bytes / 1048576.0, seconds, bytes / 1048576.0 / seconds);
+    }
+
+    /**
+     * How far the download of one artifact has got.
+     */
+    private static class Transfer {
+        private final FilePath partFile;
+        private OutputStream   out;
+        private MessageDigest  digest;
+        private long           received;
+
+        Transfer(FilePath partFile) throws IOException, InterruptedException {
+            this.partFile = partFile;
+            this.out = partFile.write();
+            this.digest = createDigest();
+        }
+
+        /**
+         * Throws away what has been received so far.
+         */
+        void restart() throws IOException {
+            this.out.close();
+            try {
+                this.out = this.partFile.write();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            this.digest = createDigest();
+            this.received = 0;
+        }
+
+        private static MessageDigest createDigest() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                // every JVM has SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Thrown when the remote server answers with an error.
+     */
+    private static class HttpStatusException extends IOException {
+        private final int statusCode;
+
+        HttpStatusException(int statusCode, String url) {
+            super("Server returned HTTP response code: " + statusCode + " for URL: " + url);
+            this.statusCode = statusCode;
+        }
+
+        /**
+         * @return false for errors that trying again won't fix, such as a missing artifact
+         */
+        boolean isRetriable() {
+            return this.statusCode >= 500;
+        }
+    }
+}
@@ -8,40 +8,65 @@ import hudson.EnvVars;
 import hudson.Launcher;
 import hudson.Extension;
 import hudson.util.CopyOnWriteList;
+import hudson.util.DaemonThreadFactory;
 import hudson.util.ListBoxModel;
+import hudson.util.NamingThreadFactory;
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
+import hudson.model.StreamBuildListener;
 import hudson.model.AbstractProject;
 import hudson.tasks.Builder;
 import hudson.tasks.BuildStepDescriptor;
+import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
-import net.sf.json.JSONSerializer;
 //import net.sf.json.
 //import net.sf.json.
 
-import org.jenkinsci.plugins.tokenmacro.TokenMacro;
-import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.plugins.tokenmacro.MacroEvaluationException;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.StaplerRequest;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
-import java.net.HttpURLConnection;
+import java.io.Reader;
+import java.net.ConnectException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLEncoder;
+import java.net.UnknownHostException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.http.Consts;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.EntityUtils;
 
 /**
  * 
@@ -50,6 +75,12 @@ import org.apache.commons.codec.binary.Base64;
  */
 public class RemoteBuildConfiguration extends Builder {
 
+    // how many rows of a batch are triggered (and waited for) at the same time, unless "maxParallelTargets" says so
+    private static final int      DEFAULT_BATCH_PARALLELISM = 5;
+    // how long a build that was triggered without waiting may hold its build slot before it has started, unless the
+    // build step has a timeout
+    private static final long     FIRE_AND_FORGET_START_TIMEOUT = 60 * 60000L;
+
     private final String          token;
     private final String          remoteJenkinsName;
     private final String          job;
@@ -59,6 +90,12 @@ public class RemoteBuildConfiguration extends Builder {
     private final int             connectionRetryLimit;
     private final boolean         preventRemoteBuildQueue;
     private final boolean         blockBuildUntilComplete;
+    private final boolean         waitAfterBuildSteps;
+    private final boolean         trackRemoteQueueItem;
+    private final boolean         mirrorConsole;
+    private final boolean         summarizeTestResults;
+    private final PollSchedule    pollSchedule;
+    private final int             timeout;
 
     // "parameters" is the raw string entered by the user
     private final String          parameters;
@@ -66,9 +103,8 @@ public class RemoteBuildConfiguration extends Builder {
 
     private final List<String>    parameterList;
 
-    private static String         paramerizedBuildUrl = "/buildWithParameters";
-    private static String         normalBuildUrl      = "/build";
-    private static String         buildTokenRootUrl   = "/buildByToken";
+    // "fileParameters" is the raw string entered by the user, one "name=path in the workspace" per line
+    private final String          fileParameters;
 
     private final boolean         overrideAuth;
     private CopyOnWriteList<Auth> auth                = new CopyOnWriteList<Auth>();
@@ -76,21 +112,48 @@ public class RemoteBuildConfiguration extends Builder {
     private final boolean         loadParamsFromFile;
     private String                parameterFile       = "";
 
-    private String                queryString         = "";
+    // more remote jobs to trigger along with "job", and how many of them to trigger (and wait for) at the same time
+    private final List<RemoteBuildTarget> targets;
+    private final int             maxParallelTargets;
+    // the build step's own remote job as a target; not part of the configuration
+    private transient volatile RemoteBuildTarget primaryTarget;
+
+    // batch mode: one remote build per row of "batchFile", with the result of each row written to "batchResultFile"
+    private final boolean         batch;
+    private String                batchFile           = "";
+    private String                batchResultFile     = "";
+
+    // artifacts of the remote build matching "artifactPattern" are downloaded to "artifactTarget" once it is done
+    private final boolean         downloadArtifacts;
+    private String                artifactPattern     = "";
+    private String                artifactTarget      = "";
 
     @DataBoundConstructor
     public RemoteBuildConfiguration(String remoteJenkinsName, boolean shouldNotFailBuild, String job, String token,
             String parameters, JSONObject overrideAuth, JSONObject loadParamsFromFile, boolean preventRemoteBuildQueue,
-            boolean blockBuildUntilComplete, int pollInterval) throws MalformedURLException {
+            boolean blockBuildUntilComplete, boolean waitAfterBuildSteps, int pollInterval,
+            boolean trackRemoteQueueItem, PollSchedule pollSchedule, int timeout, List<RemoteBuildTarget> targets,
+            int maxParallelTargets, JSONObject batch, String fileParameters, boolean mirrorConsole,
+            JSONObject downloadArtifacts, boolean summarizeTestResults) throws MalformedURLException {
 
         this.token = token.trim();
         this.remoteJenkinsName = remoteJenkinsName;
         this.parameters = parameters;
+        this.fileParameters = fileParameters == null ? "" : fileParameters;
         this.job = job.trim();
         this.shouldNotFailBuild = shouldNotFailBuild;
         this.preventRemoteBuildQueue = preventRemoteBuildQueue;
         this.blockBuildUntilComplete = blockBuildUntilComplete;
+        this.waitAfterBuildSteps = waitAfterBuildSteps;
         this.pollInterval = pollInterval;
+        this.trackRemoteQueueItem = trackRemoteQueueItem;
+        this.mirrorConsole = mirrorConsole;
+        this.summarizeTestResults = summarizeTestResults;
+        this.pollSchedule = pollSchedule;
+        this.timeout = Math.max(0, timeout);
+        this.targets = targets == null ? new ArrayList<RemoteBuildTarget>() : new ArrayList<RemoteBuildTarget>(
+                targets);
+        this.maxParallelTargets = Math.max(0, maxParallelTargets);
         this.connectionRetryLimit = 5;
 
         if (overrideAuth != null && overrideAuth.has("auth")) {
@@ -108,6 +171,22 @@ public class RemoteBuildConfiguration extends Builder {
             this.loadParamsFromFile = false;
         }
 
+        if (batch != null && batch.has("batchFile")) {
+            this.batch = true;
+            this.batchFile = batch.getString("batchFile").trim();
+            this.batchResultFile = batch.optString("batchResultFile", "").trim();
+        } else {
+            this.batch = false;
+        }
+
+        if (downloadArtifacts != null && downloadArtifacts.has("artifactPattern")) {
+            this.downloadArtifacts = true;
+            this.artifactPattern = downloadArtifacts.getString("artifactPattern").trim();
+            this.artifactTarget = downloadArtifacts.optString("artifactTarget", "").trim();
+        } else {
+            this.downloadArtifacts = false;
+        }
+
         // TODO: clean this up a bit
         // split the parameter-string into an array based on the new-line character
         String[] params = parameters.split("\n");
@@ -124,16 +203,27 @@ public class RemoteBuildConfiguration extends Builder {
         this.token = token.trim();
         this.remoteJenkinsName = remoteJenkinsName;
         this.parameters = parameters;
+        this.fileParameters = "";
         this.job = job.trim();
         this.shouldNotFailBuild = shouldNotFailBuild;
         this.preventRemoteBuildQueue = preventRemoteBuildQueue;
         this.blockBuildUntilComplete = blockBuildUntilComplete;
+        this.waitAfterBuildSteps = false;
         this.pollInterval = pollInterval;
+        this.trackRemoteQueueItem = false;
+        this.mirrorConsole = false;
+        this.summarizeTestResults = false;
+        this.pollSchedule = new FixedPollSchedule();
+        this.timeout = 0;
+        this.targets = new ArrayList<RemoteBuildTarget>();
+        this.maxParallelTargets = 0;
         this.overrideAuth = false;
         this.auth.replaceBy(new Auth(null));
         this.connectionRetryLimit = 5;
         
         this.loadParamsFromFile = false;
+        this.batch = false;
+        this.downloadArtifacts = false;
 
         // split the parameter-string into an array based on the new-line character
         String[] params = parameters.split("\n");
@@ -144,350 +234,738 @@ public class RemoteBuildConfiguration extends Builder {
     }
 
     /**
-     * Reads a file from the jobs workspace, and loads the list of parameters from with in it. It will also call
-     * ```getCleanedParameters``` before returning.
+     * Reads a file from the jobs workspace (wherever that is), and loads the list of parameters from with in it. The
+     * file is read one line at a time, and comments and empty lines are dropped as it goes, the same way as
+     * ```getCleanedParameters``` does.
      * 
      * @param build
-     * @return List<String> of build parameters
+     * @param listener
+     * @return List<String> of build parameters, or an empty list if the file could not be read and the build is to
+     *         continue anyway
+     * @throws IOException
+     *             if the file could not be read, and the build is to fail because of it
+     * @throws InterruptedException
      */
-    private List<String> loadExternalParameterFile(AbstractBuild<?, ?> build) {
+    private List<String> loadExternalParameterFile(AbstractBuild<?, ?> build, BuildListener listener)
+            throws IOException, InterruptedException {
+        List<String> parameterList = new ArrayList<String>();
 
         FilePath workspace = build.getWorkspace();
-        BufferedReader br = null;
-        List<String> ParameterList = new ArrayList<String>();
-        try {
-
-            String filePath = workspace + this.getParameterFile();
-            String sCurrentLine;
-            String fileContent = "";
+        if (workspace == null) {
+            this.failBuild(new Exception("The build has no workspace to read the parameter file from."), listener);
+            return parameterList;
+        }
 
-            br = new BufferedReader(new FileReader(filePath));
+        // the file name used to be appended to the workspace path as is, so it may start with a separator
+        String fileName = this.getParameterFile().replaceFirst("^[/\\\\]+", "");
+        FilePath file = workspace.child(fileName);
 
-            while ((sCurrentLine = br.readLine()) != null) {
-                // fileContent += sCurrentLine;
-                ParameterList.add(sCurrentLine);
+        BufferedReader reader = null;
+        try {
+            // FilePath streams the file from the agent the workspace is on
+            reader = new BufferedReader(new InputStreamReader(file.read(), Consts.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (isParameterLine(line)) {
+                    parameterList.add(line);
+                }
             }
-
-            // ParameterList = new ArrayList<String>(Arrays.asList(fileContent));
-
         } catch (IOException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+            this.failBuild(new Exception("Could not read the parameter file " + file.getRemote() + ": "
+                    + e.getMessage()), listener);
+            parameterList.clear();
         } finally {
-            try {
-                if (br != null) {
-                    br.close();
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // everything has been read by now
                 }
-            } catch (IOException ex) {
-                ex.printStackTrace();
             }
         }
-        // FilePath.
-        return getCleanedParameters(ParameterList);
-    }
-
-    /**
-     * Strip out any empty strings from the parameterList
-     */
-    private void removeEmptyElements(Collection<String> collection) {
-        collection.removeAll(Arrays.asList(null, ""));
-        collection.removeAll(Arrays.asList(null, " "));
+        return parameterList;
     }
 
     /**
-     * Convenience method
-     * 
-     * @return List<String> of build parameters
+     * @param parameter
+     *            One line of parameters
+     * @return false for empty lines and comments (lines that start with a #), which are not passed on
      */
-    private List<String> getCleanedParameters() {
-
-        return getCleanedParameters(this.getParameterList());
+    private static boolean isParameterLine(String parameter) {
+        return parameter != null && !parameter.equals("") && !parameter.equals(" ") && !parameter.startsWith("#");
     }
 
     /**
      * Same as "getParameterList", but removes comments and empty strings Notice that no type of character encoding is
-     * happening at this step. All encoding happens in the "buildUrlQueryString" method.
+     * happening at this step. All encoding happens in RemoteBuildRequest.
      * 
      * @param List
      *            <String> parameters
      * @return List<String> of build parameters
      */
     private List<String> getCleanedParameters(List<String> parameters) {
-        List<String> params = new ArrayList<String>(parameters);
-        removeEmptyElements(params);
-        removeCommentsFromParameters(params);
+        List<String> params = new ArrayList<String>(parameters.size());
+        for (String parameter : parameters) {
+            if (isParameterLine(parameter)) {
+                params.add(parameter);
+            }
+        }
         return params;
     }
 
     /**
-     * Similar to "replaceToken", but acts on a list in place of just a single string
+     * Lookup up a Remote Jenkins Server based on display name
+     * 
+     * @param displayName
+     *            Name of the configuration you are looking for
+     * @return A RemoteSitez object
+     */
+    public RemoteJenkinsServer findRemoteHost(String displayName) {
+        return this.getDescriptor().getRemoteSite(displayName);
+    }
+
+    /**
+     * Fetches the test report of a finished remote build, streaming its test cases rather than reading it whole.
      * 
+     * @param remoteServer
+     * @param authorization
+     *            Value of the "Authorization" header to use, or null if none is needed
+     * @param buildUrl
+     *            Fully qualified URL of the remote build
      * @param build
      * @param listener
-     * @param params
-     *            List<String> of params to be tokenized/replaced
-     * @return List<String> of resolved variables/tokens
+     * @param transferStatistics
+     * @param deadline
+     * @return the summary of the test report, or null if the remote build has none
+     * @throws IOException
+     * @throws InterruptedException
      */
-    private List<String> replaceTokens(AbstractBuild<?, ?> build, BuildListener listener, List<String> params) {
-        List<String> tokenizedParams = new ArrayList<String>();
+    private RemoteTestReport fetchTestReport(RemoteJenkinsServer remoteServer, String authorization,
+            String buildUrl, AbstractBuild build, BuildListener listener, TransferStatistics transferStatistics,
+            RemoteBuildDeadline deadline) throws IOException, InterruptedException {
+        String urlString = buildUrl + "/testReport/api/json/";
+        if (remoteServer.isTreeParameterSupported()) {
+            urlString = TreeParameter.add(urlString, RemoteTestReport.TREE);
+        }
+        RemoteTestReport report = new RemoteTestReport();
+        ConnectionResponse response = sendProjectedRequest(remoteServer, authorization, urlString, "GET", null,
+                build, listener, transferStatistics, deadline, report.getProjection(), 1);
+        if (response == null || response.getBody() == null) {
+            listener.getLogger().println("The remote build has no test results.");
+            return null;
+        }
+        report.setTotals(response.getBody());
+        listener.getLogger().println("Remote test results: " + report.getSummary());
+        return report;
+    }
 
-        for (int i = 0; i < params.size(); i++) {
-            tokenizedParams.add(replaceToken(build, listener, params.get(i)));
-            // params.set(i, replaceToken(build, listener, params.get(i)));
+    /**
+     * Downloads the artifacts of a finished remote build that match "artifactPattern" into the workspace.
+     * 
+     * @param remoteServer
+     * @param authorization
+     *            Value of the "Authorization" header to use, or null if none is needed
+     * @param buildUrl
+     *            Fully qualified URL of the remote build
+     * @param build
+     * @param listener
+     * @param expander
+     * @param transferStatistics
+     * @param deadline
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private void downloadArtifacts(RemoteJenkinsServer remoteServer, String authorization, String buildUrl,
+            AbstractBuild build, BuildListener listener, MacroExpander expander,
+            TransferStatistics transferStatistics, RemoteBuildDeadline deadline) throws IOException,
+            InterruptedException {
+        FilePath workspace = build.getWorkspace();
+        if (workspace == null) {
+            this.failBuild(new Exception("The build has no workspace to download the artifacts to."), listener);
+            return;
+        }
+        String target = expander.expand(this.getArtifactTarget());
+        FilePath targetDir = target.length() > 0 ? workspace.child(target) : workspace;
+
+        JSONObject response = sendHTTPCall(remoteServer, authorization, buildUrl + "/api/json/", "GET", build,
+                listener, transferStatistics, deadline, "artifacts[relativePath]");
+        List<String> artifacts = new ArrayList<String>();
+        if (response != null && response.has("artifacts")) {
+            String patterns = expander.expand(this.getArtifactPattern());
+            JSONArray list = response.getJSONArray("artifacts");
+            for (int i = 0; i < list.size(); i++) {
+                String relativePath = list.getJSONObject(i).getString("relativePath");
+                if (RemoteArtifactDownloader.matches(patterns, relativePath)) {
+                    artifacts.add(relativePath);
+                }
+            }
+        }
+        if (artifacts.isEmpty()) {
+            listener.getLogger().println("The remote build has no artifacts matching " + this.getArtifactPattern()
+                    + ".");
+            return;
         }
 
-        return tokenizedParams;
+        try {
+            new RemoteArtifactDownloader(remoteServer, authorization, buildUrl, this.getConnectionRetryLimit())
+                    .download(artifacts, targetDir, deadline, listener.getLogger());
+        } catch (IOException e) {
+            this.failBuild(e, listener);
+        }
     }
 
     /**
-     * Resolves any environment variables in the string
+     * Convenience function to mark the build as failed. It's intended to only be called from this.perform();
      * 
+     * @param e
+     *            Exception that caused the build to fail
+     * @param listener
+     *            Build Listener
+     * @throws IOException
+     */
+    private void failBuild(Exception e, BuildListener listener) throws IOException {
+        e.getStackTrace();
+        if (this.getShouldNotFailBuild()) {
+            listener.error("Remote build failed for the following reason, but the build will continue:");
+            listener.error(e.getMessage());
+        } else {
+            listener.error("Remote build failed for the following reason:");
+            throw new AbortException(e.getMessage());
+        }
+    }
+    
+  
+    /**
+     * Performs the trigger remote job action. This jobs sets the following Environment Variables (the names are copied from Parameterized Trigger Plugin (see getEnvVarsMap).
      * @param build
+     * @param launcher
      * @param listener
-     * @param input
-     *            String to be tokenized/replaced
-     * @return String with resolved Environment variables
+     * @return
+     * @throws InterruptedException
+     * @throws IOException
+     * @throws IllegalArgumentException 
      */
-    private String replaceToken(AbstractBuild<?, ?> build, BuildListener listener, String input) {
+    @Override
+    public boolean perform(AbstractBuild build, Launcher launcher, BuildListener listener) throws InterruptedException,
+            IOException, IllegalArgumentException {
+        // where the time goes in this run is recorded, and kept with the build
+        RemoteTriggerTrace trace = new RemoteTriggerTrace("trigger " + this.getJob());
+        RemoteTriggerTrace.Span root = trace.getRoot().activate();
         try {
-            return TokenMacro.expandAll(build, listener, input);
-        } catch (Exception e) {
-            listener.getLogger().println(
-                    String.format("Failed to resolve parameters in string %s due to following error:\n%s", input,
-                            e.getMessage()));
+            return performTriggers(build, listener);
+        } finally {
+            root.end();
+            recordTrace(trace, build, listener);
         }
-        return input;
     }
 
     /**
-     * Strip out any comments (lines that start with a #) from the collection that is passed in.
+     * Attaches the trace of a run of the build step to the build, and appends it to the trace file of the build.
+     * 
+     * @param trace
+     * @param build
+     * @param listener
      */
-    private void removeCommentsFromParameters(Collection<String> collection) {
-        List<String> itemsToRemove = new ArrayList<String>();
-
-        for (String parameter : collection) {
-            if (parameter.indexOf("#") == 0) {
-                itemsToRemove.add(parameter);
-            }
+    static void recordTrace(RemoteTriggerTrace trace, AbstractBuild build, BuildListener listener) {
+        RemoteTriggerTraceAction.forBuild(build).add(trace);
+        try {
+            trace.writeTo(build.getRootDir());
+        } catch (IOException e) {
+            // the trace is only there to help, it's no reason to fail the build
+            listener.getLogger().println("Could not write the trace of the build step to "
+                    + RemoteTriggerTrace.FILE_NAME + ": " + e.getMessage());
         }
-        collection.removeAll(itemsToRemove);
     }
 
     /**
-     * Return the Collection<String> in an encoded query-string
+     * Does the work of "perform", see there.
      * 
-     * @return query-parameter-formated URL-encoded string
+     * @param build
+     * @param listener
+     * @return true
      * @throws InterruptedException
      * @throws IOException
-     * @throws MacroEvaluationException
      */
-    private String buildUrlQueryString(Collection<String> parameters) {
-
-        // List to hold the encoded parameters
-        List<String> encodedParameters = new ArrayList<String>();
-
-        for (String parameter : parameters) {
-
-            // Step #1 - break apart the parameter-pairs (because we don't want to encode the "=" character)
-            String[] splitParameters = parameter.split("=");
+    private boolean performTriggers(AbstractBuild build, BuildListener listener) throws InterruptedException,
+            IOException {
+
+        // everything from here until the remote builds have finished counts towards the timeout of the build step
+        RemoteBuildDeadline deadline = new RemoteBuildDeadline(this.getTimeout() * 60000L);
+        // every variable and macro in the settings of the build step is resolved against the same environment, once
+        MacroExpander expander = new MacroExpander(build, listener);
+        // remote builds waited for in the background are collected here, as they may be triggered on other threads
+        RemoteBuildJoin joins = new RemoteBuildJoin();
+        if (this.getMirrorConsole() && !this.isMirroringConsole()) {
+            listener.getLogger().println("Not showing the console output of the remote builds, as several of them are "
+                    + "triggered at once.");
+        }
 
-            // List to hold each individually encoded parameter item
-            List<String> encodedItems = new ArrayList<String>();
-            for (String item : splitParameters) {
-                try {
-                    // Step #2 - encode each individual parameter item add the encoded item to its corresponding list
+        List<TriggeredBuild> triggeredBuilds;
+        try {
+            if (this.getBatch()) {
+                // the remote builds of a batch are only recorded in its result file, they are far too many for
+                // variables
+                triggerBatch(build, listener, expander, deadline, joins);
+                return true;
+            }
 
-                    encodedItems.add(encodeValue(item));
+            if (this.getTargets().isEmpty()) {
+                TriggeredBuild triggeredBuild = new TriggeredBuild(this.getPrimaryTarget());
+                triggerRemoteBuild(triggeredBuild, getBuildStepParameters(build, listener, expander), build,
+                        listener, expander, deadline, joins);
+                triggeredBuilds = Collections.singletonList(triggeredBuild);
+            } else {
+                triggeredBuilds = triggerRemoteBuilds(build, listener, expander, deadline, joins);
+            }
+        } finally {
+            // only this thread may add them to the environments of the build
+            joins.handOverTo(build);
+        }
 
-                } catch (Exception e) {
-                    // do nothing
-                    // because we are "hard-coding" the encoding type, there is a 0% chance that this will fail.
-                }
+        RemoteTriggerTrace.Span injectSpan = RemoteTriggerTrace.start("inject environment variables");
+        try {
+            injectEnvVars(triggeredBuilds, build, listener);
+        } finally {
+            injectSpan.end();
+        }
 
+        // when several remote jobs were triggered, the build step only fails once all of them are done
+        int failures = 0;
+        for (TriggeredBuild triggeredBuild : triggeredBuilds) {
+            if (triggeredBuild.failure != null) {
+                failures++;
             }
-
-            // Step #3 - reunite the previously separated parameter items and add them to the corresponding list
-            encodedParameters.add(StringUtils.join(encodedItems, "="));
+        }
+        if (failures > 0) {
+            throw new AbortException(failures + " of " + triggeredBuilds.size() + " remote builds failed.");
         }
 
-        return StringUtils.join(encodedParameters, "&");
+        return true;
     }
 
     /**
-     * Lookup up a Remote Jenkins Server based on display name
+     * Sets the environment variables of "getEnvVarsMap" (and those of the test results) for the remote builds that
+     * were triggered, and shows the test results on the page of the build.
      * 
-     * @param displayName
-     *            Name of the configuration you are looking for
-     * @return A RemoteSitez object
+     * @param triggeredBuilds
+     * @param build
+     * @param listener
+     * @throws IOException
+     * @throws InterruptedException
      */
-    public RemoteJenkinsServer findRemoteHost(String displayName) {
-        RemoteJenkinsServer match = null;
-
-        for (RemoteJenkinsServer host : this.getDescriptor().remoteSites) {
-            // if we find a match, then stop looping
-            if (displayName.equals(host.getDisplayName())) {
-                match = host;
-                break;
+    private void injectEnvVars(List<TriggeredBuild> triggeredBuilds, AbstractBuild build, BuildListener listener)
+            throws IOException, InterruptedException {
+        //Create EnvVars hash and use this to set EnvVars for job.
+        EnvVars buildEnvVars = build.getEnvironment(listener);
+        HashMap<String, String> remoteBuildEnvVars = new HashMap<String, String>();
+        for (TriggeredBuild triggeredBuild : triggeredBuilds) {
+            if (triggeredBuild.buildNumber < 0) {
+                // the build step gave up before the remote build was triggered (or found)
+                continue;
+            }
+            HashMap<String, String> envVars = getEnvVarsMap(listener, buildEnvVars, triggeredBuild.jobName,
+                    triggeredBuild.buildNumber, triggeredBuild.status);
+            if (triggeredBuild.testReport != null) {
+                envVars.putAll(triggeredBuild.testReport.getEnvVarsMap(triggeredBuild.jobName));
+                build.addAction(new RemoteTestResultAction(triggeredBuild.jobName, triggeredBuild.buildNumber,
+                        triggeredBuild.buildUrl, triggeredBuild.testReport));
             }
+            // lists like TRIGGERED_JOB_NAMES carry on from what the previous remote build added to them
+            buildEnvVars.putAll(envVars);
+            remoteBuildEnvVars.putAll(envVars);
         }
 
-        return match;
+        //Set the new build variables map
+        if (!remoteBuildEnvVars.isEmpty()) {
+            build.addAction(new RemoteBuildEnvInjectAction(remoteBuildEnvVars));
+        }
     }
 
     /**
-     * Helper function to allow values to be added to the query string from any method.
+     * Triggers the remote job of the build step and those of its additional targets at the same time (but no more
+     * than "maxParallelTargets" at once), and waits for all of them. The console output of each one is shown in one
+     * piece once it is done.
      * 
-     * @param item
+     * @param build
+     * @param listener
+     * @param expander
+     *            Resolves the variables and macros in the settings of the build step, for this run
+     * @param deadline
+     *            Deadline of the build step, which applies to each remote build
+     * @param joins
+     *            Collects the remote builds to wait for in the background
+     * @return what became of each remote build, in the order the targets are configured in
+     * @throws IOException
+     * @throws InterruptedException
      */
-    private void addToQueryString(String item) {
-        String currentQueryString = this.getQueryString();
-        String newQueryString = "";
+    private List<TriggeredBuild> triggerRemoteBuilds(final AbstractBuild build, BuildListener listener,
+            final MacroExpander expander, final RemoteBuildDeadline deadline, final RemoteBuildJoin joins)
+            throws IOException, InterruptedException {
+        List<RemoteBuildTarget> targets = new ArrayList<RemoteBuildTarget>();
+        targets.add(this.getPrimaryTarget());
+        targets.addAll(this.getTargets());
+
+        int parallelism = targets.size();
+        if (this.getMaxParallelTargets() > 0) {
+            parallelism = Math.min(parallelism, this.getMaxParallelTargets());
+        }
+        listener.getLogger().println("Triggering " + targets.size() + " remote jobs, " + parallelism + " at a time.");
 
-        if (currentQueryString == null || currentQueryString.equals("")) {
-            newQueryString = item;
-        } else {
-            newQueryString = currentQueryString + "&" + item;
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new NamingThreadFactory(
+                new DaemonThreadFactory(), "Remote build trigger for " + build.getFullDisplayName()));
+        CompletionService<TriggeredBuild> completionService = new ExecutorCompletionService<TriggeredBuild>(executor);
+
+        List<TriggeredBuild> triggeredBuilds = new ArrayList<TriggeredBuild>();
+        // the threads trace their target below the span of the build step
+        final RemoteTriggerTrace.Span stepSpan = RemoteTriggerTrace.current();
+        try {
+            for (int i = 0; i < targets.size(); i++) {
+                final TriggeredBuild triggeredBuild = new TriggeredBuild(targets.get(i));
+                // parameters are resolved up front, so that any problems with them show up in the right place
+                final ParameterTemplate.Resolved parameters = i == 0 ? getBuildStepParameters(build, listener,
+                        expander) : getTargetParameters(targets.get(i), expander);
+                triggeredBuilds.add(triggeredBuild);
+
+                completionService.submit(new Callable<TriggeredBuild>() {
+                    public TriggeredBuild call() throws Exception {
+                        BuildListener targetListener = new StreamBuildListener(triggeredBuild.log, Consts.UTF_8);
+                        RemoteTriggerTrace.Span span = stepSpan.child("target " + triggeredBuild.target.getJob())
+                                .activate();
+                        try {
+                            triggerRemoteBuild(triggeredBuild, parameters, build, targetListener, expander,
+                                    deadline, joins);
+                        } catch (IOException e) {
+                            // failBuild has already said why
+                            triggeredBuild.failure = e.getMessage();
+                        } finally {
+                            span.end();
+                            targetListener.getLogger().flush();
+                        }
+                        return triggeredBuild;
+                    }
+                });
+            }
+
+            for (int i = 0; i < targets.size(); i++) {
+                TriggeredBuild triggeredBuild;
+                try {
+                    triggeredBuild = completionService.take().get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof InterruptedException) {
+                        // the trigger was interrupted, which means we are being aborted ourselves
+                        throw (InterruptedException) e.getCause();
+                    }
+                    throw new IOException(e.getCause());
+                }
+                listener.getLogger().println("---- Remote job " + triggeredBuild.target + " ----");
+                listener.getLogger().print(triggeredBuild.log.toString("UTF-8"));
+                listener.getLogger().println("---- " + triggeredBuild.getOutcome() + " ----");
+            }
+        } finally {
+            // stops whatever is still going on if we were aborted
+            executor.shutdownNow();
         }
-        this.setQueryString(newQueryString);
+
+        listener.getLogger().println("Remote builds:");
+        for (TriggeredBuild triggeredBuild : triggeredBuilds) {
+            listener.getLogger().println("  " + triggeredBuild.target + ": " + triggeredBuild.getOutcome());
+        }
+        return triggeredBuilds;
     }
 
     /**
-     * Build the proper URL to trigger the remote build
-     * 
-     * All passed in string have already had their tokens replaced with real values. All 'params' also have the proper
-     * character encoding
+     * Triggers the remote job of the build step once for every row of the batch file, with the parameters of the build
+     * step plus those of the row. Rows are read one at a time, and no more than "maxParallelTargets" of them (or
+     * {@link #DEFAULT_BATCH_PARALLELISM}) are triggered (and waited for) at the same time; how fast they are sent to
+     * the remote server is up to its own limits. The result of each row is written to the result file as soon as it is
+     * known, and rows that an earlier run already got through are skipped (see {@link BatchResults}).
      * 
-     * @param job
-     *            Name of the remote job
-     * @param securityToken
-     *            Security token used to trigger remote job
-     * @param params
-     *            Parameters for the remote job
-     * @return fully formed, fully qualified remote trigger URL
+     * @param build
+     * @param listener
+     * @param expander
+     *            Resolves the variables and macros in the settings of the build step, for this run
+     * @param deadline
+     *            Deadline of the build step, which applies to the batch as a whole
+     * @param joins
+     *            Collects the remote builds to wait for in the background
+     * @throws IOException
+     * @throws InterruptedException
      */
-    private String buildTriggerUrl(String job, String securityToken, Collection<String> params) {
-        RemoteJenkinsServer remoteServer = this.findRemoteHost(this.getRemoteJenkinsName());
-        String triggerUrlString = remoteServer.getAddress().toString();
+    private void triggerBatch(final AbstractBuild build, final BuildListener listener,
+            final MacroExpander expander, final RemoteBuildDeadline deadline, final RemoteBuildJoin joins)
+            throws IOException, InterruptedException {
+        FilePath workspace = build.getWorkspace();
+        if (workspace == null) {
+            this.failBuild(new Exception("The build has no workspace to read the batch file from."), listener);
+            return;
+        }
+        FilePath batchFile = workspace.child(expander.expand(this.getBatchFile()));
+        FilePath resultFile = workspace.child(expander.expand(this.getBatchResultFile()));
+        if (!batchFile.exists()) {
+            this.failBuild(new Exception("The batch file " + batchFile.getRemote() + " does not exist."), listener);
+            return;
+        }
 
-        // start building the proper URL based on known capabiltiies of the remote server
-        if (remoteServer.getHasBuildTokenRootSupport()) {
-            triggerUrlString += buildTokenRootUrl;
-            triggerUrlString += getBuildTypeUrl();
+        final ParameterTemplate.Resolved stepParameters = getBuildStepParameters(build, listener, expander);
+        final RemoteBuildTarget target = this.getPrimaryTarget();
+        int parallelism = this.getMaxParallelTargets() > 0 ? this.getMaxParallelTargets() : DEFAULT_BATCH_PARALLELISM;
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new NamingThreadFactory(
+                new DaemonThreadFactory(), "Remote batch trigger for " + build.getFullDisplayName()));
+        // only as many rows as are being triggered are held in memory; reading the next one waits for a free thread
+        final Semaphore freeThreads = new Semaphore(parallelism);
+        final AtomicInteger failures = new AtomicInteger();
+        // the threads trace their row below the span of the build step
+        final RemoteTriggerTrace.Span stepSpan = RemoteTriggerTrace.current();
+        int rows = 0;
+
+        BatchResults openedResults = null;
+        ParameterTable table = null;
+        try {
+            openedResults = new BatchResults(resultFile);
+            final BatchResults results = openedResults;
+            if (results.getAcknowledgedCount() > 0) {
+                listener.getLogger().println("Skipping the " + results.getAcknowledgedCount()
+                        + " rows that were already triggered according to " + resultFile.getRemote() + ".");
+            }
+            table = new ParameterTable(batchFile.read(), batchFile.getName());
+            listener.getLogger().println("Triggering " + target + " for every row of " + batchFile.getRemote()
+                    + ", " + parallelism + " at a time.");
+
+            List<String> rowParameters;
+            while ((rowParameters = table.next()) != null) {
+                final int row = table.getRowNumber();
+                if (results.isAcknowledged(row)) {
+                    continue;
+                }
+                rows++;
+
+                // the parameters of the build step are only encoded once, not for every row
+                final ParameterTemplate.Resolved parameters = stepParameters.plus(rowParameters);
+
+                freeThreads.acquire();
+                executor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            triggerRow(row, parameters);
+                        } finally {
+                            freeThreads.release();
+                        }
+                    }
 
-            this.addToQueryString("job=" + this.encodeValue(job));
+                    private void triggerRow(int row, ParameterTemplate.Resolved parameters) {
+                        TriggeredBuild triggeredBuild = new TriggeredBuild(target);
+                        BuildListener rowListener = new StreamBuildListener(triggeredBuild.log, Consts.UTF_8);
+                        RemoteTriggerTrace.Span span = stepSpan.child("row " + row).activate();
+                        try {
+                            triggerRemoteBuild(triggeredBuild, parameters, build, rowListener, expander, deadline,
+                                    joins);
+                        } catch (InterruptedException e) {
+                            // the batch is being aborted; the row is not recorded, so a later run triggers it again
+                            Thread.currentThread().interrupt();
+                            return;
+                        } catch (Exception e) {
+                            // failBuild has already said why if it was an IOException
+                            triggeredBuild.failure = e.getMessage() == null ? e.toString() : e.getMessage();
+                        } finally {
+                            span.end();
+                        }
+                        rowListener.getLogger().flush();
+
+                        String result = getBatchResult(triggeredBuild);
+                        boolean acknowledged = result.equals(BatchResults.TRIGGERED)
+                                || result.equals(BatchResults.SUCCESS);
+                        if (!acknowledged) {
+                            failures.incrementAndGet();
+                        }
+                        synchronized (listener) {
+                            listener.getLogger().println("Row " + row + ": " + triggeredBuild.getOutcome());
+                            if (!acknowledged || triggeredBuild.failure != null) {
+                                listener.getLogger().print(triggeredBuild.log.toString());
+                            }
+                        }
+                        try {
+                            results.add(row, result, triggeredBuild.buildNumber);
+                        } catch (IOException e) {
+                            listener.error("Could not record the result of row " + row + ": " + e.getMessage());
+                        }
+                    }
+                });
+            }
 
-        } else {
-            triggerUrlString += "/job/";
-            triggerUrlString += this.encodeValue(job);
-            triggerUrlString += getBuildTypeUrl();
+            // wait for the rows still being triggered
+            freeThreads.acquire(parallelism);
+        } finally {
+            // stops whatever is still going on if we were aborted
+            executor.shutdownNow();
+            try {
+                if (table != null) {
+                    table.close();
+                }
+            } finally {
+                if (openedResults != null) {
+                    openedResults.close();
+                }
+            }
         }
 
-        // don't try to include a security token in the URL if none is provided
-        if (!securityToken.equals("")) {
-            this.addToQueryString("token=" + encodeValue(securityToken));
+        listener.getLogger().println("Triggered " + (rows - failures.get()) + " of " + rows
+                + " rows, the result of each is in " + resultFile.getRemote() + ".");
+        if (failures.get() > 0) {
+            this.failBuild(new Exception(failures.get() + " of " + rows + " rows of the batch failed. Run the build "
+                    + "again with the same result file to retry just those."), listener);
         }
+    }
 
-        // turn our Collection into a query string
-        String buildParams = buildUrlQueryString(params);
-
-        if (!buildParams.isEmpty()) {
-            this.addToQueryString(buildParams);
+    /**
+     * @param triggeredBuild
+     * @return what to record for the row in the result file of a batch
+     */
+    private String getBatchResult(TriggeredBuild triggeredBuild) {
+        boolean waitsForResult = this.getBlockBuildUntilComplete() && !this.getWaitAfterBuildSteps();
+        if (triggeredBuild.triggered && !waitsForResult) {
+            // whatever went wrong after that, triggering the row again would start a second remote build for it
+            return BatchResults.TRIGGERED;
         }
-
-        // by adding "delay=0", this will (theoretically) force this job to the top of the remote queue
-        this.addToQueryString("delay=0");
-
-        triggerUrlString += "?" + this.getQueryString();
-
-        return triggerUrlString;
+        if (triggeredBuild.failure != null) {
+            return "FAILED";
+        }
+        if (triggeredBuild.buildNumber < 0) {
+            return "NOT_TRIGGERED";
+        }
+        if (waitsForResult) {
+            return triggeredBuild.status;
+        }
+        return BatchResults.TRIGGERED;
     }
 
     /**
-     * Build the proper URL for GET calls
-     * 
-     * All passed in string have already had their tokens replaced with real values.
-     * 
-     * @param job
-     *            Name of the remote job
-     * @param securityToken
-     *            Security token used to trigger remote job
-     * @return fully formed, fully qualified remote trigger URL
+     * @param build
+     * @param listener
+     * @param expander
+     * @return the parameters to trigger the remote job of the build step itself with
      */
-    private String buildGetUrl(String job, String securityToken) {
-
-        RemoteJenkinsServer remoteServer = this.findRemoteHost(this.getRemoteJenkinsName());
-        String urlString = remoteServer.getAddress().toString();
-
-        urlString += "/job/";
-        urlString += this.encodeValue(job);
-
-        // don't try to include a security token in the URL if none is provided
-        if (!securityToken.equals("")) {
-            this.addToQueryString("token=" + encodeValue(securityToken));
+    private ParameterTemplate.Resolved getBuildStepParameters(AbstractBuild build, BuildListener listener,
+            MacroExpander expander) throws IOException, InterruptedException {
+        if (this.loadParamsFromFile) {
+            return ParameterTemplate.Resolved.of(loadExternalParameterFile(build, listener));
         }
-        return urlString;
+        return getTargetParameters(this.getPrimaryTarget(), expander);
     }
 
     /**
-     * Convenience function to mark the build as failed. It's intended to only be called from this.perform();
-     * 
-     * @param e
-     *            Exception that caused the build to fail
+     * @param target
+     * @param expander
+     * @return the parameters to trigger the remote job of the target with, with any variables resolved
+     */
+    private ParameterTemplate.Resolved getTargetParameters(RemoteBuildTarget target, MacroExpander expander) {
+        // only the parameters with variables in them are resolved (and encoded) here, the others were when the
+        // configuration was loaded
+        return target.getParameterTemplate().resolve(expander);
+    }
+
+    /**
+     * @param target
+     * @param build
      * @param listener
-     *            Build Listener
+     * @param expander
+     * @return the files to upload to the file parameters of the remote job of the target, by parameter name, or null
+     *         if one of them doesn't exist and the build is to continue anyway
      * @throws IOException
+     *             if one of the files doesn't exist, and the build is to fail because of it
+     * @throws InterruptedException
      */
-    private void failBuild(Exception e, BuildListener listener) throws IOException {
-        e.getStackTrace();
-        if (this.getShouldNotFailBuild()) {
-            listener.error("Remote build failed for the following reason, but the build will continue:");
-            listener.error(e.getMessage());
-        } else {
-            listener.error("Remote build failed for the following reason:");
-            throw new AbortException(e.getMessage());
+    private Map<String, FilePath> getFileParameters(RemoteBuildTarget target, AbstractBuild build,
+            BuildListener listener, MacroExpander expander) throws IOException, InterruptedException {
+        Map<String, FilePath> files = new LinkedHashMap<String, FilePath>();
+        List<String> fileParams = getCleanedParameters(target.getFileParameterList());
+        if (fileParams.isEmpty()) {
+            return files;
         }
+
+        FilePath workspace = build.getWorkspace();
+        if (workspace == null) {
+            this.failBuild(new Exception("The build has no workspace to upload file parameters from."), listener);
+            return null;
+        }
+        for (String fileParam : fileParams) {
+            fileParam = expander.expand(fileParam);
+            int separator = fileParam.indexOf('=');
+            if (separator <= 0) {
+                this.failBuild(new Exception("The file parameter \"" + fileParam
+                        + "\" should be given as name=path in the workspace."), listener);
+                return null;
+            }
+            FilePath file = workspace.child(fileParam.substring(separator + 1).trim());
+            if (!file.exists()) {
+                this.failBuild(new Exception("The file " + file.getRemote() + " to upload as file parameter "
+                        + fileParam.substring(0, separator) + " does not exist."), listener);
+                return null;
+            }
+            files.put(fileParam.substring(0, separator).trim(), file);
+        }
+        return files;
     }
-    
-  
+
     /**
-     * Performs the trigger remote job action. This jobs sets the following Environment Variables (the names are copied from Parameterized Trigger Plugin (see getEnvVarsMap).
+     * Triggers the remote job of one target, and waits for it if the build step is told to.
+     * 
+     * @param triggeredBuild
+     *            Keeps track of the remote build, as far as the build step gets with it
+     * @param cleanedParams
+     *            Parameters for the remote job, with any variables already resolved
      * @param build
-     * @param launcher
      * @param listener
-     * @return
+     * @param expander
+     *            Resolves the variables and macros in the settings of the build step, for this run
+     * @param deadline
+     *            Deadline of the build step
+     * @param joins
+     *            Collects the remote builds to wait for in the background, which may be done on another thread than
+     *            the one running the build
      * @throws InterruptedException
      * @throws IOException
-     * @throws IllegalArgumentException 
      */
-    @Override
-    public boolean perform(AbstractBuild build, Launcher launcher, BuildListener listener) throws InterruptedException,
-            IOException, IllegalArgumentException {
-
-        RemoteJenkinsServer remoteServer = this.findRemoteHost(this.getRemoteJenkinsName());
+    private void triggerRemoteBuild(TriggeredBuild triggeredBuild, ParameterTemplate.Resolved cleanedParams,
+            AbstractBuild build, BuildListener listener, MacroExpander expander, RemoteBuildDeadline deadline,
+            RemoteBuildJoin joins) throws InterruptedException, IOException {
+        RemoteBuildTarget target = triggeredBuild.target;
+        String remoteJenkinsName = target.getRemoteJenkinsName();
+        RemoteJenkinsServer remoteServer = this.findRemoteHost(remoteJenkinsName);
 
         // Stores the status of the remote build
         String buildStatusStr = "UNKNOWN";
 
         if (remoteServer == null) {
             this.failBuild(new Exception("No remote host is defined for this job."), listener);
-            return true;
+            return;
         }
         String remoteServerURL = remoteServer.getAddress().toString();
-        List<String> cleanedParams = null;
 
-        if (this.loadParamsFromFile) {
-            cleanedParams = loadExternalParameterFile(build);
-        } else {
-            // tokenize all variables and encode all variables, then build the fully-qualified trigger URL
-            cleanedParams = getCleanedParameters();
-            cleanedParams = replaceTokens(build, listener, cleanedParams);
+        // resolve the credentials (and any macros in them) once, rather than for every call to the remote server
+        String authorization;
+        try {
+            authorization = this.getAuthorizationHeader(remoteServer, expander);
+        } catch (MacroEvaluationException e) {
+            this.failBuild(e, listener);
+            return;
         }
 
-        String jobName = replaceToken(build, listener, this.getJob());
+        String jobName = expander.expand(target.getJob());
+        triggeredBuild.jobName = jobName;
+
+        String securityToken = expander.expand(target.getToken());
 
-        String securityToken = replaceToken(build, listener, this.getToken());
+        Map<String, FilePath> fileParams = getFileParameters(target, build, listener, expander);
+        if (fileParams == null) {
+            return;
+        }
 
-        String triggerUrlString = this.buildTriggerUrl(jobName, securityToken, cleanedParams);
+        // everything this run needs to call the remote job; nothing of it is kept in the (shared) build step
+        RemoteBuildRequest request = new RemoteBuildRequest(remoteServer, jobName, securityToken, cleanedParams,
+                fileParams, target.getParameters().length() > 0 || !cleanedParams.isEmpty()
+                        || !fileParams.isEmpty());
+        String triggerUrlString = request.getTriggerUrl();
 
         // Trigger remote job
         // print out some debugging information to the console
@@ -495,140 +973,601 @@ public class RemoteBuildConfiguration extends Builder {
         //listener.getLogger().println("URL: " + triggerUrlString);
         listener.getLogger().println("Triggering this remote job: " + jobName);
 
+        PollSchedule pollSchedule = this.getPollSchedule();
+        PollStatistics pollStatistics = new PollStatistics();
+        TransferStatistics transferStatistics = new TransferStatistics();
+
+        RemoteTriggerMetrics.JobMetrics jobMetrics = RemoteTriggerMetrics.forServer(remoteServer).forJob(jobName);
+
         // get the ID of the Next Job to run.
         if (this.getPreventRemoteBuildQueue()) {
-            listener.getLogger().println("Checking that the remote job " + jobName + " is not currently building.");
-            String preCheckUrlString = this.buildGetUrl(jobName, securityToken);
-            preCheckUrlString += "/lastBuild";
-            preCheckUrlString += "/api/json/";
-            JSONObject preCheckResponse = sendHTTPCall(preCheckUrlString, "GET", build, listener);
-            
-            if ( preCheckResponse != null ) {
-                // check the latest build on the remote server to see if it's running - if so wait until it has stopped.
-                // if building is true then the build is running
-                // if result is null the build hasn't finished - but might not have started running.
-                while (preCheckResponse.getBoolean("building") == true || preCheckResponse.getString("result") == null) {
-                    listener.getLogger().println("Remote build is currently running. Waiting for it to finish - "+ this.pollInterval + " seconds until next retry.");
-                    // Sleep for 'pollInterval' seconds.
-                    // Sleep takes miliseconds so need to convert this.pollInterval to milisecopnds (x 1000)
-                    try {
-                        Thread.sleep(this.pollInterval * 1000);
-                    } catch (InterruptedException e) {
-                        this.failBuild(e, listener);
+            long preCheckStarted = System.currentTimeMillis();
+            RemoteTriggerTrace.Span preCheckSpan = RemoteTriggerTrace.start("pre-check");
+            try {
+                listener.getLogger().println("Checking that the remote job " + jobName + " is not currently building.");
+                String preCheckUrlString = request.getJobUrl();
+                preCheckUrlString += "/lastBuild";
+                preCheckUrlString += "/api/json/";
+                JSONObject preCheckResponse = sendHTTPCall(remoteServer, authorization, preCheckUrlString, "GET", build, listener, transferStatistics,
+                        deadline, "building,result");
+                
+                if ( preCheckResponse != null ) {
+                    // check the latest build on the remote server to see if it's running - if so wait until it has stopped.
+                    // if building is true then the build is running
+                    // if result is null the build hasn't finished - but might not have started running.
+                    int attempt = 0;
+                    while (preCheckResponse.getBoolean("building") == true || preCheckResponse.getString("result") == null) {
+                        long delay = pollSchedule.getDelay(PollSchedule.Phase.PRE_CHECK, attempt++, this.pollInterval, -1);
+                        listener.getLogger().println("Remote build is currently running. Waiting for it to finish - "+ delay / 1000 + " seconds until next retry.");
+                        // Sleep for as long as the poll schedule tells us to
+                        try {
+                            deadline.sleep(delay);
+                        } catch (RemoteBuildDeadline.DeadlineExceededException e) {
+                            this.failBuild(e, listener);
+                            return;
+                        }
+                        pollStatistics.add(1, delay);
+                        preCheckResponse = sendHTTPCall(remoteServer, authorization, preCheckUrlString, "GET", build, listener, transferStatistics,
+                                deadline, "building,result");
                     }
-                    preCheckResponse = sendHTTPCall(preCheckUrlString, "POST", build, listener);
+                    listener.getLogger().println("Remote job remote job " + jobName + " is not currenlty building.");    
+                    jobMetrics.recordPreCheckWait(System.currentTimeMillis() - preCheckStarted);
+                } else {
+                    this.failBuild(new Exception("Got a blank response from Remote Jenkins Server, cannot continue."), listener);
                 }
-                listener.getLogger().println("Remote job remote job " + jobName + " is not currenlty building.");    
-            } else {
-                this.failBuild(new Exception("Got a blank response from Remote Jenkins Server, cannot continue."), listener);
+            } finally {
+                preCheckSpan.end();
             }
 
         } else {
             listener.getLogger().println("Not checking if the remote job " + jobName + " is building.");
         }
 
-        String queryUrlString = this.buildGetUrl(jobName, securityToken);
-        queryUrlString += "/api/json/";
+        int nextBuildNumber;
 
-        //listener.getLogger().println("Getting ID of next job to build. URL: " + queryUrlString);
-        JSONObject queryResponseObject = sendHTTPCall(queryUrlString, "GET", build, listener);
-        if (queryResponseObject == null ) {
-            //This should not happen as this page should return a JSON object
-            this.failBuild(new Exception("Got a blank response from Remote Jenkins Server [" + remoteServerURL + "], cannot continue."), listener);
+        // the rows of a batch are triggered at the same time, so they would all guess the same next build number
+        boolean trackQueueItem = this.getTrackRemoteQueueItem() || this.getBatch();
+        if (trackQueueItem) {
+            // the build number is only known once the remote build has left the queue, see below
+            nextBuildNumber = -1;
+        } else {
+            String queryUrlString = request.getJobUrl();
+            queryUrlString += "/api/json/";
+
+            //listener.getLogger().println("Getting ID of next job to build. URL: " + queryUrlString);
+            JSONObject queryResponseObject = sendHTTPCall(remoteServer, authorization, queryUrlString, "GET", build, listener, transferStatistics,
+                    deadline, "nextBuildNumber");
+            if (queryResponseObject == null ) {
+                //This should not happen as this page should return a JSON object
+                this.failBuild(new Exception("Got a blank response from Remote Jenkins Server [" + remoteServerURL + "], cannot continue."), listener);
+            }
+
+            nextBuildNumber = queryResponseObject.getInt("nextBuildNumber");
+            listener.getLogger().println("This job is build #[" + Integer.toString(nextBuildNumber) + "] on the remote server.");
         }
-        
-        int nextBuildNumber = queryResponseObject.getInt("nextBuildNumber");
-        listener.getLogger().println("This job is build #[" + Integer.toString(nextBuildNumber) + "] on the remote server.");
 
         if (this.getOverrideAuth()) {
             listener.getLogger().println(
                     "Using job-level defined credentails in place of those from remote Jenkins config ["
-                            + this.getRemoteJenkinsName() + "]");
+                            + remoteJenkinsName + "]");
         }
 
-        listener.getLogger().println("Triggering remote job now.");
-        sendHTTPCall(triggerUrlString, "POST", build, listener);
-        
-        //Have to form the string ourselves, as we might not get a response from non-parameterized builds
-        String jobURL = remoteServerURL + "/job/" + this.encodeValue(job) + "/";
-
-        // This is only for Debug
-        // This output whether there is another job running on the remote host that this job had conflicted with.
-        // The first condition is what is expected, The second is what would happen if two jobs launched jobs at the
-        // same time (and two remote builds were triggered).
-        // The third is what would happen if this job was triggers and the remote queue was already full (as the 'next
-        // build bumber' would still be the same after this job has triggered the remote job)
-        // int newNextBuildNumber = responseObject.getInt( "nextBuildNumber" ); // This should be nextBuildNumber + 1 OR
-        // there has been another job scheduled.
-        // if (newNextBuildNumber == (nextBuildNumber + 1)) {
-        // listener.getLogger().println("DEBUG: No other jobs triggered" );
-        // } else if( newNextBuildNumber > (nextBuildNumber + 1) ) {
-        // listener.getLogger().println("DEBUG: WARNING Other jobs triggered," + newNextBuildNumber + ", " +
-        // nextBuildNumber );
-        // } else {
-        // listener.getLogger().println("DEBUG: WARNING Did not get the correct build number for the triggered job, previous nextBuildNumber:"
-        // + newNextBuildNumber + ", newNextBuildNumber" + nextBuildNumber );
-        // }
-
-        // If we are told to block until remoteBuildComplete:
-        if (this.getBlockBuildUntilComplete()) {
-            listener.getLogger().println("Blocking local job until remote job completes");
-            // Form the URL for the triggered job
-            String jobLocation = jobURL + nextBuildNumber + "/api/json";
-
-            buildStatusStr = getBuildStatus(jobLocation, build, listener);
-
-            while (buildStatusStr.equals("not started")) {
-                listener.getLogger().println("Waiting for remote build to start - " + this.pollInterval + " seconds until next poll.");
-
-                // Sleep for 'pollInterval' seconds.
-                // Sleep takes miliseconds so need to convert this.pollInterval to milisecopnds (x 1000)
+        // wait for the remote server to have room for one more build, in line with the other jobs triggering on it
+        RemoteTriggerTrace.Span slotSpan = RemoteTriggerTrace.start("build slot");
+        RemoteRequestLimiter.BuildSlot buildSlot;
+        try {
+            buildSlot = acquireBuildSlot(remoteServer, build, listener, deadline);
+        } finally {
+            slotSpan.end();
+        }
+        if (buildSlot == null) {
+            this.failBuild(new RemoteBuildDeadline.DeadlineExceededException(deadline.getTimeout()), listener);
+            return;
+        }
+        try {
+            listener.getLogger().println("Triggering remote job now.");
+            ConnectionResponse triggerResponse = sendProjectedRequest(remoteServer, authorization, triggerUrlString,
+                    "POST", request.getTriggerEntity(listener.getLogger()), build, listener, transferStatistics, deadline,
+                    JsonProjection.fromTree(null), 1);
+            if (triggerResponse == null) {
+                // the remote server did not take the trigger (and we have said why), so there is no build to wait for
+                return;
+            }
+            // the remote build is queued from here on, until the status poller sees it running
+            long triggered = System.currentTimeMillis();
+            jobMetrics.recordTriggered();
+            triggeredBuild.triggered = true;
+
+            if (trackQueueItem) {
+                // Jenkins answers a trigger with the location of the queue item it created for it, which is the only
+                // reliable way of telling which build is ours.
+                String queueItemLocation = triggerResponse.getHeader("Location");
+
+                if (queueItemLocation == null) {
+                    this.failBuild(new Exception("The remote server did not say where the build was queued. It might be too old to support tracking builds through the remote queue."), listener);
+                    return;
+                }
+
+                RemoteTriggerTrace.Span queueSpan = RemoteTriggerTrace.start("queue item");
                 try {
-                    // Could do with a better way of sleeping...
-                    Thread.sleep(this.pollInterval * 1000);
-                } catch (InterruptedException e) {
-                    this.failBuild(e, listener);
+                    nextBuildNumber = waitForQueueItem(remoteServer, authorization, queueItemLocation,
+                            pollStatistics, transferStatistics, deadline, build, listener);
+                } finally {
+                    queueSpan.end();
+                }
+                if (nextBuildNumber < 0) {
+                    return;
+                }
+                listener.getLogger().println("This job is build #[" + Integer.toString(nextBuildNumber) + "] on the remote server.");
+            }
+
+            triggeredBuild.buildNumber = nextBuildNumber;
+
+            // This is only for Debug
+            // This output whether there is another job running on the remote host that this job had conflicted with.
+            // The first condition is what is expected, The second is what would happen if two jobs launched jobs at
+            // the same time (and two remote builds were triggered).
+            // The third is what would happen if this job was triggers and the remote queue was already full (as the
+            // 'next build bumber' would still be the same after this job has triggered the remote job)
+            // int newNextBuildNumber = responseObject.getInt( "nextBuildNumber" ); // This should be nextBuildNumber + 1
+            // OR there has been another job scheduled.
+            // if (newNextBuildNumber == (nextBuildNumber + 1)) {
+            // listener.getLogger().println("DEBUG: No other jobs triggered" );
+            // } else if( newNextBuildNumber > (nextBuildNumber + 1) ) {
+            // listener.getLogger().println("DEBUG: WARNING Other jobs triggered," + newNextBuildNumber + ", " +
+            // nextBuildNumber );
+            // } else {
+            // listener.getLogger().println("DEBUG: WARNING Did not get the correct build number for the triggered job, previous nextBuildNumber:"
+            // + newNextBuildNumber + ", newNextBuildNumber" + nextBuildNumber );
+            // }
+
+            // If we are told to block until remoteBuildComplete:
+            if (this.getBlockBuildUntilComplete() && this.getWaitAfterBuildSteps()) {
+                // hand the remote build over to the status poller, and let the local build wait for it after its last
+                // build step (see RemoteBuildJoin)
+                RemoteBuildStatusPoller.WaitingBuild waitingBuild = registerRemoteBuild(remoteServer, authorization,
+                        jobName, nextBuildNumber, triggered, 0);
+                waitingBuild.onDone(releaseWhenDone(buildSlot));
+                buildSlot = null;
+                joins.add(this, jobName, waitingBuild,
+                        createConsoleMirror(remoteServer, authorization, jobName, nextBuildNumber), deadline);
+                listener.getLogger().println("Not blocking local job until remote job completes - the local build will wait for it after its last build step.");
+            } else if (this.getBlockBuildUntilComplete()) {
+                listener.getLogger().println("Blocking local job until remote job completes");
+
+                buildStatusStr = waitForRemoteBuild(remoteServer, authorization, jobName, nextBuildNumber,
+                        triggered, createConsoleMirror(remoteServer, authorization, jobName, nextBuildNumber),
+                        pollStatistics, transferStatistics, deadline, listener);
+                if (buildStatusStr == null) {
+                    // we gave up waiting, and have already said why
+                    buildStatusStr = "UNKNOWN";
+                }
+                triggeredBuild.status = buildStatusStr;
+                listener.getLogger().println("Remote build finished with status " + buildStatusStr + ".");
+
+                String buildUrl = request.getJobUrl() + "/" + nextBuildNumber;
+                if (this.getDownloadArtifacts() && !buildStatusStr.equals("UNKNOWN")) {
+                    RemoteTriggerTrace.Span downloadSpan = RemoteTriggerTrace.start("download artifacts");
+                    try {
+                        downloadArtifacts(remoteServer, authorization, buildUrl, build, listener, expander,
+                                transferStatistics, deadline);
+                    } finally {
+                        downloadSpan.end();
+                    }
+                }
+                if (this.getSummarizeTestResults() && !buildStatusStr.equals("UNKNOWN")) {
+                    triggeredBuild.testReport = fetchTestReport(remoteServer, authorization, buildUrl, build,
+                            listener, transferStatistics, deadline);
+                    triggeredBuild.buildUrl = buildUrl;
+                }
+
+                // If build did not finish with 'success' then fail build step.
+                if (!buildStatusStr.equals("SUCCESS")) {
+                    // failBuild will check if the 'shouldNotFailBuild' parameter is set or not, so will decide how to
+                    // handle the failure.
+                    this.failBuild(new Exception("The remote job did not succeed."), listener);
+                }
+            } else {
+                listener.getLogger().println("Not blocking local job until remote job completes - fire and forget.");
+                if (remoteServer.getMaxOutstandingBuilds() > 0) {
+                    // the build still counts towards the builds outstanding on the remote server until it has finished,
+                    // or until it is clear that it is never going to start (if the build number was guessed wrong)
+                    long startTimeout = this.getTimeout() > 0 ? this.getTimeout() * 60000L
+                            : FIRE_AND_FORGET_START_TIMEOUT;
+                    RemoteBuildStatusPoller.WaitingBuild waitingBuild = registerRemoteBuild(remoteServer, authorization,
+                            jobName, nextBuildNumber, triggered, startTimeout);
+                    waitingBuild.onDone(releaseWhenDone(buildSlot));
+                    buildSlot = null;
+                }
+            }
+        } finally {
+            // unless it was handed over to the status poller, the slot is no longer needed once the build step is done
+            if (buildSlot != null) {
+                buildSlot.release();
+            }
+        }
+        
+        
+        listener.getLogger().println(pollStatistics.getSummary(pollSchedule, this.pollInterval));
+        listener.getLogger().println(transferStatistics.getSummary());
+        listener.getLogger().println(
+                "Connection pool for remote server [" + remoteServer.getDisplayName() + "]: "
+                        + remoteServer.getConnectionPoolStats());
+        listener.getLogger().println(
+                "Request limiter for remote server [" + remoteServer.getDisplayName() + "]: "
+                        + remoteServer.getRequestLimiterStats());
+    }
+    
+    /**
+     * Waits until the remote server may be given one more build to run, according to its configured limits.
+     * 
+     * @param remoteServer
+     * @param build
+     * @param listener
+     * @param deadline
+     *            Deadline of the build step, after which it stops waiting
+     * @return the slot of the build, which must be released once the remote build has finished, or null if the
+     *         deadline passed first
+     * @throws InterruptedException
+     */
+    private RemoteRequestLimiter.BuildSlot acquireBuildSlot(RemoteJenkinsServer remoteServer, AbstractBuild build,
+            BuildListener listener, RemoteBuildDeadline deadline) throws InterruptedException {
+        RemoteRequestLimiter requestLimiter = remoteServer.getRequestLimiter();
+
+        RemoteRequestLimiter.Stats stats = requestLimiter.getStats();
+        if (remoteServer.getMaxOutstandingBuilds() > 0
+                && (stats.getQueuedTriggers() > 0 || stats.getOutstandingBuilds() >= remoteServer.getMaxOutstandingBuilds())) {
+            listener.getLogger().println("The remote server [" + remoteServer.getDisplayName() + "] already has "
+                    + stats.getOutstandingBuilds() + " triggered builds outstanding, waiting in line behind "
+                    + stats.getQueuedTriggers() + " other triggers.");
+        }
+
+        RemoteRequestLimiter.BuildSlot buildSlot = requestLimiter.acquireBuildSlot(build.getProject().getFullName(),
+                deadline.getRemaining());
+        if (buildSlot != null && buildSlot.getWaitTime() >= 1000) {
+            listener.getLogger().println("Waited " + buildSlot.getWaitTime() / 1000 + " seconds for the remote server to have room for this build.");
+        }
+        return buildSlot;
+    }
+
+    private static Runnable releaseWhenDone(final RemoteRequestLimiter.BuildSlot buildSlot) {
+        return new Runnable() {
+            public void run() {
+                buildSlot.release();
+            }
+        };
+    }
+
+    /**
+     * Polls the remote queue item of a triggered build until the remote server has started the build, and returns the
+     * number it was given.
+     * 
+     * @param remoteServer
+     * @param authorization
+     *            Value of the "Authorization" header to use, or null if none is needed
+     * @param queueItemLocation
+     *            URL of the queue item, as given in the "Location" header of the trigger response
+     * @param pollStatistics
+     *            Keeps track of the polls made while waiting
+     * @param transferStatistics
+     *            Keeps track of the data received while waiting
+     * @param deadline
+     *            Deadline of the build step, after which it stops waiting
+     * @param build
+     * @param listener
+     * @return the remote build number, or -1 if the build will never start, or we stopped waiting for it (and the
+     *         local build should carry on)
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private int waitForQueueItem(RemoteJenkinsServer remoteServer, String authorization, String queueItemLocation,
+            PollStatistics pollStatistics, TransferStatistics transferStatistics, RemoteBuildDeadline deadline,
+            AbstractBuild build, BuildListener listener) throws IOException, InterruptedException {
+        String queueItemUrlString = queueItemLocation;
+        if (!queueItemUrlString.endsWith("/")) {
+            queueItemUrlString += "/";
+        }
+        queueItemUrlString += "api/json/";
+
+        PollSchedule pollSchedule = this.getPollSchedule();
+        int attempt = 0;
+
+        while (true) {
+            JSONObject queueItem = sendHTTPCall(remoteServer, authorization, queueItemUrlString, "GET", build, listener, transferStatistics,
+                    deadline, "cancelled,executable[number]");
+
+            if (queueItem == null) {
+                // Jenkins only keeps queue items around for a few minutes after they have left the queue
+                this.failBuild(new Exception("The remote queue item for this build could not be found."), listener);
+                return -1;
+            }
+            if (queueItem.optBoolean("cancelled")) {
+                this.failBuild(new Exception("The remote build was cancelled while it was waiting in the queue."), listener);
+                return -1;
+            }
+
+            JSONObject executable = queueItem.optJSONObject("executable");
+            if (executable != null && !executable.isNullObject() && executable.has("number")) {
+                return executable.getInt("number");
+            }
+
+            long delay = pollSchedule.getDelay(PollSchedule.Phase.QUEUED, attempt++, this.pollInterval, -1);
+            listener.getLogger().println("Waiting for remote build to leave the queue - " + delay / 1000 + " seconds until next poll.");
+
+            // Sleep for as long as the poll schedule tells us to
+            try {
+                deadline.sleep(delay);
+            } catch (RemoteBuildDeadline.DeadlineExceededException e) {
+                this.failBuild(e, listener);
+                return -1;
+            }
+            pollStatistics.add(1, delay);
+        }
+    }
+
+    /**
+     * Waits for a remote build to finish. The build is polled by the status poller of the remote server, which polls
+     * all builds of the same remote job with one request.
+     * 
+     * @param remoteServer
+     * @param authorization
+     *            Value of the "Authorization" header to use, or null if none is needed
+     * @param jobName
+     *            Name of the remote job
+     * @param buildNumber
+     *            Number of the remote build
+     * @param triggered
+     *            When the remote build was triggered, from System.currentTimeMillis()
+     * @param mirror
+     *            Copies the console output of the remote build into the local build log, or null if it isn't
+     * @param pollStatistics
+     *            Keeps track of the polls made while waiting
+     * @param transferStatistics
+     *            Keeps track of the data received while waiting
+     * @param deadline
+     *            Deadline of the build step, after which it stops waiting
+     * @param listener
+     * @return the result of the remote build, or null if we stopped waiting for it
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private String waitForRemoteBuild(RemoteJenkinsServer remoteServer, String authorization, String jobName,
+            int buildNumber, long triggered, RemoteConsoleMirror mirror, PollStatistics pollStatistics,
+            TransferStatistics transferStatistics, RemoteBuildDeadline deadline, BuildListener listener)
+            throws IOException, InterruptedException {
+        // the deadline of the build step decides how long to wait for the build to start
+        RemoteBuildStatusPoller.WaitingBuild waitingBuild = registerRemoteBuild(remoteServer, authorization, jobName,
+                buildNumber, triggered, 0);
+        return awaitRemoteBuild(waitingBuild, mirror, pollStatistics, transferStatistics, deadline, listener);
+    }
+
+    /**
+     * @param remoteServer
+     * @param authorization
+     * @param jobName
+     * @param buildNumber
+     * @return copies the console output of the remote build into the local build log, or null if the build step
+     *         isn't told to (or can't, see {@link #isMirroringConsole})
+     */
+    private RemoteConsoleMirror createConsoleMirror(RemoteJenkinsServer remoteServer, String authorization,
+            String jobName, int buildNumber) {
+        if (!this.isMirroringConsole()) {
+            return null;
+        }
+        return new RemoteConsoleMirror(remoteServer, authorization, jobName, buildNumber);
+    }
+
+    /**
+     * @return whether the console output of the remote build is copied into the build log. It isn't when several
+     *         remote builds are triggered at once (targets or a batch): their output would have to be held back, in
+     *         memory, until each of them is done.
+     */
+    private boolean isMirroringConsole() {
+        return this.getMirrorConsole() && this.getTargets().isEmpty() && !this.getBatch();
+    }
+
+    /**
+     * Starts polling the status of a remote build, using the status poller of the remote server.
+     * 
+     * @param remoteServer
+     * @param authorization
+     *            Value of the "Authorization" header to use, or null if none is needed
+     * @param jobName
+     *            Name of the remote job
+     * @param buildNumber
+     *            Number of the remote build
+     * @param triggered
+     *            When the remote build was triggered, from System.currentTimeMillis()
+     * @param startTimeout
+     *            Milliseconds after which to give up on the build if it still hasn't started, or 0 to wait as long
+     *            as it takes
+     * @return the build being polled
+     */
+    private RemoteBuildStatusPoller.WaitingBuild registerRemoteBuild(RemoteJenkinsServer remoteServer,
+            String authorization, String jobName, int buildNumber, long triggered, long startTimeout) {
+        return remoteServer.getStatusPoller().register(jobName, buildNumber, authorization, this.getPollSchedule(),
+                this.pollInterval, this.getConnectionRetryLimit(), triggered, startTimeout);
+    }
+
+    /**
+     * Waits for a remote build that is being polled to finish, and stops polling it.
+     * 
+     * @param waitingBuild
+     * @param mirror
+     *            Copies the console output of the remote build into the local build log, or null if it isn't
+     * @param pollStatistics
+     *            Keeps track of the polls made while waiting
+     * @param transferStatistics
+     *            Keeps track of the data received while waiting
+     * @param deadline
+     *            Deadline of the build step, after which it stops waiting
+     * @param listener
+     * @return the result of the remote build, or null if we stopped waiting for it
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private String awaitRemoteBuild(RemoteBuildStatusPoller.WaitingBuild waitingBuild, RemoteConsoleMirror mirror,
+            PollStatistics pollStatistics, TransferStatistics transferStatistics, RemoteBuildDeadline deadline,
+            BuildListener listener) throws IOException, InterruptedException {
+        RemoteTriggerTrace.Span span = RemoteTriggerTrace.start("waiting to start");
+        try {
+            String buildStatusStr = awaitStatus(waitingBuild, deadline);
+
+            while (buildStatusStr == null || buildStatusStr.equals("not started")) {
+                listener.getLogger().println("Waiting for remote build to start - " + waitingBuild.getSecondsUntilNextPoll() + " seconds until next poll.");
+                buildStatusStr = awaitStatus(waitingBuild, deadline);
+            }
+            span.end();
+
+            listener.getLogger().println("Remote build started!");
+            span = RemoteTriggerTrace.start("running");
+            RemoteConsoleMirror activeMirror = mirror;
+            if (activeMirror != null) {
+                listener.getLogger().println("---- Console output of the remote build ----");
+            }
+            while (buildStatusStr.equals("running")) {
+                if (activeMirror != null) {
+                    // the output is copied every time the status is polled, instead of saying we're still waiting
+                    activeMirror = updateConsoleMirror(activeMirror, false, deadline, listener);
+                } else {
+                    listener.getLogger().println("Waiting for remote build to finish - " + waitingBuild.getSecondsUntilNextPoll() + " seconds until next poll.");
                 }
-                buildStatusStr = getBuildStatus(jobLocation, build, listener);
+                buildStatusStr = awaitStatus(waitingBuild, deadline);
+            }
+            if (activeMirror != null) {
+                updateConsoleMirror(activeMirror, true, deadline, listener);
+                listener.getLogger().println("---- End of console output of the remote build ----");
+            }
+
+            span.attribute("status", buildStatusStr);
+            return buildStatusStr;
+        } catch (IOException e) {
+            // polling failed more than connectionRetryLimit times in a row, or the deadline passed
+            this.failBuild(e, listener);
+        } finally {
+            span.end();
+            waitingBuild.cancel();
+            pollStatistics.add(waitingBuild.getDelayedPolls(), waitingBuild.getTimeWaited());
+            transferStatistics.add(waitingBuild.getPolls(), waitingBuild.getBytesReceived());
+            if (mirror != null) {
+                transferStatistics.add(mirror.getRequests(), mirror.getBytesReceived());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Copies the console output of the remote build added since the last update into the local build log. Failing to
+     * do so doesn't fail the build step, it only stops the copying.
+     * 
+     * @param mirror
+     * @param finish
+     *            Whether the remote build is done, and the rest of its output should be copied
+     * @param deadline
+     *            Deadline of the build step
+     * @param listener
+     * @return the mirror, or null if it failed and should not be used again
+     * @throws RemoteBuildDeadline.DeadlineExceededException
+     *             if the deadline passed while copying
+     * @throws InterruptedException
+     */
+    private static RemoteConsoleMirror updateConsoleMirror(RemoteConsoleMirror mirror, boolean finish,
+            RemoteBuildDeadline deadline, BuildListener listener)
+            throws RemoteBuildDeadline.DeadlineExceededException, InterruptedException {
+        try {
+            if (finish) {
+                mirror.finish(listener.getLogger(), deadline);
+            } else {
+                mirror.update(listener.getLogger(), deadline);
+            }
+            return mirror;
+        } catch (RemoteBuildDeadline.DeadlineExceededException e) {
+            throw e;
+        } catch (IOException e) {
+            listener.getLogger().println();
+            listener.getLogger().println("Could not copy the console output of the remote build, giving up on it: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static String awaitStatus(RemoteBuildStatusPoller.WaitingBuild waitingBuild, RemoteBuildDeadline deadline)
+            throws IOException, InterruptedException {
+        RemoteTriggerTrace.Span span = RemoteTriggerTrace.start("await status");
+        // the status poller traces the requests it makes in the meantime below the span
+        waitingBuild.setTraceSpan(span);
+        String status;
+        try {
+            status = waitingBuild.awaitStatus(deadline.getRemaining());
+            span.attribute("status", status).attribute("polls", waitingBuild.getPolls());
+        } finally {
+            waitingBuild.setTraceSpan(RemoteTriggerTrace.Span.NONE);
+            span.end();
+        }
+        if (status == null || status.equals("not started") || status.equals("running")) {
+            deadline.check();
+        }
+        return status;
+    }
+
+    /**
+     * Waits for a remote build that was triggered by a build step set to wait after the build steps, once the local
+     * build has run its other build steps, and sets the TRIGGERED_BUILD_RESULT_* variables the same way a blocking build step would have.
+     * 
+     * @param jobName
+     *            Name of the remote job
+     * @param waitingBuild
+     *            The remote build, as registered when it was triggered
+     * @param mirror
+     *            Copies the console output of the remote build into the local build log, or null if it isn't
+     * @param deadline
+     *            Deadline of the build step that triggered the remote build
+     * @param build
+     * @param listener
+     * @return false if the local build should fail
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    boolean joinRemoteBuild(String jobName, RemoteBuildStatusPoller.WaitingBuild waitingBuild,
+            RemoteConsoleMirror mirror, RemoteBuildDeadline deadline, AbstractBuild build, BuildListener listener)
+            throws IOException, InterruptedException {
+        PollStatistics pollStatistics = new PollStatistics();
+        TransferStatistics transferStatistics = new TransferStatistics();
+
+        listener.getLogger().println(
+                "Waiting for remote job " + jobName + " build #[" + waitingBuild.getBuildNumber() + "] to complete.");
+        try {
+            String buildStatusStr = awaitRemoteBuild(waitingBuild, mirror, pollStatistics, transferStatistics,
+                    deadline, listener);
+            if (buildStatusStr == null) {
+                // we gave up waiting, and have already said why
+                buildStatusStr = "UNKNOWN";
             }
+            listener.getLogger().println("Remote build finished with status " + buildStatusStr + ".");
 
-            listener.getLogger().println("Remote build started!");
-            while (buildStatusStr.equals("running")) {
-                listener.getLogger().println("Waiting for remote build to finish - " + this.pollInterval + " seconds until next poll.");
-                
-                // Sleep for 'pollInterval' seconds.
-                // Sleep takes miliseconds so need to convert this.pollInterval to milisecopnds (x 1000)
-                try {
-                    // Could do with a better way of sleeping...
-                    Thread.sleep(this.pollInterval * 1000);
-                } catch (InterruptedException e) {
-                    this.failBuild(e, listener);
+            // the other variables were set when the remote build was triggered, only its result is new
+            HashMap<String, String> resultEnvVars = new HashMap<String, String>();
+            for (Map.Entry<String, String> envVar : getEnvVarsMap(listener, build.getEnvironment(listener), jobName,
+                    waitingBuild.getBuildNumber(), buildStatusStr).entrySet()) {
+                if (envVar.getKey().startsWith("TRIGGERED_BUILD_RESULT_")) {
+                    resultEnvVars.put(envVar.getKey(), envVar.getValue());
                 }
-                buildStatusStr = getBuildStatus(jobLocation, build, listener);
             }
-            listener.getLogger().println("Remote build finished with status " + buildStatusStr + ".");
+            build.addAction(new RemoteBuildEnvInjectAction(resultEnvVars));
+
+            listener.getLogger().println(pollStatistics.getSummary(this.getPollSchedule(), this.pollInterval));
+            listener.getLogger().println(transferStatistics.getSummary());
 
-            // If build did not finish with 'success' then fail build step.
             if (!buildStatusStr.equals("SUCCESS")) {
-                // failBuild will check if the 'shouldNotFailBuild' parameter is set or not, so will decide how to
-                // handle the failure.
                 this.failBuild(new Exception("The remote job did not succeed."), listener);
             }
-        } else {
-            listener.getLogger().println("Not blocking local job until remote job completes - fire and forget.");
+            return true;
+        } catch (AbortException e) {
+            // failBuild has decided that the local build fails, but the other remote builds still need to be joined
+            listener.error(e.getMessage());
+            return false;
         }
-        
-        
-        //Create EnvVars hash and use this to set EnvVars for job.
-        EnvVars buildEnvVars = build.getEnvironment(listener);
-        HashMap<String, String> remoteBuildEnvVars = getEnvVarsMap(listener, buildEnvVars, jobName, nextBuildNumber, buildStatusStr);
-        
-        //Set the new build variables map
-        build.addAction(new RemoteBuildEnvInjectAction(remoteBuildEnvVars));
-        
-        return true;
     }
-    
+
     /**
      * Creates a HashMap of Environment Variables to set for the Job, as defined in Parameterized Build plugin:
      *  - LAST_TRIGGERED_JOB_NAME="Last project started"
@@ -707,7 +1646,8 @@ public class RemoteBuildConfiguration extends Builder {
         return remoteBuildEnvVars;
     }
 
-    public String getBuildStatus(String buildUrlString, AbstractBuild build, BuildListener listener) throws IOException {
+    public String getBuildStatus(String buildUrlString, AbstractBuild build, BuildListener listener) throws IOException,
+            InterruptedException {
         String buildStatus = "UNKNOWN";
 
         RemoteJenkinsServer remoteServer = this.findRemoteHost(this.getRemoteJenkinsName());
@@ -725,7 +1665,16 @@ public class RemoteBuildConfiguration extends Builder {
                             + this.getRemoteJenkinsName() + "]");
         }
 
-        JSONObject responseObject = sendHTTPCall(buildUrlString, "GET", build, listener);
+        String authorization;
+        try {
+            authorization = this.getAuthorizationHeader(remoteServer, new MacroExpander(build, listener));
+        } catch (MacroEvaluationException e) {
+            this.failBuild(e, listener);
+            return null;
+        }
+
+        JSONObject responseObject = sendHTTPCall(remoteServer, authorization, buildUrlString, "GET", build, listener,
+                null, RemoteBuildDeadline.NONE, "building,result");
 
         // get the next build from the location
 
@@ -747,13 +1696,13 @@ public class RemoteBuildConfiguration extends Builder {
     }
 
     public JSONObject sendHTTPCall(String urlString, String requestType, AbstractBuild build, BuildListener listener)
-            throws IOException {
+            throws IOException, InterruptedException {
         
             return sendHTTPCall( urlString, requestType, build, listener, 1 );
     }
 
     public JSONObject sendHTTPCall(String urlString, String requestType, AbstractBuild build, BuildListener listener, int NumberOfAttempts)
-            throws IOException {
+            throws IOException, InterruptedException {
         RemoteJenkinsServer remoteServer = this.findRemoteHost(this.getRemoteJenkinsName());
 
         if (remoteServer == null) {
@@ -761,109 +1710,410 @@ public class RemoteBuildConfiguration extends Builder {
             return null;
         }
 
-        HttpURLConnection connection = null;
+        String authorization;
+        try {
+            authorization = this.getAuthorizationHeader(remoteServer, new MacroExpander(build, listener));
+        } catch (MacroEvaluationException e) {
+            this.failBuild(e, listener);
+            return null;
+        }
+
+        ConnectionResponse response = sendRequest(remoteServer, authorization, urlString, requestType, build,
+                listener, null, RemoteBuildDeadline.NONE, null, NumberOfAttempts);
+
+        if (response == null) {
+            return null;
+        }
+        return response.getBody();
+    }
+
+    /**
+     * Same as "sendHTTPCall", but counts the call and the size of its response, and only reads the given fields from
+     * it.
+     * 
+     * @param remoteServer
+     *            Server to call, as resolved once by the build step
+     * @param authorization
+     *            Value of the "Authorization" header to use, or null if none is needed
+     * @param urlString
+     * @param requestType
+     * @param build
+     * @param listener
+     * @param transferStatistics
+     *            Statistics of the build step making the call, or null if it doesn't keep any
+     * @param deadline
+     *            Deadline of the build step making the call; the call is given up on when it passes
+     * @param tree
+     *            Fields to read, in the syntax of the "tree" parameter of the remote API (i.e.:
+     *            "cancelled,executable[number]"), or null to read the whole response
+     * @return the parsed response, or null if there is none
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public JSONObject sendHTTPCall(RemoteJenkinsServer remoteServer, String authorization, String urlString,
+            String requestType, AbstractBuild build, BuildListener listener, TransferStatistics transferStatistics,
+            RemoteBuildDeadline deadline, String tree) throws IOException, InterruptedException {
+        ConnectionResponse response = sendRequest(remoteServer, authorization, urlString, requestType, build,
+                listener, transferStatistics, deadline, tree, 1);
+
+        if (response == null) {
+            return null;
+        }
+        return response.getBody();
+    }
+
+    /**
+     * Same as "sendHTTPCall", but also gives access to the response code and headers.
+     * 
+     * @param remoteServer
+     *            Server to call, as resolved once by the build step
+     * @param authorization
+     *            Value of the "Authorization" header to use, or null if none is needed
+     * @param urlString
+     * @param requestType
+     * @param build
+     * @param listener
+     * @param transferStatistics
+     *            Statistics of the build step making the call, or null if it doesn't keep any
+     * @param deadline
+     *            Deadline of the build step making the call; the call is given up on when it passes
+     * @return the response, or null if the call failed and the build should carry on
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public ConnectionResponse sendRequest(RemoteJenkinsServer remoteServer, String authorization, String urlString,
+            String requestType, AbstractBuild build, BuildListener listener, TransferStatistics transferStatistics,
+            RemoteBuildDeadline deadline) throws IOException, InterruptedException {
+
+        return sendRequest(remoteServer, authorization, urlString, requestType, build, listener, transferStatistics,
+                deadline, null, 1);
+    }
+
+    /**
+     * @param remoteServer
+     *            Server to call, as resolved once by the build step
+     * @param authorization
+     *            Value of the "Authorization" header to use, or null if none is needed
+     * @param urlString
+     * @param requestType
+     * @param build
+     * @param listener
+     * @param transferStatistics
+     *            Statistics of the build step making the call, or null if it doesn't keep any
+     * @param deadline
+     *            Deadline of the build step making the call; the call is given up on when it passes
+     * @param tree
+     *            Fields to read from the response, or null to read all of it. Unless the remote server is known not to
+     *            support it, the remote server is asked to only send these.
+     * @param NumberOfAttempts
+     * @return the response, or null if the call failed and the build should carry on
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public ConnectionResponse sendRequest(RemoteJenkinsServer remoteServer, String authorization, String urlString,
+            String requestType, AbstractBuild build, BuildListener listener, TransferStatistics transferStatistics,
+            RemoteBuildDeadline deadline, String tree, int NumberOfAttempts) throws IOException, InterruptedException {
+        if (tree != null && remoteServer.isTreeParameterSupported()) {
+            urlString = TreeParameter.add(urlString, tree);
+        }
+        return sendProjectedRequest(remoteServer, authorization, urlString, requestType, null, build, listener,
+                transferStatistics, deadline, JsonProjection.fromTree(tree), NumberOfAttempts);
+    }
+
+    /**
+     * @param remoteServer
+     *            Server to call, as resolved once by the build step
+     * @param authorization
+     *            Value of the "Authorization" header to use, or null if none is needed
+     * @param urlString
+     * @param requestType
+     * @param body
+     *            Body of a POST request, or null if it has none; it is sent again if the request is retried
+     * @param build
+     * @param listener
+     * @param transferStatistics
+     *            Statistics of the build step making the call, or null if it doesn't keep any
+     * @param deadline
+     *            Deadline of the build step making the call; the call is given up on when it passes
+     * @param projection
+     *            Fields to read from the response
+     * @param NumberOfAttempts
+     * @return the response, or null if the call failed and the build should carry on
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private ConnectionResponse sendProjectedRequest(RemoteJenkinsServer remoteServer, String authorization,
+            String urlString, String requestType, HttpEntity body, AbstractBuild build, BuildListener listener,
+            TransferStatistics transferStatistics, RemoteBuildDeadline deadline, JsonProjection projection,
+            int NumberOfAttempts) throws IOException, InterruptedException {
+
+        HttpRequestBase request = null;
+        CloseableHttpResponse response = null;
+
+        ConnectionResponse connectionResponse = null;
+        IOException failure = null;
 
-        JSONObject responseObject = null;
+        RemoteCircuitBreaker circuitBreaker = remoteServer.getCircuitBreaker();
+        RemoteRequestLimiter requestLimiter = remoteServer.getRequestLimiter();
+        boolean inFlight = false;
+        // whether the remote server may have received the request, whatever became of the response
+        boolean maybeReceived = false;
+        ScheduledFuture<?> abortOnExpiry = null;
+
+        RemoteTriggerMetrics.ServerMetrics metrics = RemoteTriggerMetrics.forServer(remoteServer);
+        long started = 0;
+        int responseCode = -1;
+        long responseBytes = 0;
+
+        // the query is left out of the trace, as it may hold the token and parameters
+        RemoteTriggerTrace.Span span = RemoteTriggerTrace.start(requestType + " " + getTracedPath(urlString))
+                .attribute("attempt", NumberOfAttempts);
 
         try {
-            URL buildUrl = new URL(urlString);
-            connection = (HttpURLConnection) buildUrl.openConnection();
+            if (requestType.equals("POST")) {
+                HttpPost post = new HttpPost(urlString);
+                if (body != null) {
+                    post.setEntity(body);
+                }
+                request = post;
+            } else {
+                request = new HttpGet(urlString);
+            }
 
             // if there is a username + apiToken defined for this remote host, then use it
-            String usernameTokenConcat;
+            if (authorization != null) {
+                request.setHeader("Authorization", authorization);
+            }
+
+            request.setHeader("Accept", "application/json");
+
+            // while the remote server keeps failing, wait here instead of trying to connect to it
+            deadline.check();
+            circuitBreaker.acquire(Math.min(RemoteCircuitBreaker.MAX_WAIT_TIME, deadline.getRemaining()));
+
+            // and don't send more requests at once (or per second) than the remote server is configured to take
+            requestLimiter.acquireRequest(deadline);
+            inFlight = true;
+
+            // the connection comes out of the (keep-alive) pool shared by all calls to this remote server. If the
+            // deadline passes while we are still waiting for (or reading) the response, the request gets aborted
+            RemoteConnectionPool connectionPool = remoteServer.getConnectionPool();
+            deadline.check();
+            abortOnExpiry = deadline.abortOnExpiry(request);
+            started = System.nanoTime();
+            maybeReceived = true;
+            try {
+                response = connectionPool.execute(request);
+            } catch (IOException e) {
+                if (deadline.isExpired()) {
+                    throw new RemoteBuildDeadline.DeadlineExceededException(deadline.getTimeout());
+                }
+                circuitBreaker.onFailure();
+                maybeReceived = !isConnectFailure(e);
+                throw e;
+            }
+
+            int statusCode = response.getStatusLine().getStatusCode();
+            responseCode = statusCode;
 
-            if (this.getOverrideAuth()) {
-                usernameTokenConcat = this.getAuth()[0].getUsername() + ":" + this.getAuth()[0].getPassword();
+            if (statusCode >= 500) {
+                circuitBreaker.onFailure();
             } else {
-                usernameTokenConcat = remoteServer.getAuth()[0].getUsername() + ":"
-                        + remoteServer.getAuth()[0].getPassword();
+                circuitBreaker.onSuccess();
             }
 
-            if (!usernameTokenConcat.equals(":")) {
-                // token-macro replacment
-                usernameTokenConcat = TokenMacro.expandAll(build, listener, usernameTokenConcat);
+            Map<String, String> responseHeaders = new HashMap<String, String>();
+            for (Header header : response.getAllHeaders()) {
+                if (!responseHeaders.containsKey(header.getName())) {
+                    responseHeaders.put(header.getName(), header.getValue());
+                }
+            }
 
-                byte[] encodedAuthKey = Base64.encodeBase64(usernameTokenConcat.getBytes());
-                connection.setRequestProperty("Authorization", "Basic " + new String(encodedAuthKey));
+            if (statusCode == 400 && TreeParameter.isPresent(urlString)) {
+                // the remote server doesn't understand the "tree" parameter, so ask for the whole thing instead. Once
+                // that works, don't bother asking this server for less again
+                EntityUtils.consumeQuietly(response.getEntity());
+                requestLimiter.releaseRequest();
+                inFlight = false;
+                metrics.recordRequest(started, 0, true);
+                started = 0;
+                ConnectionResponse unprojectedResponse = sendProjectedRequest(remoteServer, authorization,
+                        TreeParameter.remove(urlString), requestType, body, build, listener, transferStatistics, deadline,
+                        projection, NumberOfAttempts);
+                if (unprojectedResponse != null && unprojectedResponse.getResponseCode() < 400) {
+                    remoteServer.setTreeParameterSupported(false);
+                }
+                return unprojectedResponse;
+            }
+            if (statusCode == 404 && requestType.equals("GET")) {
+                // the build (or queue item) we are looking for doesn't exist (yet). Retrying straight away won't change
+                // that, so don't spend the retry budget on it and let the caller decide what to do
+                return new ConnectionResponse(statusCode, responseHeaders, null);
+            }
+            if (statusCode >= 400) {
+                throw new IOException("Server returned HTTP response code: " + statusCode + " for URL: " + urlString);
             }
 
-            connection.setDoInput(true);
-            connection.setRequestProperty("Accept", "application/json");
-            connection.setRequestMethod(requestType);
-            // wait up to 5 seconds for the connection to be open
-            connection.setConnectTimeout(5000);
-            connection.connect();
+            HttpEntity entity = response.getEntity();
 
-            InputStream is = connection.getInputStream();
+            long bytesReceived = 0;
+            JSONObject responseObject = null;
 
-            BufferedReader rd = new BufferedReader(new InputStreamReader(is));
-            String line;
-            // String response = "";
-            StringBuilder response = new StringBuilder();
+            if (entity != null) {
+                CountingInputStream is = new CountingInputStream(entity.getContent());
+                Charset charset = ContentType.getOrDefault(entity).getCharset();
 
-            while ((line = rd.readLine()) != null) {
-                response.append(line);
+                // parse straight off the wire, keeping only the fields that were asked for
+                Reader reader = new InputStreamReader(is, charset != null ? charset : Consts.UTF_8);
+                try {
+                    responseObject = projection.parse(reader);
+                } finally {
+                    reader.close();
+                }
+                bytesReceived = is.getByteCount();
+            }
+
+            if (transferStatistics != null) {
+                transferStatistics.add(1, bytesReceived);
             }
-            rd.close();
+            responseBytes = bytesReceived;
 
-            // JSONSerializer serializer = new JSONSerializer();
-            // need to parse the data we get back into struct
-            //listener.getLogger().println("Called URL: '" + urlString +  "', got response: '" + response.toString() + "'");
-            if ( response.toString().isEmpty() ) {
+            if ( responseObject == null ) {
                 listener.getLogger().println("Remote Jenkins server returned empty response to trigger.");
-                return null;
-            } else {
-                responseObject = (JSONObject) JSONSerializer.toJSON(response.toString());
             }
+            connectionResponse = new ConnectionResponse(statusCode, responseHeaders, responseObject);
 
         } catch (IOException e) {
-            //If we have ConnectionRetryLimit set to > 0 then retry that many times.
-            if ( NumberOfAttempts <= this.getConnectionRetryLimit() ) {
-                String strNumberOfRetries = Integer.toString(NumberOfAttempts);
-                String strConnectionRetryLimit = Integer.toString(this.getConnectionRetryLimit() );
-                        
-                listener.getLogger().println("Connection to remote server failed, retrying (attempt  " + strNumberOfRetries + " out of " + strConnectionRetryLimit + ")");
-                responseObject = sendHTTPCall(urlString, requestType, build, listener, NumberOfAttempts+1);
+            // reading the response fails as well when it gets aborted
+            failure = deadline.isExpired() ? new RemoteBuildDeadline.DeadlineExceededException(deadline.getTimeout())
+                    : e;
+        } finally {
+            if (abortOnExpiry != null) {
+                abortOnExpiry.cancel(false);
             }
-            // something failed with the connection, so throw an exception to mark the build as failed.
-            else {
-                this.failBuild(e, listener);
+            // always hand the connection back to the pool. Any unread part of the response has to be drained first,
+            // otherwise the connection can not be kept alive
+            if (response != null) {
+                EntityUtils.consumeQuietly(response.getEntity());
+                response.close();
             }
-        } catch (MacroEvaluationException e) {
-            this.failBuild(e, listener);
-        } catch (InterruptedException e) {
-            this.failBuild(e, listener);
-        } finally {
-            // always make sure we close the connection
-            if (connection != null) {
-                connection.disconnect();
+            if (inFlight) {
+                requestLimiter.releaseRequest();
+            }
+            if (started != 0) {
+                // a 404 is an answer to a GET, not a failure of the call
+                metrics.recordRequest(started, responseBytes, failure != null || responseCode < 0
+                        || (responseCode >= 400 && responseCode != 404));
+            }
+            if (responseCode >= 0) {
+                span.attribute("status", responseCode).attribute("bytes", responseBytes);
+            }
+            if (failure != null) {
+                span.attribute("error", failure.getMessage());
+            }
+            span.end();
+        }
+
+        if (failure == null) {
+            return connectionResponse;
+        }
+
+        // there is no time left to retry in
+        if (failure instanceof RemoteBuildDeadline.DeadlineExceededException) {
+            this.failBuild(failure, listener);
+            return null;
+        }
+
+        // only reads are safe to send again. A trigger that may have reached the remote server (even if the response
+        // got lost, or could not be read) is not, as that could queue a second remote build
+        if (!requestType.equals("GET") && maybeReceived) {
+            listener.getLogger().println("The remote server may have received the request already, so it is not sent again.");
+            this.failBuild(failure, listener);
+            return null;
+        }
+
+        //If we have ConnectionRetryLimit set to > 0 then retry that many times.
+        if ( NumberOfAttempts <= this.getConnectionRetryLimit() ) {
+            String strNumberOfRetries = Integer.toString(NumberOfAttempts);
+            String strConnectionRetryLimit = Integer.toString(this.getConnectionRetryLimit() );
+
+            // a call that never got to the remote server (because its breaker is open) doesn't count against the budget
+            if (!(failure instanceof RemoteCircuitBreaker.CircuitOpenException) && !circuitBreaker.tryAcquireRetry()) {
+                listener.getLogger().println("Connection to remote server failed, and calls to it have been retried too often recently to retry this one.");
+                this.failBuild(failure, listener);
+                return null;
             }
-            // and always clear the query string and remove some "global" values
-            this.clearQueryString();
-            // this.build = null;
-            // this.listener = null;
 
+            // back off (by a random amount, so that all builds don't come back at once) before trying again
+            long delay = circuitBreaker.getRetryDelay(NumberOfAttempts);
+            metrics.recordRetry();
+            listener.getLogger().println("Connection to remote server failed, retrying in " + (delay + 500) / 1000 + " seconds (attempt  " + strNumberOfRetries + " out of " + strConnectionRetryLimit + ")");
+            try {
+                deadline.sleep(delay);
+            } catch (RemoteBuildDeadline.DeadlineExceededException e) {
+                this.failBuild(e, listener);
+                return null;
+            }
+            return sendProjectedRequest(remoteServer, authorization, urlString, requestType, body, build, listener, transferStatistics, deadline, projection, NumberOfAttempts+1);
         }
-        return responseObject;
+        // something failed with the connection, so throw an exception to mark the build as failed.
+        this.failBuild(failure, listener);
+        return null;
     }
 
     /**
-     * Helper function for character encoding
+     * @param e
+     *            Failure of a call to the remote server
+     * @return true if the call failed before it was sent, because no connection to the remote server could be opened
+     */
+    private static boolean isConnectFailure(IOException e) {
+        // this includes HttpHostConnectException, and (as a ConnectTimeoutException) waiting too long for the pool
+        return e instanceof ConnectException || e instanceof ConnectTimeoutException
+                || e instanceof UnknownHostException;
+    }
+
+    /**
+     * @param urlString
+     * @return the path of the URL, without its query
+     */
+    private static String getTracedPath(String urlString) {
+        int query = urlString.indexOf('?');
+        String path = query < 0 ? urlString : urlString.substring(0, query);
+        int host = path.indexOf("://");
+        int slash = host < 0 ? -1 : path.indexOf('/', host + 3);
+        return slash < 0 ? path : path.substring(slash);
+    }
+
+    /**
+     * Builds the value of the "Authorization" header for calls to the remote server, using the job-level credentials
+     * if they are overridden. This is meant to be called once per run of the build step, and the result passed on to
+     * every call it makes.
      * 
-     * @param dirtyValue
-     * @return encoded value
+     * @param remoteServer
+     * @param expander
+     *            Resolves any macros in the credentials
+     * @return the header value, or null if no credentials are defined
+     * @throws MacroEvaluationException
+     * @throws IOException
+     * @throws InterruptedException
      */
-    private String encodeValue(String dirtyValue) {
-        String cleanValue = "";
+    private String getAuthorizationHeader(RemoteJenkinsServer remoteServer, MacroExpander expander)
+            throws MacroEvaluationException, IOException, InterruptedException {
+        Auth auth = this.getOverrideAuth() ? this.getAuth()[0] : remoteServer.getAuth()[0];
 
-        try {
-            cleanValue = URLEncoder.encode(dirtyValue, "UTF-8").replace("+", "%20");
-        } catch (UnsupportedEncodingException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+        // looking credentials up is expensive, so they are cached until the configuration or the credentials change
+        String usernameTokenConcat = CredentialsCache.getUsernameTokenConcat(remoteServer, this.getOverrideAuth(),
+                auth);
+
+        if (usernameTokenConcat.equals(":")) {
+            return null;
         }
 
-        return cleanValue;
+        // token-macro replacment
+        usernameTokenConcat = expander.expandOrFail(usernameTokenConcat);
+
+        byte[] encodedAuthKey = Base64.encodeBase64(usernameTokenConcat.getBytes());
+        return "Basic " + new String(encodedAuthKey);
     }
 
     // Getters
@@ -887,10 +2137,126 @@ public class RemoteBuildConfiguration extends Builder {
         return this.blockBuildUntilComplete;
     }
 
+    /**
+     * @return true if the remote build is waited for after the last build step, rather than by the build step itself.
+     *         The local build holds its executor either way; this only lets the following build steps run meanwhile
+     */
+    public boolean getWaitAfterBuildSteps() {
+        return this.waitAfterBuildSteps;
+    }
+
     public int getPollInterval() {
         return this.pollInterval;
     }
 
+    public boolean getTrackRemoteQueueItem() {
+        return this.trackRemoteQueueItem;
+    }
+
+    /**
+     * @return true if the console output of the remote build is copied into the local build log while waiting for it
+     */
+    public boolean getMirrorConsole() {
+        return this.mirrorConsole;
+    }
+
+    /**
+     * @return true if the test results of the remote build are summarized in the local build once it is done
+     */
+    public boolean getSummarizeTestResults() {
+        return this.summarizeTestResults;
+    }
+
+    /**
+     * @return the remote jobs to trigger along with the one of the build step itself
+     */
+    public List<RemoteBuildTarget> getTargets() {
+        // configurations saved before there could be more than one remote job don't have any
+        if (this.targets == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(this.targets);
+    }
+
+    /**
+     * @return how many remote jobs may be triggered (and waited for) at the same time, or 0 if there is no limit
+     */
+    public int getMaxParallelTargets() {
+        return this.maxParallelTargets;
+    }
+
+    /**
+     * @return true if the remote job is triggered once for every row of the batch file
+     */
+    public boolean getBatch() {
+        return this.batch;
+    }
+
+    public String getBatchFile() {
+        return this.batchFile;
+    }
+
+    /**
+     * @return the result file of the batch, relative to the workspace
+     */
+    public String getBatchResultFile() {
+        if (this.batchResultFile == null || this.batchResultFile.length() == 0) {
+            return this.getBatchFile() + ".results.csv";
+        }
+        return this.batchResultFile;
+    }
+
+    /**
+     * @return true if artifacts of the remote build are downloaded into the workspace once it is done
+     */
+    public boolean getDownloadArtifacts() {
+        return this.downloadArtifacts;
+    }
+
+    /**
+     * @return comma-separated Ant-style patterns of the artifacts to download
+     */
+    public String getArtifactPattern() {
+        return this.artifactPattern;
+    }
+
+    /**
+     * @return directory to download the artifacts to, relative to the workspace
+     */
+    public String getArtifactTarget() {
+        return this.artifactTarget;
+    }
+
+    /**
+     * @return the remote job of the build step itself, as a target
+     */
+    private RemoteBuildTarget getPrimaryTarget() {
+        // created once, so that its parameter template is only compiled once
+        RemoteBuildTarget primaryTarget = this.primaryTarget;
+        if (primaryTarget == null) {
+            primaryTarget = new RemoteBuildTarget(this.getRemoteJenkinsName(), this.getJob(), this.getToken(),
+                    this.getParameters(), this.getFileParameters());
+            this.primaryTarget = primaryTarget;
+        }
+        return primaryTarget;
+    }
+
+    /**
+     * @return minutes the build step may spend on its remote build, from triggering it until it has finished, or 0 if
+     *         there is no limit
+     */
+    public int getTimeout() {
+        return this.timeout;
+    }
+
+    public PollSchedule getPollSchedule() {
+        // configurations saved before the poll schedule could be chosen always polled every "pollInterval" seconds
+        if (this.pollSchedule == null) {
+            return new FixedPollSchedule();
+        }
+        return this.pollSchedule;
+    }
+
     public int getConnectionRetryLimit() {
         return this.connectionRetryLimit;
     }
@@ -903,16 +2269,6 @@ public class RemoteBuildConfiguration extends Builder {
         return this.parameterFile;
     }
 
-    private String getBuildTypeUrl() {
-        boolean isParameterized = (this.getParameters().length() > 0);
-
-        if (isParameterized) {
-            return RemoteBuildConfiguration.paramerizedBuildUrl;
-        } else {
-            return RemoteBuildConfiguration.normalBuildUrl;
-        }
-    }
-
     public boolean getOverrideAuth() {
         return this.overrideAuth;
     }
@@ -926,28 +2282,53 @@ public class RemoteBuildConfiguration extends Builder {
         return this.parameters;
     }
 
-    private List<String> getParameterList() {
-        return this.parameterList;
-    }
-
-    public String getQueryString() {
-        return this.queryString;
+    public String getFileParameters() {
+        // configurations saved before there were file parameters don't have any
+        return this.fileParameters == null ? "" : this.fileParameters;
     }
 
-    private void setQueryString(String string) {
-        this.queryString = string.trim();
+    private List<String> getParameterList() {
+        return this.parameterList;
     }
 
+    // Overridden for better type safety.
+    // If your plugin doesn't really define any property on Descriptor,
+    // you don't have to do this.
     /**
-     * Convenience function for setting the query string to empty
+     * What became of the remote build triggered for one target, as far as the build step got with it.
      */
-    private void clearQueryString() {
-        this.setQueryString("");
+    private static class TriggeredBuild {
+        private final RemoteBuildTarget     target;
+        // console output of the target, when it is triggered along with others
+        private final ByteArrayOutputStream log         = new ByteArrayOutputStream();
+
+        private volatile String             jobName;
+        // -1 until the remote build has been triggered, and its number is known
+        private volatile int                buildNumber = -1;
+        // set once the remote server has accepted the trigger, even if the build number is never found out
+        private volatile boolean            triggered;
+        private volatile String             status      = "UNKNOWN";
+        // why the build step failed because of this target, if it did
+        private volatile String             failure;
+        // summary of the test results of the remote build, if asked for and it has any
+        private volatile RemoteTestReport   testReport;
+        private volatile String             buildUrl;
+
+        TriggeredBuild(RemoteBuildTarget target) {
+            this.target = target;
+        }
+
+        String getOutcome() {
+            if (this.failure != null) {
+                return "failed: " + this.failure;
+            }
+            if (this.buildNumber < 0) {
+                return "not triggered";
+            }
+            return "build #" + this.buildNumber + ", " + this.status;
+        }
     }
 
-    // Overridden for better type safety.
-    // If your plugin doesn't really define any property on Descriptor,
-    // you don't have to do this.
     @Override
     public DescriptorImpl getDescriptor() {
         return (DescriptorImpl) super.getDescriptor();
@@ -965,11 +2346,45 @@ public class RemoteBuildConfiguration extends Builder {
          */
         private CopyOnWriteList<RemoteJenkinsServer> remoteSites = new CopyOnWriteList<RemoteJenkinsServer>();
 
+        // display name -> server, replaced as a whole whenever "remoteSites" changes, so that build steps never see a
+        // half-built index
+        private transient volatile Map<String, RemoteJenkinsServer> remoteSitesByName = Collections.emptyMap();
+
+        // pools of replaced server entries, which builds that were already running may still be using
+        private transient List<RemoteConnectionPool> retiredPools = new CopyOnWriteArrayList<RemoteConnectionPool>();
+
         /**
          * In order to load the persisted global configuration, you have to call load() in the constructor.
          */
         public DescriptorImpl() {
             load();
+            indexRemoteSites();
+        }
+
+        /**
+         * Rebuilds the display name index from the current list of remote sites. When two sites have the same display
+         * name, the first one wins, just like it did when the list was searched.
+         */
+        private void indexRemoteSites() {
+            Map<String, RemoteJenkinsServer> index = new HashMap<String, RemoteJenkinsServer>();
+            for (RemoteJenkinsServer site : getRemoteSites()) {
+                if (site.getDisplayName() != null && !index.containsKey(site.getDisplayName())) {
+                    index.put(site.getDisplayName(), site);
+                }
+            }
+            this.remoteSitesByName = Collections.unmodifiableMap(index);
+        }
+
+        /**
+         * @param displayName
+         *            Name of the configuration you are looking for
+         * @return the remote site, or null if there is none by that name
+         */
+        public RemoteJenkinsServer getRemoteSite(String displayName) {
+            if (displayName == null) {
+                return null;
+            }
+            return this.remoteSitesByName.get(displayName);
         }
 
         /**
@@ -1001,12 +2416,47 @@ public class RemoteBuildConfiguration extends Builder {
         @Override
         public boolean configure(StaplerRequest req, JSONObject formData) throws FormException {
 
-            remoteSites.replaceBy(req.bindJSONToList(RemoteJenkinsServer.class, formData.get("remoteSites")));
-            save();
+            setRemoteSites(req.bindJSONToList(RemoteJenkinsServer.class, formData.get("remoteSites")));
 
             return super.configure(req, formData);
         }
 
+        /**
+         * Replaces the remote servers, and saves them. Entries that are replaced hand their connection pool over to
+         * their successor.
+         * 
+         * @param sites
+         *            the new remote servers
+         */
+        void setRemoteSites(List<RemoteJenkinsServer> sites) {
+            RemoteJenkinsServer[] previousSites = getRemoteSites();
+
+            remoteSites.replaceBy(sites);
+            indexRemoteSites();
+            save();
+
+            // running builds may still be calling the old server entries, so their connections are only closed
+            // once nothing uses them any more
+            for (RemoteJenkinsServer site : previousSites) {
+                RemoteConnectionPool pool = site.retire(getRemoteSite(site.getDisplayName()));
+                if (pool != null) {
+                    this.retiredPools.add(pool);
+                }
+            }
+            closeIdleRetiredPools();
+        }
+
+        /**
+         * Closes the pools of replaced server entries that no call is using any more.
+         */
+        void closeIdleRetiredPools() {
+            for (RemoteConnectionPool pool : this.retiredPools) {
+                if (pool.closeIfIdle()) {
+                    this.retiredPools.remove(pool);
+                }
+            }
+        }
+
         public ListBoxModel doFillRemoteJenkinsNameItems() {
             ListBoxModel model = new ListBoxModel();
 
@@ -0,0 +1,128 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * The point in time by which one run of a {@link RemoteBuildConfiguration} has to be done with its remote build: the
+ * time spent waiting for the remote server to take the build, for it to leave the remote queue, and for it to finish
+ * all count towards it.
+ *
+ * The wait loops of the build step check it between polls, and never sleep past it. Requests that are under way when
+ * it passes get aborted, which closes their connection, so that a remote server that accepted a request but never
+ * answers it can't hold on to the local build (and its executor) either.
+ */
+public class RemoteBuildDeadline {
+
+    // aborts requests that are still under way when their deadline passes; one thread is plenty for that
+    private static final ScheduledThreadPoolExecutor timer = createTimer();
+
+    // for calls that are not made on behalf of a build step with a timeout
+    public static final RemoteBuildDeadline          NONE  = new RemoteBuildDeadline(0);
+
+    private final long                               timeout;
+    private final long                               expiresAt;
+
+    /**
+     * @param timeout
+     *            Milliseconds from now until the deadline, or 0 for no deadline at all
+     */
+    public RemoteBuildDeadline(long timeout) {
+        this.timeout = timeout;
+        this.expiresAt = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new NamingThreadFactory(
+                new DaemonThreadFactory(), "Remote build deadline timer"));
+        executor.setKeepAliveTime(1, TimeUnit.MINUTES);
+        executor.allowCoreThreadTimeOut(true);
+        // requests that finish in time cancel their abort, which shouldn't stay queued until it would have run
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * @return milliseconds from the start until the deadline, or 0 if there is none
+     */
+    public long getTimeout() {
+        return this.timeout;
+    }
+
+    public boolean hasTimeout() {
+        return this.timeout > 0;
+    }
+
+    public boolean isExpired() {
+        return System.currentTimeMillis() >= this.expiresAt;
+    }
+
+    /**
+     * @return milliseconds left until the deadline (Long.MAX_VALUE if there is none)
+     */
+    public long getRemaining() {
+        if (!hasTimeout()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, this.expiresAt - System.currentTimeMillis());
+    }
+
+    /**
+     * @throws DeadlineExceededException
+     *             if the deadline has passed
+     */
+    public void check() throws DeadlineExceededException {
+        if (isExpired()) {
+            throw new DeadlineExceededException(this.timeout);
+        }
+    }
+
+    /**
+     * Waits for the given time, or until the deadline, whichever comes first.
+     *
+     * @param delay
+     *            Milliseconds to wait
+     * @throws DeadlineExceededException
+     *             if the deadline has passed
+     * @throws InterruptedException
+     */
+    public void sleep(long delay) throws DeadlineExceededException, InterruptedException {
+        check();
+        Thread.sleep(Math.min(delay, getRemaining()));
+        check();
+    }
+
+    /**
+     * Makes sure the request doesn't outlive the deadline.
+     *
+     * @param request
+     *            Request that is about to be sent
+     * @return handle which must be cancelled once the response has been read, or null if there is no deadline
+     */
+    public ScheduledFuture<?> abortOnExpiry(final HttpUriRequest request) {
+        if (!hasTimeout()) {
+            return null;
+        }
+        return timer.schedule(new Runnable() {
+            public void run() {
+                request.abort();
+            }
+        }, getRemaining(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Thrown when the build step has run out of time waiting for its remote build.
+     */
+    public static class DeadlineExceededException extends IOException {
+        public DeadlineExceededException(long timeout) {
+            super("Gave up on the remote build, as it did not finish within " + timeout / 60000 + " minutes.");
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.Environment;
+import hudson.model.Result;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Remote builds that were triggered by a build step set to wait for them after the build steps (see
+ * {@link RemoteBuildConfiguration#getWaitAfterBuildSteps()}), and which the local build still has to wait for.
+ *
+ * Such a build step hands its remote build over to the status poller of the remote server and returns straight away,
+ * so that the following build steps run while the remote build does. This is added to the environments of the local
+ * build, and gets torn down after its last build step (and before its publishers run): that is where the local build
+ * waits for whatever is still running remotely and picks up the results. The local build holds its executor all the
+ * while: a build of a freestyle job can't give its executor back and resume later, so the remote build only overlaps
+ * with the other build steps.
+ *
+ * The environments of a build can only be changed on the thread running it, but remote builds may be triggered on
+ * other threads (for additional targets, or the rows of a batch). So each run of a build step collects its remote
+ * builds in a join of its own first, and hands them over to the join of the build once it is done, see
+ * {@link #handOverTo}.
+ */
+public class RemoteBuildJoin extends Environment {
+
+    private final List<PendingBuild> pendingBuilds = new ArrayList<PendingBuild>();
+    // set once the remote builds collected here have been handed over to the join of the build
+    private boolean                  handedOver;
+
+    /**
+     * Must be called on the thread running the build.
+     * 
+     * @param build
+     * @return the join of the build, which is created if this is the first remote build it has to wait for
+     */
+    public static synchronized RemoteBuildJoin forBuild(AbstractBuild<?, ?> build) {
+        RemoteBuildJoin join = build.getEnvironments().get(RemoteBuildJoin.class);
+        if (join == null) {
+            join = new RemoteBuildJoin();
+            build.getEnvironments().add(join);
+        }
+        return join;
+    }
+
+    /**
+     * @param step
+     *            Build step that triggered the remote build
+     * @param jobName
+     *            Name of the remote job
+     * @param waitingBuild
+     *            The remote build, as registered with the status poller of its server
+     * @param mirror
+     *            Copies the console output of the remote build into the local build log, or null if it isn't
+     * @param deadline
+     *            Deadline of the build step, which still applies while the local build waits for the remote build
+     */
+    public void add(RemoteBuildConfiguration step, String jobName,
+            RemoteBuildStatusPoller.WaitingBuild waitingBuild, RemoteConsoleMirror mirror,
+            RemoteBuildDeadline deadline) {
+        synchronized (this) {
+            if (!this.handedOver) {
+                this.pendingBuilds.add(new PendingBuild(step, jobName, waitingBuild, mirror, deadline));
+                return;
+            }
+        }
+        // the run of the build step is over (it was aborted), so nobody is going to wait for the remote build
+        waitingBuild.cancel();
+    }
+
+    /**
+     * Adds the remote builds collected by a run of a build step to the join of the build, which waits for them after
+     * the last build step. Remote builds that are added to this one afterwards are let go of straight away.
+     * 
+     * Must be called on the thread running the build.
+     * 
+     * @param build
+     */
+    public void handOverTo(AbstractBuild<?, ?> build) {
+        List<PendingBuild> pending;
+        synchronized (this) {
+            this.handedOver = true;
+            pending = new ArrayList<PendingBuild>(this.pendingBuilds);
+            this.pendingBuilds.clear();
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        RemoteBuildJoin join = forBuild(build);
+        synchronized (join) {
+            join.pendingBuilds.addAll(pending);
+        }
+    }
+
+    /**
+     * @return the number of remote builds that have not been waited for yet
+     */
+    public synchronized int getPendingCount() {
+        return this.pendingBuilds.size();
+    }
+
+    @Override
+    public boolean tearDown(AbstractBuild build, BuildListener listener) throws IOException, InterruptedException {
+        List<PendingBuild> pending;
+        synchronized (this) {
+            pending = new ArrayList<PendingBuild>(this.pendingBuilds);
+            this.pendingBuilds.clear();
+        }
+        if (pending.isEmpty()) {
+            return true;
+        }
+
+        if (build.getResult() == Result.ABORTED) {
+            // the interrupt that aborted the build has been dealt with by now, so waiting would not stop until the
+            // remote builds are done (or never, without a timeout)
+            listener.getLogger().println("The build was aborted, not waiting for the " + pending.size()
+                    + " remote builds that are still running.");
+            for (PendingBuild pendingBuild : pending) {
+                pendingBuild.waitingBuild.cancel();
+            }
+            return true;
+        }
+
+        // the build steps that triggered them have recorded their traces already, waiting for them gets one of its own
+        RemoteTriggerTrace trace = new RemoteTriggerTrace("join remote builds");
+        RemoteTriggerTrace.Span root = trace.getRoot().activate();
+        boolean succeeded = true;
+        try {
+            for (int i = 0; i < pending.size(); i++) {
+                PendingBuild pendingBuild = pending.get(i);
+                RemoteTriggerTrace.Span span = RemoteTriggerTrace.start("join " + pendingBuild.jobName)
+                        .attribute("build", pendingBuild.waitingBuild.getBuildNumber());
+                try {
+                    if (!pendingBuild.step.joinRemoteBuild(pendingBuild.jobName, pendingBuild.waitingBuild,
+                            pendingBuild.mirror, pendingBuild.deadline, build, listener)) {
+                        succeeded = false;
+                    }
+                } catch (IOException e) {
+                    // the build step has already said why, but the others still need to be waited for (or let go of)
+                    succeeded = false;
+                } catch (InterruptedException e) {
+                    // the local build was aborted, so stop polling for the remote builds nobody is going to wait for
+                    for (int j = i; j < pending.size(); j++) {
+                        pending.get(j).waitingBuild.cancel();
+                    }
+                    throw e;
+                } finally {
+                    span.end();
+                }
+            }
+        } finally {
+            root.end();
+            RemoteBuildConfiguration.recordTrace(trace, build, listener);
+        }
+        return succeeded;
+    }
+
+    private static class PendingBuild {
+        private final RemoteBuildConfiguration             step;
+        private final String                               jobName;
+        private final RemoteBuildStatusPoller.WaitingBuild waitingBuild;
+        private final RemoteConsoleMirror                  mirror;
+        private final RemoteBuildDeadline                  deadline;
+
+        PendingBuild(RemoteBuildConfiguration step, String jobName, RemoteBuildStatusPoller.WaitingBuild waitingBuild,
+                RemoteConsoleMirror mirror, RemoteBuildDeadline deadline) {
+            this.step = step;
+            this.jobName = jobName;
+            this.waitingBuild = waitingBuild;
+            this.mirror = mirror;
+            this.deadline = deadline;
+        }
+    }
+}
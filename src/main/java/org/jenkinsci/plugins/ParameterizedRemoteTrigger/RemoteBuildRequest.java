@@ -0,0 +1,166 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import hudson.FilePath;
+
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpEntity;
+
+/**
+ * The remote job called by one run of a {@link RemoteBuildConfiguration}, with every token already resolved.
+ *
+ * A new one is created for every run of the build step, and it never changes after that. The URLs to call are derived
+ * from it, rather than being assembled in fields of the build step, so that concurrent builds of the same configured
+ * step can't see (or clear) each other's job name, token or parameters.
+ */
+public final class RemoteBuildRequest {
+
+    private static final String       PARAMETERIZED_BUILD_URL = "/buildWithParameters";
+    private static final String       NORMAL_BUILD_URL        = "/build";
+    private static final String       BUILD_TOKEN_ROOT_URL    = "/buildByToken";
+
+    private final RemoteJenkinsServer remoteServer;
+    private final String              jobName;
+    private final String              securityToken;
+    private final ParameterTemplate.Resolved parameters;
+    private final Map<String, FilePath> fileParameters;
+    private final boolean             parameterized;
+
+    /**
+     * @param remoteServer
+     *            Server the remote job is on
+     * @param jobName
+     *            Name of the remote job
+     * @param securityToken
+     *            Security token used to trigger the remote job, or an empty string if there is none
+     * @param parameters
+     *            Parameters for the remote job, with every macro and variable resolved
+     * @param fileParameters
+     *            Files to upload to the file parameters of the remote job, by parameter name
+     * @param parameterized
+     *            Whether the remote job is triggered as a parameterized job
+     */
+    public RemoteBuildRequest(RemoteJenkinsServer remoteServer, String jobName, String securityToken,
+            ParameterTemplate.Resolved parameters, Map<String, FilePath> fileParameters, boolean parameterized) {
+        this.remoteServer = remoteServer;
+        this.jobName = jobName;
+        this.securityToken = securityToken;
+        this.parameters = parameters;
+        this.fileParameters = Collections.unmodifiableMap(new LinkedHashMap<String, FilePath>(fileParameters));
+        this.parameterized = parameterized;
+    }
+
+    public RemoteJenkinsServer getRemoteServer() {
+        return this.remoteServer;
+    }
+
+    public String getJobName() {
+        return this.jobName;
+    }
+
+    public List<String> getParameters() {
+        return this.parameters.getParameters();
+    }
+
+    /**
+     * Build the proper URL to trigger the remote build, based on known capabilities of the remote server
+     *
+     * @return fully formed, fully qualified remote trigger URL
+     */
+    public String getTriggerUrl() {
+        String triggerUrlString = this.remoteServer.getAddress().toString();
+        List<String> query = new ArrayList<String>();
+
+        if (this.remoteServer.getHasBuildTokenRootSupport()) {
+            triggerUrlString += BUILD_TOKEN_ROOT_URL;
+            triggerUrlString += getBuildTypeUrl();
+
+            query.add("job=" + encodeValue(this.jobName));
+        } else {
+            triggerUrlString += "/job/";
+            triggerUrlString += encodeValue(this.jobName);
+            triggerUrlString += getBuildTypeUrl();
+        }
+
+        // don't try to include a security token in the URL if none is provided
+        if (!this.securityToken.equals("")) {
+            query.add("token=" + encodeValue(this.securityToken));
+        }
+
+        // the parameters come encoded already, unless they are sent in the request body
+        if (!isPostingParameters()) {
+            String buildParams = this.parameters.getQueryString();
+
+            if (!buildParams.isEmpty()) {
+                query.add(buildParams);
+            }
+        }
+
+        // by adding "delay=0", this will (theoretically) force this job to the top of the remote queue
+        query.add("delay=0");
+
+        return triggerUrlString + "?" + StringUtils.join(query, "&");
+    }
+
+    /**
+     * @param logger
+     *            Where to report the progress of uploading file parameters
+     * @return the body to send along with the trigger URL, or null if the parameters are in the URL itself
+     */
+    public HttpEntity getTriggerEntity(PrintStream logger) {
+        if (!this.fileParameters.isEmpty()) {
+            return new FileParametersEntity(this.fileParameters, logger);
+        }
+        if (!isPostingParameters()) {
+            return null;
+        }
+        return new FormParametersEntity(this.parameters.getParameters());
+    }
+
+    /**
+     * @return true if the (string) parameters are sent as a form in the request body. They can't be when there are
+     *         files to upload, as the remote server only reads those from a multipart body, and string parameters only
+     *         from the URL or a form
+     */
+    private boolean isPostingParameters() {
+        return this.remoteServer.getPostParameters() && !this.parameters.isEmpty() && this.fileParameters.isEmpty();
+    }
+
+    /**
+     * @return fully qualified URL of the remote job, to which the API paths are appended for GET calls
+     */
+    public String getJobUrl() {
+        return this.remoteServer.getAddress().toString() + "/job/" + encodeValue(this.jobName);
+    }
+
+    private String getBuildTypeUrl() {
+        if (this.parameterized) {
+            return PARAMETERIZED_BUILD_URL;
+        } else {
+            return NORMAL_BUILD_URL;
+        }
+    }
+
+    /**
+     * Helper function for character encoding
+     *
+     * @param dirtyValue
+     * @return encoded value
+     */
+    static String encodeValue(String dirtyValue) {
+        try {
+            return URLEncoder.encode(dirtyValue, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,738 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Polls the status of every build that is being waited on for one {@link RemoteJenkinsServer}.
+ *
+ * Instead of every waiting build step polling its own build, waiting builds register here. On each tick, one request
+ * is made per remote job (no matter how many of its builds are being waited on) which fetches the status of the most
+ * recent builds in one go, and every registered {@link WaitingBuild} of that job gets updated from it. That way the
+ * load on the remote server grows with the number of distinct jobs, not with the number of waiting builds.
+ */
+public class RemoteBuildStatusPoller {
+
+    private static final Logger                  LOGGER             = Logger.getLogger(RemoteBuildStatusPoller.class
+                                                                            .getName());
+
+    // how often (in milliseconds) the poller checks whether any of the jobs is due to be polled
+    private static final long                    TICK               = 1000;
+
+    // how many builds to ask for on the first poll of a job; this grows when the builds being waited on are older
+    private static final int                     INITIAL_DEPTH      = 10;
+    private static final int                     MAX_DEPTH          = 1000;
+
+    // the only fields of the job that are ever looked at
+    private static final String                  BUILDS_TREE        = "builds[number,building,result,timestamp,estimatedDuration]";
+    private static final JsonProjection          BUILDS_PROJECTION  = JsonProjection.fromTree(BUILDS_TREE);
+
+    private final RemoteJenkinsServer            remoteServer;
+    private final ScheduledThreadPoolExecutor    executor;
+
+    // guarded by "this"
+    private final Map<String, JobPoll>           jobs               = new LinkedHashMap<String, JobPoll>();
+    private ScheduledFuture<?>                   ticker;
+
+    public RemoteBuildStatusPoller(RemoteJenkinsServer remoteServer) {
+        this.remoteServer = remoteServer;
+
+        this.executor = new ScheduledThreadPoolExecutor(1, new NamingThreadFactory(new DaemonThreadFactory(),
+                "Remote build status poller for " + remoteServer.getDisplayName()));
+        // don't keep a thread around for servers that nobody is waiting on
+        this.executor.setKeepAliveTime(1, TimeUnit.MINUTES);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Starts polling the status of a remote build.
+     *
+     * @param jobName
+     *            Name of the remote job
+     * @param buildNumber
+     *            Number of the remote build
+     * @param authorization
+     *            Value of the "Authorization" header to use, or null if none is needed
+     * @param pollSchedule
+     *            Decides when this build is polled next
+     * @param pollInterval
+     *            Poll interval configured for the waiting build step, in seconds
+     * @param retryLimit
+     *            How many polls in a row may fail before giving up
+     * @param triggered
+     *            When the remote build was triggered, from System.currentTimeMillis(); its time in the remote queue
+     *            is counted from there
+     * @param startTimeout
+     *            Milliseconds after which polling fails if the remote build still hasn't started, or 0 to wait as long
+     *            as it takes
+     * @return handle to wait on, which must be cancelled once the caller is no longer interested
+     */
+    public synchronized WaitingBuild register(String jobName, int buildNumber, String authorization,
+            PollSchedule pollSchedule, int pollInterval, int retryLimit, long triggered, long startTimeout) {
+        // builds can only share a request if they are fetched with the same credentials
+        String key = jobName + "\n" + authorization;
+
+        JobPoll jobPoll = jobs.get(key);
+        if (jobPoll == null) {
+            jobPoll = new JobPoll(jobName, authorization);
+            jobs.put(key, jobPoll);
+        }
+
+        WaitingBuild waitingBuild = new WaitingBuild(this, key, buildNumber, pollSchedule, pollInterval, retryLimit,
+                triggered, startTimeout, RemoteTriggerMetrics.forServer(remoteServer).forJob(jobName));
+        jobPoll.waitingBuilds.add(waitingBuild);
+
+        if (ticker == null) {
+            ticker = executor.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    tick();
+                }
+            }, 0, TICK, TimeUnit.MILLISECONDS);
+        }
+
+        return waitingBuild;
+    }
+
+    /**
+     * @return the number of builds currently being waited on
+     */
+    public synchronized int getWaitingBuildCount() {
+        int count = 0;
+        for (JobPoll jobPoll : jobs.values()) {
+            count += jobPoll.waitingBuilds.size();
+        }
+        return count;
+    }
+
+    synchronized void unregister(WaitingBuild waitingBuild) {
+        JobPoll jobPoll = jobs.get(waitingBuild.key);
+        if (jobPoll == null) {
+            return;
+        }
+
+        jobPoll.waitingBuilds.remove(waitingBuild);
+        if (jobPoll.waitingBuilds.isEmpty()) {
+            jobs.remove(waitingBuild.key);
+        }
+        if (jobs.isEmpty() && ticker != null) {
+            ticker.cancel(false);
+            ticker = null;
+        }
+    }
+
+    /**
+     * Polls every job which has at least one waiting build that is due for a poll.
+     */
+    private void tick() {
+        long now = System.currentTimeMillis();
+        List<JobPoll> duePolls = new ArrayList<JobPoll>();
+
+        synchronized (this) {
+            for (JobPoll jobPoll : jobs.values()) {
+                for (WaitingBuild waitingBuild : jobPoll.waitingBuilds) {
+                    if (waitingBuild.nextPoll <= now) {
+                        duePolls.add(jobPoll);
+                        break;
+                    }
+                }
+            }
+        }
+
+        // the HTTP calls are made without holding the lock, so that builds can (un)register in the meantime
+        for (JobPoll jobPoll : duePolls) {
+            try {
+                poll(jobPoll);
+            } catch (Exception e) {
+                // never let one job stop the others from being polled
+                LOGGER.log(Level.WARNING, "Failed to poll remote job " + jobPoll.jobName, e);
+            }
+        }
+    }
+
+    private void poll(JobPoll jobPoll) {
+        List<WaitingBuild> waitingBuilds;
+        int depth;
+        synchronized (this) {
+            waitingBuilds = new ArrayList<WaitingBuild>(jobPoll.waitingBuilds);
+            depth = Math.max(jobPoll.depth, waitingBuilds.size());
+        }
+
+        // a build that never shows up (the build number was guessed wrong, say) is not polled for forever
+        for (Iterator<WaitingBuild> it = waitingBuilds.iterator(); it.hasNext();) {
+            WaitingBuild waitingBuild = it.next();
+            if (waitingBuild.isStartOverdue()) {
+                waitingBuild.fail(new IOException("The remote build #" + waitingBuild.buildNumber + " of "
+                        + jobPoll.jobName + " did not start within " + waitingBuild.startTimeout / 1000 + " seconds."));
+                it.remove();
+            }
+        }
+        if (waitingBuilds.isEmpty()) {
+            return;
+        }
+
+        if (!remoteServer.getCircuitBreaker().tryAcquire()) {
+            // the remote server keeps failing; don't poll it (or count this as a failed poll) until it may have
+            // recovered
+            for (WaitingBuild waitingBuild : waitingBuilds) {
+                waitingBuild.scheduleNextPoll();
+            }
+            return;
+        }
+
+        RemoteTriggerMetrics.forServer(remoteServer).recordPoll();
+
+        // the request shows up in the trace of every build step waiting on one of the builds
+        List<RemoteTriggerTrace.Span> spans = new ArrayList<RemoteTriggerTrace.Span>(waitingBuilds.size());
+        for (WaitingBuild waitingBuild : waitingBuilds) {
+            spans.add(waitingBuild.getTraceSpan().child("poll request").attribute("builds", waitingBuilds.size()));
+        }
+
+        JSONObject response;
+        try {
+            Response fetched;
+            try {
+                fetched = fetch(buildsUrl(jobPoll.jobName, depth), jobPoll.authorization);
+            } catch (ProjectionRejectedException e) {
+                // fall back to a simpler request, and once that works, only use that one for this server from now on
+                boolean rangeRejected = remoteServer.isTreeRangeSupported();
+                fetched = fetch(buildsUrl(jobPoll.jobName, depth, rangeRejected, false), jobPoll.authorization);
+                if (rangeRejected) {
+                    remoteServer.setTreeRangeSupported(false);
+                } else {
+                    remoteServer.setTreeParameterSupported(false);
+                }
+            }
+            response = fetched.body;
+
+            // the request was shared, and so is what it cost
+            for (int i = 0; i < waitingBuilds.size(); i++) {
+                waitingBuilds.get(i).addBytesReceived(fetched.bytes / waitingBuilds.size());
+                spans.get(i).attribute("bytes", fetched.bytes / waitingBuilds.size());
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Polling remote job " + jobPoll.jobName + " failed", e);
+            for (RemoteTriggerTrace.Span span : spans) {
+                span.attribute("error", e.getMessage()).end();
+            }
+
+            // only the builds this poll was made for count it, so builds registered since then start from scratch
+            for (WaitingBuild waitingBuild : waitingBuilds) {
+                if (waitingBuild.pollFailed() > waitingBuild.retryLimit) {
+                    waitingBuild.fail(e);
+                } else {
+                    waitingBuild.scheduleNextPoll();
+                }
+            }
+            return;
+        }
+
+        // index what we got back by build number
+        Map<Integer, JSONObject> builds = new HashMap<Integer, JSONObject>();
+        int oldestReturned = Integer.MAX_VALUE;
+        JSONArray buildList = response == null ? null : response.optJSONArray("builds");
+        if (buildList != null) {
+            for (int i = 0; i < buildList.size(); i++) {
+                JSONObject remoteBuild = buildList.getJSONObject(i);
+                int number = remoteBuild.getInt("number");
+                builds.put(number, remoteBuild);
+                oldestReturned = Math.min(oldestReturned, number);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        boolean tooShallow = false;
+        for (int i = 0; i < waitingBuilds.size(); i++) {
+            WaitingBuild waitingBuild = waitingBuilds.get(i);
+            JSONObject remoteBuild = builds.get(waitingBuild.buildNumber);
+            String status;
+            long estimatedRemaining = -1;
+
+            if (remoteBuild != null) {
+                status = getStatus(remoteBuild);
+                long estimatedDuration = remoteBuild.optLong("estimatedDuration", -1);
+                if (status.equals("running") && estimatedDuration > 0) {
+                    estimatedRemaining = Math.max(0, remoteBuild.optLong("timestamp") + estimatedDuration - now);
+                }
+            } else {
+                if (buildList != null && buildList.size() >= depth && waitingBuild.buildNumber < oldestReturned) {
+                    // the build is older than the ones we asked for, so ask for more next time
+                    tooShallow = true;
+                }
+                // the remote server doesn't know about the build (yet)
+                status = "not started";
+            }
+
+            waitingBuild.pollSucceeded();
+            // ended before the waiting build step hears about it, and ends the span this one is below
+            spans.get(i).attribute("status", status).end();
+            // builds that weren't due yet came along for free; only bother them if something changed
+            if (waitingBuild.nextPoll <= now || !status.equals(waitingBuild.getLastStatus())) {
+                waitingBuild.update(status, estimatedRemaining);
+            }
+        }
+
+        if (tooShallow) {
+            synchronized (this) {
+                jobPoll.depth = Math.min(depth * 2, MAX_DEPTH);
+            }
+        }
+    }
+
+    /**
+     * Translates a remote build into the status strings used by {@link RemoteBuildConfiguration#getBuildStatus}.
+     */
+    private static String getStatus(JSONObject remoteBuild) {
+        if (remoteBuild.optBoolean("building")) {
+            return "running";
+        }
+
+        Object result = remoteBuild.opt("result");
+        if (result == null || result instanceof JSONNull) {
+            return "not started";
+        }
+        return result.toString();
+    }
+
+    private String buildsUrl(String jobName, int depth) {
+        return buildsUrl(jobName, depth, remoteServer.isTreeParameterSupported(), remoteServer.isTreeRangeSupported());
+    }
+
+    /**
+     * @param jobName
+     * @param depth
+     *            How many builds to ask for, if the "tree" parameter can limit them
+     * @param useTree
+     *            Whether to ask for only the fields that are used
+     * @param useRange
+     *            Whether to limit the number of builds, as part of the "tree" parameter
+     * @return URL of the API call that fetches the recent builds of the job
+     */
+    private String buildsUrl(String jobName, int depth, boolean useTree, boolean useRange) {
+        String urlString;
+        try {
+            urlString = remoteServer.getAddress().toString() + "/job/"
+                    + URLEncoder.encode(jobName, "UTF-8").replace("+", "%20") + "/api/json";
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e);
+        }
+
+        if (!useTree) {
+            // gets every field of every build, but it's the only way to get their status in one go. Only the fields in
+            // BUILDS_TREE are kept while reading it, though
+            return urlString + "?depth=1";
+        }
+
+        String tree = BUILDS_TREE;
+        if (useRange) {
+            tree += "{0," + depth + "}";
+        }
+        return TreeParameter.add(urlString, tree);
+    }
+
+    private Response fetch(String urlString, String authorization) throws IOException {
+        HttpGet request = new HttpGet(urlString);
+        if (authorization != null) {
+            request.setHeader("Authorization", authorization);
+        }
+        request.setHeader("Accept", "application/json");
+
+        RemoteConnectionPool connectionPool = remoteServer.getConnectionPool();
+        RemoteCircuitBreaker circuitBreaker = remoteServer.getCircuitBreaker();
+        RemoteRequestLimiter requestLimiter = remoteServer.getRequestLimiter();
+        try {
+            // the poll is made on behalf of every waiting build, each of which checks its own deadline between polls
+            requestLimiter.acquireRequest(RemoteBuildDeadline.NONE);
+        } catch (InterruptedException e) {
+            // the poller is being shut down
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+
+        RemoteTriggerMetrics.ServerMetrics metrics = RemoteTriggerMetrics.forServer(remoteServer);
+        long started = System.nanoTime();
+        CloseableHttpResponse response;
+        try {
+            response = connectionPool.execute(request);
+        } catch (IOException e) {
+            requestLimiter.releaseRequest();
+            circuitBreaker.onFailure();
+            metrics.recordRequest(started, 0, true);
+            throw e;
+        }
+        long bytesReceived = 0;
+        boolean failed = true;
+        try {
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode >= 500) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+            if (statusCode == 400 && TreeParameter.isPresent(urlString)) {
+                throw new ProjectionRejectedException(statusCode, urlString);
+            }
+            if (statusCode >= 400) {
+                throw new IOException("Server returned HTTP response code: " + statusCode + " for URL: " + urlString);
+            }
+
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                failed = false;
+                return new Response(null, 0);
+            }
+
+            CountingInputStream is = new CountingInputStream(entity.getContent());
+            Reader reader = new InputStreamReader(is, "UTF-8");
+            try {
+                JSONObject body = BUILDS_PROJECTION.parse(reader);
+                bytesReceived = is.getByteCount();
+                failed = false;
+                return new Response(body, bytesReceived);
+            } finally {
+                reader.close();
+            }
+        } finally {
+            EntityUtils.consumeQuietly(response.getEntity());
+            response.close();
+            requestLimiter.releaseRequest();
+            metrics.recordRequest(started, bytesReceived, failed);
+        }
+    }
+
+    /**
+     * Parsed response of one poll, and its size in bytes.
+     */
+    private static class Response {
+        private final JSONObject body;
+        private final long       bytes;
+
+        Response(JSONObject body, long bytes) {
+            this.body = body;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Thrown when the remote server refuses a "tree" parameter it doesn't understand, with a "400 Bad Request".
+     */
+    private static class ProjectionRejectedException extends IOException {
+        ProjectionRejectedException(int statusCode, String urlString) {
+            super("Server returned HTTP response code: " + statusCode + " for URL: " + urlString);
+        }
+    }
+
+    /**
+     * All builds of one remote job that are being waited on with the same credentials.
+     */
+    private static class JobPoll {
+        private final String             jobName;
+        private final String             authorization;
+        private final List<WaitingBuild> waitingBuilds = new ArrayList<WaitingBuild>();
+        private int                      depth         = INITIAL_DEPTH;
+
+        JobPoll(String jobName, String authorization) {
+            this.jobName = jobName;
+            this.authorization = authorization;
+        }
+    }
+
+    /**
+     * A remote build that a build step is waiting on.
+     */
+    public static class WaitingBuild {
+        // how long past the next scheduled poll to wait for it to come back, before telling the caller we are still
+        // waiting
+        private static final long             GRACE = 5000;
+
+        private final RemoteBuildStatusPoller poller;
+        private final String                  key;
+        private final int                     buildNumber;
+        private final PollSchedule            pollSchedule;
+        private final int                     pollInterval;
+        private final int                     retryLimit;
+        private final long                    registered;
+        private final long                    triggered;
+        // milliseconds after registering to give up if the build hasn't started by then, or 0
+        private final long                    startTimeout;
+        private final RemoteTriggerMetrics.JobMetrics metrics;
+
+        private volatile long                 nextPoll;
+        // span of the build step waiting for the next poll, which the poll requests are traced below
+        private volatile RemoteTriggerTrace.Span traceSpan = RemoteTriggerTrace.Span.NONE;
+
+        // guarded by "this"
+        private String                        status;
+        private IOException                   error;
+        private long                          updates;
+        private PollSchedule.Phase            phase = PollSchedule.Phase.NOT_STARTED;
+        private int                           attempt;
+        private long                          estimatedRemaining = -1;
+        private long                          bytesReceived;
+        // polls of this build that failed in a row
+        private int                           failures;
+        // when the build was first seen running, or -1
+        private long                          started = -1;
+        private boolean                       finished;
+        private List<Runnable>                onDone = new ArrayList<Runnable>();
+
+        WaitingBuild(RemoteBuildStatusPoller poller, String key, int buildNumber, PollSchedule pollSchedule,
+                int pollInterval, int retryLimit, long triggered, long startTimeout,
+                RemoteTriggerMetrics.JobMetrics metrics) {
+            this.poller = poller;
+            this.key = key;
+            this.buildNumber = buildNumber;
+            this.pollSchedule = pollSchedule;
+            this.pollInterval = pollInterval;
+            this.retryLimit = retryLimit;
+            this.registered = System.currentTimeMillis();
+            this.triggered = triggered;
+            this.startTimeout = startTimeout;
+            this.metrics = metrics;
+            // poll straight away
+            this.nextPoll = this.registered;
+        }
+
+        public int getBuildNumber() {
+            return this.buildNumber;
+        }
+
+        /**
+         * Waits for the next poll of this build to come back, and returns the status it found.
+         *
+         * @param maxWait
+         *            Milliseconds to wait at most, on top of the time until the next poll
+         * @return "not started", "running", or the result of the remote build. If the poll did not come back in time,
+         *         the last known status is returned (which is null before the first poll).
+         * @throws IOException
+         *             if polling failed too many times in a row
+         * @throws InterruptedException
+         */
+        public synchronized String awaitStatus(long maxWait) throws IOException, InterruptedException {
+            long seen = this.updates;
+            long now = System.currentTimeMillis();
+            long deadline = Math.max(this.nextPoll, now) + GRACE;
+            if (maxWait < deadline - now) {
+                deadline = now + maxWait;
+            }
+
+            while (this.updates == seen && this.error == null) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                this.wait(remaining);
+            }
+
+            if (this.error != null) {
+                throw this.error;
+            }
+            return this.status;
+        }
+
+        RemoteTriggerTrace.Span getTraceSpan() {
+            return this.traceSpan;
+        }
+
+        /**
+         * @param traceSpan
+         *            Span to trace the poll requests for this build below, or {@link RemoteTriggerTrace.Span#NONE}
+         */
+        void setTraceSpan(RemoteTriggerTrace.Span traceSpan) {
+            this.traceSpan = traceSpan;
+        }
+
+        /**
+         * @return seconds until this build will be polled next
+         */
+        public long getSecondsUntilNextPoll() {
+            return Math.max(0, (this.nextPoll - System.currentTimeMillis() + 500) / 1000);
+        }
+
+        /**
+         * @return how many times the build was polled after waiting for the poll schedule, so not counting the first
+         *         poll made straight away
+         */
+        public synchronized long getDelayedPolls() {
+            return Math.max(0, this.updates - 1);
+        }
+
+        /**
+         * @return how many times the build was polled (the requests were shared with other builds of the same job)
+         */
+        public synchronized long getPolls() {
+            return this.updates;
+        }
+
+        /**
+         * @return this build's share of the response bytes received while polling
+         */
+        public synchronized long getBytesReceived() {
+            return this.bytesReceived;
+        }
+
+        synchronized void addBytesReceived(long bytes) {
+            this.bytesReceived += bytes;
+        }
+
+        /**
+         * @return milliseconds since this build was registered
+         */
+        public long getTimeWaited() {
+            return System.currentTimeMillis() - this.registered;
+        }
+
+        /**
+         * Stops polling for this build.
+         */
+        public void cancel() {
+            this.poller.unregister(this);
+
+            List<Runnable> callbacks;
+            synchronized (this) {
+                callbacks = this.onDone;
+                this.onDone = null;
+            }
+            if (callbacks != null) {
+                for (Runnable callback : callbacks) {
+                    callback.run();
+                }
+            }
+        }
+
+        /**
+         * Registers something to be run once this build is no longer polled: because it has finished, because polling
+         * it failed, or because it was cancelled. Runs it straight away if that has already happened.
+         *
+         * @param callback
+         */
+        public void onDone(Runnable callback) {
+            synchronized (this) {
+                if (this.onDone != null) {
+                    this.onDone.add(callback);
+                    return;
+                }
+            }
+            callback.run();
+        }
+
+        /**
+         * @return whether the build has not been seen started (or finished) within its start timeout
+         */
+        synchronized boolean isStartOverdue() {
+            return this.startTimeout > 0 && this.phase == PollSchedule.Phase.NOT_STARTED && !this.finished
+                    && System.currentTimeMillis() - this.registered > this.startTimeout;
+        }
+
+        synchronized String getLastStatus() {
+            return this.status;
+        }
+
+        void update(String status, long estimatedRemaining) {
+            synchronized (this) {
+                updateStatus(status, estimatedRemaining);
+            }
+            if (!status.equals("not started") && !status.equals("running")) {
+                // the build has finished, so there is nothing left to poll for
+                cancel();
+            }
+        }
+
+        /**
+         * Counts a failed poll of this build.
+         *
+         * @return how many polls of this build have failed in a row
+         */
+        synchronized int pollFailed() {
+            return ++this.failures;
+        }
+
+        synchronized void pollSucceeded() {
+            this.failures = 0;
+        }
+
+        private void updateStatus(String status, long estimatedRemaining) {
+            recordPhases(status);
+            if (this.phase == PollSchedule.Phase.NOT_STARTED && status.equals("running")) {
+                // the schedule starts over once the build is running
+                this.phase = PollSchedule.Phase.RUNNING;
+                this.attempt = 0;
+            } else if (this.updates > 0) {
+                this.attempt++;
+            }
+
+            this.status = status;
+            this.estimatedRemaining = estimatedRemaining;
+            this.updates++;
+            scheduleNextPoll();
+            this.notifyAll();
+        }
+
+        /**
+         * Records how long the build was queued and ran, as far as the polls can tell: it may have started (or
+         * finished) at any time since the poll before.
+         */
+        private void recordPhases(String status) {
+            if (status.equals("not started") || this.finished) {
+                // a poll that was already under way may still report the build as finished a second time
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (this.phase == PollSchedule.Phase.NOT_STARTED) {
+                this.metrics.recordQueueWait(now - this.triggered);
+                if (status.equals("running")) {
+                    this.started = now;
+                }
+            }
+            if (!status.equals("running")) {
+                if (this.started >= 0) {
+                    this.metrics.recordRunTime(now - this.started);
+                }
+                this.metrics.recordPollsPerWait(this.updates + 1);
+                this.finished = true;
+            }
+        }
+
+        void fail(IOException error) {
+            synchronized (this) {
+                this.error = error;
+                this.notifyAll();
+            }
+            // no point in polling any more, the waiting build step is going to give up
+            cancel();
+        }
+
+        synchronized void scheduleNextPoll() {
+            this.nextPoll = System.currentTimeMillis()
+                    + this.pollSchedule.getDelay(this.phase, this.attempt, this.pollInterval, this.estimatedRemaining);
+        }
+    }
+}
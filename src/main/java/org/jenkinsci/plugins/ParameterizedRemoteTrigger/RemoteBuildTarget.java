@@ -0,0 +1,104 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import jenkins.model.Jenkins;
+
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.util.ListBoxModel;
+
+/**
+ * One more remote job for a {@link RemoteBuildConfiguration} to trigger, next to the one configured on the build step
+ * itself. All of them are triggered (and waited on) at the same time, the rest of the settings of the build step
+ * apply to each of them.
+ */
+public class RemoteBuildTarget extends AbstractDescribableImpl<RemoteBuildTarget> {
+
+    private final String remoteJenkinsName;
+    private final String job;
+    private final String token;
+    // "parameters" is the raw string entered by the user, one "name=value" per line
+    private final String parameters;
+    // "fileParameters" is the raw string entered by the user, one "name=path in the workspace" per line
+    private final String fileParameters;
+
+    // "parameters", compiled; not part of the configuration
+    private transient volatile ParameterTemplate parameterTemplate;
+
+    @DataBoundConstructor
+    public RemoteBuildTarget(String remoteJenkinsName, String job, String token, String parameters,
+            String fileParameters) {
+        this.remoteJenkinsName = remoteJenkinsName;
+        this.job = job == null ? "" : job.trim();
+        this.token = token == null ? "" : token.trim();
+        this.parameters = parameters == null ? "" : parameters;
+        this.fileParameters = fileParameters == null ? "" : fileParameters;
+        this.parameterTemplate = ParameterTemplate.compile(this.parameters);
+    }
+
+    public String getRemoteJenkinsName() {
+        return this.remoteJenkinsName;
+    }
+
+    public String getJob() {
+        return this.job;
+    }
+
+    public String getToken() {
+        return this.token;
+    }
+
+    public String getParameters() {
+        return this.parameters;
+    }
+
+    /**
+     * @return the parameters, compiled
+     */
+    public ParameterTemplate getParameterTemplate() {
+        // targets loaded from disk are compiled on first use; templates never change, so compiling twice is harmless
+        ParameterTemplate parameterTemplate = this.parameterTemplate;
+        if (parameterTemplate == null) {
+            parameterTemplate = ParameterTemplate.compile(this.parameters);
+            this.parameterTemplate = parameterTemplate;
+        }
+        return parameterTemplate;
+    }
+
+    public String getFileParameters() {
+        // targets saved before there were file parameters don't have any
+        return this.fileParameters == null ? "" : this.fileParameters;
+    }
+
+    /**
+     * @return the file parameters, one line per entry (comments and empty lines included)
+     */
+    public List<String> getFileParameterList() {
+        return new ArrayList<String>(Arrays.asList(this.getFileParameters().split("\n")));
+    }
+
+    @Override
+    public String toString() {
+        return this.job + " on " + this.remoteJenkinsName;
+    }
+
+    @Extension
+    public static class DescriptorImpl extends Descriptor<RemoteBuildTarget> {
+
+        public String getDisplayName() {
+            return "";
+        }
+
+        public ListBoxModel doFillRemoteJenkinsNameItems() {
+            // the remote servers are configured globally, on the build step
+            return Jenkins.getInstance().getDescriptorByType(RemoteBuildConfiguration.DescriptorImpl.class)
+                    .doFillRemoteJenkinsNameItems();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Circuit breaker and retry budget shared by every call made to one {@link RemoteJenkinsServer}.
+ *
+ * After {@link #FAILURE_THRESHOLD} failures in a row the breaker opens: calls are no longer sent, but wait (without
+ * using a connection or a thread of the poller) until the breaker lets a single trial call through. If that call gets
+ * an answer the breaker closes again, otherwise it stays open for twice as long (up to {@link #MAX_OPEN_TIME}).
+ *
+ * Retries of failed calls are spaced out with exponential backoff and random jitter, and all builds together may only
+ * retry as often as the retry budget of the server allows, so that a remote server which comes back up isn't hit by
+ * every waiting build at once.
+ */
+public class RemoteCircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    // failures in a row after which the breaker opens
+    public static final int     FAILURE_THRESHOLD  = 5;
+    // how long (in milliseconds) the breaker stays open, the first time and at most
+    public static final long    MIN_OPEN_TIME      = 5000;
+    public static final long    MAX_OPEN_TIME      = 300000;
+    // how long a call waits for an open breaker, before it is counted as a failed attempt
+    public static final long    MAX_WAIT_TIME      = 60000;
+
+    // first and largest delay (in milliseconds) before retrying a failed call
+    private static final long   BACKOFF_BASE       = 500;
+    private static final long   BACKOFF_CAP        = 30000;
+
+    // retries that can be made in a burst, and how often (in milliseconds) one more is allowed
+    private static final int    RETRY_BUDGET       = 10;
+    private static final long   RETRY_REFILL_TIME  = 1000;
+
+    private static final Random random             = new Random();
+
+    // guarded by "this"
+    private State               state              = State.CLOSED;
+    private int                 consecutiveFailures;
+    private long                openTime           = MIN_OPEN_TIME;
+    private long                openUntil;
+    private long                trialStarted       = -1;
+    private double              retryTokens        = RETRY_BUDGET;
+    private long                lastRefill         = System.currentTimeMillis();
+    private long                timesOpened;
+    private long                retriesRejected;
+
+    /**
+     * Waits until a call may be made to the remote server. Returns straight away while the breaker is closed.
+     *
+     * @param maxWait
+     *            Milliseconds to wait at most
+     * @throws CircuitOpenException
+     *             if the breaker did not let the call through in time
+     * @throws InterruptedException
+     */
+    public synchronized void acquire(long maxWait) throws CircuitOpenException, InterruptedException {
+        long deadline = System.currentTimeMillis() + maxWait;
+
+        while (true) {
+            long now = System.currentTimeMillis();
+            if (tryAcquire(now)) {
+                return;
+            }
+            if (now >= deadline) {
+                throw new CircuitOpenException();
+            }
+
+            long wakeUp = deadline;
+            if (this.state == State.OPEN) {
+                wakeUp = Math.min(wakeUp, this.openUntil);
+            } else {
+                // a trial call is being made; wake up when it is done, or when it is considered lost
+                wakeUp = Math.min(wakeUp, this.trialStarted + MAX_WAIT_TIME);
+            }
+            this.wait(Math.max(1, wakeUp - now));
+        }
+    }
+
+    /**
+     * Same as {@link #acquire(long)}, but never waits.
+     *
+     * @return whether a call may be made now
+     */
+    public synchronized boolean tryAcquire() {
+        return tryAcquire(System.currentTimeMillis());
+    }
+
+    private boolean tryAcquire(long now) {
+        if (this.state == State.OPEN && now >= this.openUntil) {
+            this.state = State.HALF_OPEN;
+            this.trialStarted = -1;
+        }
+        if (this.state == State.HALF_OPEN && this.trialStarted >= 0 && now >= this.trialStarted + MAX_WAIT_TIME) {
+            // the trial call never reported back, let another one try
+            this.trialStarted = -1;
+        }
+
+        switch (this.state) {
+        case CLOSED:
+            return true;
+        case HALF_OPEN:
+            if (this.trialStarted < 0) {
+                this.trialStarted = now;
+                return true;
+            }
+            return false;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Reports that the remote server answered a call (whatever the answer was).
+     */
+    public synchronized void onSuccess() {
+        this.state = State.CLOSED;
+        this.consecutiveFailures = 0;
+        this.openTime = MIN_OPEN_TIME;
+        this.trialStarted = -1;
+        this.notifyAll();
+    }
+
+    /**
+     * Reports that a call to the remote server failed, because it could not be reached or had an internal error.
+     */
+    public synchronized void onFailure() {
+        switch (this.state) {
+        case HALF_OPEN:
+            open(Math.min(this.openTime * 2, MAX_OPEN_TIME));
+            break;
+        case CLOSED:
+            this.consecutiveFailures++;
+            if (this.consecutiveFailures >= FAILURE_THRESHOLD) {
+                open(MIN_OPEN_TIME);
+            }
+            break;
+        default:
+            // calls that were already under way when the breaker opened; nothing new to learn from them
+            break;
+        }
+    }
+
+    private void open(long time) {
+        this.state = State.OPEN;
+        this.openTime = time;
+        // jitter, so that the breakers of several masters pointing at the same server don't all try at once
+        this.openUntil = System.currentTimeMillis() + time / 2 + (long) (random.nextDouble() * (time / 2));
+        this.trialStarted = -1;
+        this.timesOpened++;
+        this.notifyAll();
+    }
+
+    /**
+     * Takes one retry out of the retry budget of the server.
+     *
+     * @return false if the budget is used up, and the call should not be retried
+     */
+    public synchronized boolean tryAcquireRetry() {
+        long now = System.currentTimeMillis();
+        this.retryTokens = Math.min(RETRY_BUDGET, this.retryTokens + (double) (now - this.lastRefill)
+                / RETRY_REFILL_TIME);
+        this.lastRefill = now;
+
+        if (this.retryTokens >= 1) {
+            this.retryTokens--;
+            return true;
+        }
+        this.retriesRejected++;
+        return false;
+    }
+
+    /**
+     * @param attempt
+     *            Number of the attempt that failed, starting at 1
+     * @return milliseconds to wait before retrying (exponential backoff, with "full" jitter)
+     */
+    public long getRetryDelay(int attempt) {
+        long ceiling = BACKOFF_CAP;
+        if (attempt < 16) {
+            ceiling = Math.min(BACKOFF_CAP, BACKOFF_BASE << Math.max(0, attempt - 1));
+        }
+        synchronized (random) {
+            return (long) (random.nextDouble() * ceiling);
+        }
+    }
+
+    public synchronized State getState() {
+        return this.state;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "state=" + state + ", times opened=" + timesOpened + ", retries over budget=" + retriesRejected;
+    }
+
+    /**
+     * Thrown when a call is not made because the breaker of the remote server is open.
+     */
+    public static class CircuitOpenException extends IOException {
+        public CircuitOpenException() {
+            super("The remote server has been failing, and is not being called until it recovers.");
+        }
+    }
+}
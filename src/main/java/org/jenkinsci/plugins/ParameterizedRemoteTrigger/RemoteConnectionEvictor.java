@@ -0,0 +1,33 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import hudson.Extension;
+import hudson.model.PeriodicWork;
+import jenkins.model.Jenkins;
+
+/**
+ * Periodically closes idle pooled connections for every configured remote server, and the pools of replaced server
+ * entries once they are no longer used.
+ */
+@Extension
+public class RemoteConnectionEvictor extends PeriodicWork {
+
+    @Override
+    public long getRecurrencePeriod() {
+        // run at least as often as the idle timeout, so idle connections don't linger for much longer than that
+        return RemoteConnectionPool.DEFAULT_IDLE_TIMEOUT * 1000;
+    }
+
+    @Override
+    protected void doRun() throws Exception {
+        RemoteBuildConfiguration.DescriptorImpl descriptor = Jenkins.getInstance().getDescriptorByType(
+                RemoteBuildConfiguration.DescriptorImpl.class);
+        if (descriptor == null) {
+            return;
+        }
+
+        for (RemoteJenkinsServer server : descriptor.getRemoteSites()) {
+            server.evictIdleConnections();
+        }
+        descriptor.closeIdleRetiredPools();
+    }
+}
@@ -0,0 +1,291 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.HttpConnectionFactory;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.UnsupportedSchemeException;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.impl.conn.SystemDefaultRoutePlanner;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Keep-alive connection pool shared by every call made to one {@link RemoteJenkinsServer}.
+ *
+ * Connections (and, for HTTPS, their TLS sessions) are handed back to the pool once a response has been fully read,
+ * so that triggers and status polls against the same remote host re-use sockets instead of opening a new one each
+ * time. Idle connections are closed by {@link RemoteConnectionEvictor}.
+ *
+ * When the server entry gets replaced by a new configuration, builds that are still running carry on with the pool of
+ * the old entry. If the new entry can't take the pool over, it is closed by the evictor once no call is using it any
+ * more (see {@link #closeIfIdle()}).
+ *
+ * Resolving the address of the remote host and opening a connection to it (including the TLS handshake) are timed
+ * as spans of the {@link RemoteTriggerTrace} of the calling thread, if it has one.
+ */
+public class RemoteConnectionPool {
+
+    public static final int                          DEFAULT_MAX_CONNECTIONS = 20;
+    public static final int                          DEFAULT_IDLE_TIMEOUT    = 30;
+
+    // wait up to 5 seconds for the connection to be open, and up to a minute for the remote host to send anything
+    public static final int                          DEFAULT_CONNECT_TIMEOUT = 5;
+    public static final int                          DEFAULT_READ_TIMEOUT    = 60;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient                httpClient;
+    private final int                                idleTimeout;
+
+    private final AtomicLong                         created                 = new AtomicLong();
+    private final AtomicLong                         evicted                 = new AtomicLong();
+
+    // guarded by "this": calls that are being sent, and whether the pool has been shut down
+    private int                                      calls;
+    private boolean                                  closed;
+
+    /**
+     * @param maxConnections
+     *            Maximum number of open connections to the remote host, leased and idle combined
+     * @param idleTimeout
+     *            Seconds a connection may sit idle in the pool before it gets closed
+     * @param connectTimeout
+     *            Seconds to wait for a connection to be opened
+     * @param readTimeout
+     *            Seconds to wait for the remote host to send (more of) a response, before giving up on it
+     */
+    public RemoteConnectionPool(int maxConnections, int idleTimeout, int connectTimeout, int readTimeout) {
+        this.idleTimeout = idleTimeout;
+
+        // count every physical connection we open, so that re-use can be compared against the number of calls made
+        HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> connectionFactory = new HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection>() {
+            public ManagedHttpClientConnection create(HttpRoute route, ConnectionConfig config) {
+                created.incrementAndGet();
+                return ManagedHttpClientConnectionFactory.INSTANCE.create(route, config);
+            }
+        };
+
+        // HTTPS connections trust what the JVM is told to trust (javax.net.ssl.trustStore etc.), the same as the
+        // HttpURLConnection that was used before the pool
+        this.connectionManager = new PoolingHttpClientConnectionManager(RegistryBuilder
+                .<ConnectionSocketFactory> create()
+                .register("http", new TracedSocketFactory(PlainConnectionSocketFactory.getSocketFactory()))
+                .register("https", new TracedSocketFactory(SSLConnectionSocketFactory.getSystemSocketFactory()))
+                .build(), connectionFactory, new TracedDnsResolver());
+
+        // a server entry only ever talks to one host, so the per-host cap and the overall cap are the same thing
+        this.connectionManager.setMaxTotal(maxConnections);
+        this.connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+        // without a read timeout, a remote host that accepts the connection but never answers would keep the calling
+        // thread waiting forever
+        RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(connectTimeout * 1000)
+                .setSocketTimeout(readTimeout * 1000).build();
+
+        // and go through the proxy the JVM is configured with (http(s).proxyHost, http.nonProxyHosts), if any
+        this.httpClient = HttpClients.custom().useSystemProperties().setConnectionManager(this.connectionManager)
+                .setRoutePlanner(new SystemDefaultRoutePlanner(ProxySelector.getDefault()))
+                .setDefaultRequestConfig(requestConfig).build();
+    }
+
+    /**
+     * Sends the request using one of the pooled connections. The caller must close the returned response (after
+     * consuming its entity) so that the connection goes back to the pool.
+     *
+     * @param request
+     *            request to send
+     * @return response from the remote host
+     * @throws IOException
+     *             also if the pool has been closed, so that callers deal with it like any other failed call
+     */
+    public CloseableHttpResponse execute(HttpUriRequest request) throws IOException {
+        synchronized (this) {
+            if (this.closed) {
+                throw new IOException("The connections to the remote server were closed, as its configuration changed.");
+            }
+            this.calls++;
+        }
+        try {
+            // once this returns, the connection is leased until the response is closed
+            return this.httpClient.execute(request);
+        } finally {
+            synchronized (this) {
+                this.calls--;
+            }
+        }
+    }
+
+    /**
+     * Closes connections that have been idle for longer than the idle timeout, or that the remote host is known to
+     * have dropped already.
+     */
+    public void evictIdleConnections() {
+        int idleBefore = this.connectionManager.getTotalStats().getAvailable();
+
+        this.connectionManager.closeExpiredConnections();
+        this.connectionManager.closeIdleConnections(this.idleTimeout, TimeUnit.SECONDS);
+
+        int idleAfter = this.connectionManager.getTotalStats().getAvailable();
+        if (idleBefore > idleAfter) {
+            evicted.addAndGet(idleBefore - idleAfter);
+        }
+    }
+
+    /**
+     * Closes the pool if no call is being sent through it, and none of its connections is leased.
+     *
+     * @return true if the pool is closed
+     */
+    public synchronized boolean closeIfIdle() {
+        if (!this.closed && (this.calls > 0 || this.connectionManager.getTotalStats().getLeased() > 0)) {
+            return false;
+        }
+        shutdown();
+        return true;
+    }
+
+    public synchronized boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * Closes every connection in the pool. The pool can not be used after this.
+     */
+    public synchronized void shutdown() {
+        this.closed = true;
+        try {
+            this.httpClient.close();
+        } catch (IOException e) {
+            // nothing we can do about it, the connections are being thrown away anyway
+        }
+        this.connectionManager.shutdown();
+    }
+
+    public Stats getStats() {
+        PoolStats poolStats = this.connectionManager.getTotalStats();
+        return new Stats(poolStats.getLeased(), poolStats.getAvailable(), poolStats.getMax(), created.get(),
+                evicted.get());
+    }
+
+    /**
+     * Times address lookups as "dns" spans.
+     */
+    private static class TracedDnsResolver implements DnsResolver {
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            RemoteTriggerTrace.Span span = RemoteTriggerTrace.start("dns").attribute("host", host);
+            try {
+                return SystemDefaultDnsResolver.INSTANCE.resolve(host);
+            } finally {
+                span.end();
+            }
+        }
+    }
+
+    /**
+     * Times opening connections as "connect" spans, which include the TLS handshake for HTTPS.
+     */
+    private static class TracedSocketFactory implements LayeredConnectionSocketFactory {
+        private final ConnectionSocketFactory delegate;
+
+        TracedSocketFactory(ConnectionSocketFactory delegate) {
+            this.delegate = delegate;
+        }
+
+        public Socket createSocket(HttpContext context) throws IOException {
+            return this.delegate.createSocket(context);
+        }
+
+        public Socket connectSocket(int connectTimeout, Socket sock, HttpHost host, InetSocketAddress remoteAddress,
+                InetSocketAddress localAddress, HttpContext context) throws IOException {
+            RemoteTriggerTrace.Span span = RemoteTriggerTrace.start("connect")
+                    .attribute("address", remoteAddress.toString());
+            try {
+                return this.delegate.connectSocket(connectTimeout, sock, host, remoteAddress, localAddress, context);
+            } finally {
+                span.end();
+            }
+        }
+
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context)
+                throws IOException {
+            if (!(this.delegate instanceof LayeredConnectionSocketFactory)) {
+                throw new UnsupportedSchemeException("Only HTTPS connections can be layered.");
+            }
+            RemoteTriggerTrace.Span span = RemoteTriggerTrace.start("tls").attribute("host", target);
+            try {
+                return ((LayeredConnectionSocketFactory) this.delegate).createLayeredSocket(socket, target, port,
+                        context);
+            } finally {
+                span.end();
+            }
+        }
+    }
+
+    /**
+     * Point-in-time snapshot of the pool, used to size it.
+     */
+    public static class Stats {
+        private final int  leased;
+        private final int  idle;
+        private final int  max;
+        private final long created;
+        private final long evicted;
+
+        public Stats(int leased, int idle, int max, long created, long evicted) {
+            this.leased = leased;
+            this.idle = idle;
+            this.max = max;
+            this.created = created;
+            this.evicted = evicted;
+        }
+
+        public int getLeased() {
+            return this.leased;
+        }
+
+        public int getIdle() {
+            return this.idle;
+        }
+
+        public int getMax() {
+            return this.max;
+        }
+
+        public long getCreated() {
+            return this.created;
+        }
+
+        public long getEvicted() {
+            return this.evicted;
+        }
+
+        @Override
+        public String toString() {
+            return "leased=" + leased + ", idle=" + idle + ", max=" + max + ", created=" + created + ", evicted="
+                    + evicted;
+        }
+    }
+}
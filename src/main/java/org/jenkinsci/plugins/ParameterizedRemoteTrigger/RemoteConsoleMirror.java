@@ -0,0 +1,209 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.util.concurrent.ScheduledFuture;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Copies the console output of a remote build into the local build log, a bit at a time, while the build step waits
+ * for the remote build.
+ *
+ * Each update asks the remote server for the output added since the last one, through the "progressiveText" API:
+ * the "X-Text-Size" header of the response says where the next update should start, and "X-More-Data" whether the
+ * remote build may still add more. The output is copied straight from the connection into the log through a buffer
+ * of a fixed size, so even very long logs are never held in memory. The requests go through the same connection
+ * pool (and limits) of the remote server as the status polls, and are held back in the same way while its circuit
+ * breaker is open.
+ */
+public class RemoteConsoleMirror {
+
+    private static final int          BUFFER_SIZE = 8192;
+    // how many updates in a row may come back empty, once the remote build is done, before we stop asking
+    private static final int          MAX_EMPTY_UPDATES = 10;
+    // how long to wait between updates once the remote build is done, while the remote server is still writing
+    private static final long         FINISH_DELAY = 1000;
+
+    private final RemoteJenkinsServer remoteServer;
+    private final String              authorization;
+    private final String              logUrl;
+
+    // guarded by "this"
+    private long                      offset;
+    private boolean                   moreData    = true;
+    private long                      requests;
+    private long                      bytesReceived;
+
+    /**
+     * @param remoteServer
+     * @param authorization
+     *            Value of the "Authorization" header to use, or null if none is needed
+     * @param jobName
+     *            Name of the remote job
+     * @param buildNumber
+     *            Number of the remote build
+     */
+    public RemoteConsoleMirror(RemoteJenkinsServer remoteServer, String authorization, String jobName,
+            int buildNumber) {
+        this.remoteServer = remoteServer;
+        this.authorization = authorization;
+        this.logUrl = remoteServer.getAddress().toString() + "/job/" + RemoteBuildRequest.encodeValue(jobName) + "/"
+                + buildNumber + "/logText/progressiveText";
+    }
+
+    /**
+     * Copies the console output added since the last update.
+     *
+     * @param out
+     *            Log to copy it to
+     * @param deadline
+     *            Deadline of the build step; the request is aborted when it passes
+     * @return how many bytes were copied, which is 0 if the update was skipped as the remote server keeps failing
+     * @throws IOException
+     */
+    public synchronized long update(PrintStream out, RemoteBuildDeadline deadline) throws IOException {
+        RemoteCircuitBreaker circuitBreaker = this.remoteServer.getCircuitBreaker();
+        if (!circuitBreaker.tryAcquire()) {
+            // the output is still there once the remote server has recovered, a later update picks it up
+            return 0;
+        }
+
+        HttpGet request = new HttpGet(this.logUrl + "?start=" + this.offset);
+        if (this.authorization != null) {
+            request.setHeader("Authorization", this.authorization);
+        }
+
+        RemoteRequestLimiter requestLimiter = this.remoteServer.getRequestLimiter();
+        try {
+            requestLimiter.acquireRequest(deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+
+        CloseableHttpResponse response = null;
+        ScheduledFuture<?> abortOnExpiry = deadline.abortOnExpiry(request);
+        long started = System.nanoTime();
+        long copied = 0;
+        boolean failed = true;
+        try {
+            try {
+                response = this.remoteServer.getConnectionPool().execute(request);
+            } catch (IOException e) {
+                circuitBreaker.onFailure();
+                throw e;
+            }
+            this.requests++;
+
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode >= 500) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+            if (statusCode == 404) {
+                // the remote build has no log (yet)
+                failed = false;
+                return 0;
+            }
+            if (statusCode >= 400) {
+                throw new IOException("Server returned HTTP response code: " + statusCode + " for URL: "
+                        + request.getURI());
+            }
+
+            HttpEntity entity = response.getEntity();
+            if (entity != null) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                InputStream in = entity.getContent();
+                try {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                        copied += read;
+                    }
+                } finally {
+                    in.close();
+                }
+                out.flush();
+            }
+            this.bytesReceived += copied;
+
+            Header textSize = response.getFirstHeader("X-Text-Size");
+            if (textSize != null) {
+                try {
+                    this.offset = Long.parseLong(textSize.getValue().trim());
+                } catch (NumberFormatException e) {
+                    this.offset += copied;
+                }
+            } else {
+                this.offset += copied;
+            }
+            Header moreData = response.getFirstHeader("X-More-Data");
+            this.moreData = moreData != null && Boolean.parseBoolean(moreData.getValue().trim());
+
+            failed = false;
+            return copied;
+        } catch (IOException e) {
+            if (deadline.isExpired()) {
+                throw new RemoteBuildDeadline.DeadlineExceededException(deadline.getTimeout());
+            }
+            throw e;
+        } finally {
+            if (abortOnExpiry != null) {
+                abortOnExpiry.cancel(false);
+            }
+            if (response != null) {
+                EntityUtils.consumeQuietly(response.getEntity());
+                response.close();
+            }
+            requestLimiter.releaseRequest();
+            RemoteTriggerMetrics.forServer(this.remoteServer).recordRequest(started, copied, failed);
+        }
+    }
+
+    /**
+     * Copies the rest of the console output, once the remote build is done. The remote server may still be writing
+     * the last of it for a moment after the build has its result.
+     *
+     * @param out
+     *            Log to copy it to
+     * @param deadline
+     *            Deadline of the build step
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public void finish(PrintStream out, RemoteBuildDeadline deadline) throws IOException, InterruptedException {
+        update(out, deadline);
+        int emptyUpdates = 0;
+        while (hasMoreData() && emptyUpdates < MAX_EMPTY_UPDATES) {
+            deadline.sleep(FINISH_DELAY);
+            if (update(out, deadline) == 0) {
+                emptyUpdates++;
+            } else {
+                emptyUpdates = 0;
+            }
+        }
+    }
+
+    /**
+     * @return false once the remote server has said there is no more output to come
+     */
+    public synchronized boolean hasMoreData() {
+        return this.moreData;
+    }
+
+    public synchronized long getRequests() {
+        return this.requests;
+    }
+
+    public synchronized long getBytesReceived() {
+        return this.bytesReceived;
+    }
+}
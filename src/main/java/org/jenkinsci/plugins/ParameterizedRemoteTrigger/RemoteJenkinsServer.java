@@ -1,5 +1,6 @@
 package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
 
+import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URI;
@@ -30,18 +31,48 @@ public class RemoteJenkinsServer extends AbstractDescribableImpl<RemoteJenkinsSe
     private final URL             address;
     private final String          displayName;
     private final boolean         hasBuildTokenRootSupport;
+    private final boolean         postParameters;
     private final String          username;
     private final String          apiToken;
+    private final int             maxConnections;
+    private final int             maxConcurrentRequests;
+    private final int             maxRequestsPerSecond;
+    private final int             maxOutstandingBuilds;
+    private final int             connectTimeout;
+    private final int             readTimeout;
 
     private CopyOnWriteList<Auth> auth = new CopyOnWriteList<Auth>();
 
+    // connections are not part of the configuration, so they are (re-)created on first use
+    private transient RemoteConnectionPool connectionPool;
+    private transient RemoteBuildStatusPoller statusPoller;
+    private transient RemoteCircuitBreaker circuitBreaker;
+    private transient RemoteRequestLimiter requestLimiter;
+
+    // set once this entry has been replaced by a new configuration, see "retire"
+    private transient boolean retired;
+    private transient RemoteJenkinsServer successor;
+
+    // assume the remote API understands "tree" (and "{m,n}" ranges in it) until it tells us otherwise
+    private transient volatile boolean treeParameterUnsupported;
+    private transient volatile boolean treeRangeUnsupported;
+
     @DataBoundConstructor
-    public RemoteJenkinsServer(String address, String displayName, boolean hasBuildTokenRootSupport, JSONObject auth)
+    public RemoteJenkinsServer(String address, String displayName, boolean hasBuildTokenRootSupport,
+            boolean postParameters, JSONObject auth, int maxConnections, int maxConcurrentRequests,
+            int maxRequestsPerSecond, int maxOutstandingBuilds, int connectTimeout, int readTimeout)
             throws MalformedURLException {
 
         this.address = new URL(address);
         this.displayName = displayName.trim();
         this.hasBuildTokenRootSupport = hasBuildTokenRootSupport;
+        this.postParameters = postParameters;
+        this.maxConnections = maxConnections;
+        this.maxConcurrentRequests = Math.max(0, maxConcurrentRequests);
+        this.maxRequestsPerSecond = Math.max(0, maxRequestsPerSecond);
+        this.maxOutstandingBuilds = Math.max(0, maxOutstandingBuilds);
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
 
         // Holding on to both of these variables for legacy purposes. The seemingly 'dirty' getters for these properties
         // are for the same reason.
@@ -78,6 +109,262 @@ public class RemoteJenkinsServer extends AbstractDescribableImpl<RemoteJenkinsSe
         return this.hasBuildTokenRootSupport;
     }
 
+    /**
+     * @return true if the parameters of a triggered build are sent as a form in the request body, rather than in the
+     *         URL
+     */
+    public boolean getPostParameters() {
+        return this.postParameters;
+    }
+
+    public int getMaxConnections() {
+        // configurations saved before this option existed will have it set to 0
+        if (this.maxConnections < 1) {
+            return RemoteConnectionPool.DEFAULT_MAX_CONNECTIONS;
+        }
+        return this.maxConnections;
+    }
+
+    /**
+     * @return seconds to wait for a connection to this server to be opened
+     */
+    public int getConnectTimeout() {
+        // configurations saved before this option existed will have it set to 0
+        if (this.connectTimeout < 1) {
+            return RemoteConnectionPool.DEFAULT_CONNECT_TIMEOUT;
+        }
+        return this.connectTimeout;
+    }
+
+    /**
+     * @return seconds to wait for this server to send (more of) a response
+     */
+    public int getReadTimeout() {
+        if (this.readTimeout < 1) {
+            return RemoteConnectionPool.DEFAULT_READ_TIMEOUT;
+        }
+        return this.readTimeout;
+    }
+
+    /**
+     * @return how many requests may be made to this server at the same time, or 0 if there is no limit
+     */
+    public int getMaxConcurrentRequests() {
+        return this.maxConcurrentRequests;
+    }
+
+    /**
+     * @return how many requests may be made to this server per second, or 0 if there is no limit
+     */
+    public int getMaxRequestsPerSecond() {
+        return this.maxRequestsPerSecond;
+    }
+
+    /**
+     * @return how many triggered builds may be queued or running on this server at the same time, or 0 if there is no
+     *         limit
+     */
+    public int getMaxOutstandingBuilds() {
+        return this.maxOutstandingBuilds;
+    }
+
+    /**
+     * @return false if the remote server rejected an API call that used the "tree" parameter
+     */
+    public boolean isTreeParameterSupported() {
+        return !this.treeParameterUnsupported;
+    }
+
+    public void setTreeParameterSupported(boolean supported) {
+        this.treeParameterUnsupported = !supported;
+    }
+
+    /**
+     * @return false if the remote server rejected an API call that limited a list using "{m,n}" in the "tree"
+     *         parameter
+     */
+    public boolean isTreeRangeSupported() {
+        return !this.treeRangeUnsupported;
+    }
+
+    public void setTreeRangeSupported(boolean supported) {
+        this.treeRangeUnsupported = !supported;
+    }
+
+    /**
+     * Gets the connection pool shared by all calls to this remote server, creating it if needed. Once this entry has
+     * been replaced by a new configuration, no new pool is created for it: calls go through the pool of the entry
+     * that replaced it instead.
+     * 
+     * @return the connection pool for this server
+     * @throws IOException
+     *             if this entry has been removed from the configuration, and its own pool has been closed
+     */
+    public RemoteConnectionPool getConnectionPool() throws IOException {
+        RemoteJenkinsServer successor;
+        synchronized (this) {
+            if (this.connectionPool != null && !this.connectionPool.isClosed()) {
+                return this.connectionPool;
+            }
+            if (!this.retired) {
+                this.connectionPool = new RemoteConnectionPool(this.getMaxConnections(),
+                        RemoteConnectionPool.DEFAULT_IDLE_TIMEOUT, this.getConnectTimeout(), this.getReadTimeout());
+                return this.connectionPool;
+            }
+            successor = this.successor;
+        }
+        if (successor == null) {
+            throw new IOException("The remote server " + this.getDisplayName()
+                    + " has been removed from the configuration.");
+        }
+        return successor.getConnectionPool();
+    }
+
+    /**
+     * Gets the poller shared by all builds waiting on remote builds of this server, creating it if needed.
+     * 
+     * @return the status poller for this server
+     */
+    public synchronized RemoteBuildStatusPoller getStatusPoller() {
+        if (this.statusPoller == null) {
+            this.statusPoller = new RemoteBuildStatusPoller(this);
+        }
+        return this.statusPoller;
+    }
+
+    /**
+     * Gets the circuit breaker shared by all calls to this remote server, creating it if needed.
+     * 
+     * @return the circuit breaker for this server
+     */
+    public synchronized RemoteCircuitBreaker getCircuitBreaker() {
+        if (this.circuitBreaker == null) {
+            // a build that resolved this entry before it was replaced shares the breaker of the new entry
+            this.circuitBreaker = isSameServer(this.successor) ? this.successor.getCircuitBreaker()
+                    : new RemoteCircuitBreaker();
+        }
+        return this.circuitBreaker;
+    }
+
+    /**
+     * Gets the limiter shared by all calls to (and builds triggered on) this remote server, creating it if needed.
+     * 
+     * @return the request limiter for this server
+     */
+    public synchronized RemoteRequestLimiter getRequestLimiter() {
+        if (this.requestLimiter == null) {
+            // a build that resolved this entry before it was replaced counts towards the limits of the new entry
+            this.requestLimiter = isSameServer(this.successor) ? this.successor.getRequestLimiter()
+                    : new RemoteRequestLimiter(this.maxConcurrentRequests, this.maxRequestsPerSecond,
+                            this.maxOutstandingBuilds);
+        }
+        return this.requestLimiter;
+    }
+
+    /**
+     * @return statistics for the request limiter, or null if no calls have been made to this server yet
+     */
+    public synchronized RemoteRequestLimiter.Stats getRequestLimiterStats() {
+        if (this.requestLimiter == null) {
+            return null;
+        }
+        return this.requestLimiter.getStats();
+    }
+
+    /**
+     * @return statistics for the connection pool, or null if no calls have been made to this server yet
+     */
+    public synchronized RemoteConnectionPool.Stats getConnectionPoolStats() {
+        if (this.connectionPool == null) {
+            return null;
+        }
+        return this.connectionPool.getStats();
+    }
+
+    synchronized void evictIdleConnections() {
+        if (this.connectionPool != null) {
+            this.connectionPool.evictIdleConnections();
+        }
+    }
+
+    /**
+     * Called when this server entry gets replaced by a new configuration. Builds that are still running may carry on
+     * calling the remote server through this entry, so its connections are not closed here: they are handed over to
+     * the new entry if it uses the same pool settings, and otherwise returned, to be closed once nothing uses them.
+     * The circuit breaker and the request limiter are handed over as well if the new entry points to the same
+     * address, so that saving the configuration doesn't close a breaker which is open, and the requests in flight and
+     * the remote builds outstanding keep counting towards the (new) limits.
+     * 
+     * @param successor
+     *            The entry that replaces this one (by display name), or null if it was removed
+     * @return the pool of this entry, which should be closed once it is idle, or null if there is nothing to close
+     */
+    RemoteConnectionPool retire(RemoteJenkinsServer successor) {
+        RemoteConnectionPool pool;
+        RemoteCircuitBreaker breaker;
+        RemoteRequestLimiter limiter;
+        synchronized (this) {
+            this.retired = true;
+            this.successor = successor;
+            pool = this.connectionPool;
+            breaker = this.circuitBreaker;
+            limiter = this.requestLimiter;
+        }
+        if (isSameServer(successor)) {
+            successor.adoptServerState(breaker, limiter);
+        }
+        if (pool == null || pool.isClosed()) {
+            return null;
+        }
+        if (successor != null && successor.adoptConnectionPool(pool, this)) {
+            return null;
+        }
+        return pool;
+    }
+
+    /**
+     * @param pool
+     *            Pool of the entry this one replaces
+     * @param previous
+     *            The entry this one replaces
+     * @return true if this entry uses the pool from now on
+     */
+    private synchronized boolean adoptConnectionPool(RemoteConnectionPool pool, RemoteJenkinsServer previous) {
+        if (this.connectionPool != null || this.getMaxConnections() != previous.getMaxConnections()
+                || this.getConnectTimeout() != previous.getConnectTimeout()
+                || this.getReadTimeout() != previous.getReadTimeout()) {
+            return false;
+        }
+        this.connectionPool = pool;
+        return true;
+    }
+
+    /**
+     * @param breaker
+     *            Circuit breaker of the entry this one replaces, or null if it has none
+     * @param limiter
+     *            Request limiter of the entry this one replaces, or null if it has none
+     */
+    private synchronized void adoptServerState(RemoteCircuitBreaker breaker, RemoteRequestLimiter limiter) {
+        if (this.circuitBreaker == null && breaker != null) {
+            this.circuitBreaker = breaker;
+        }
+        if (this.requestLimiter == null && limiter != null) {
+            limiter.setLimits(this.maxConcurrentRequests, this.maxRequestsPerSecond, this.maxOutstandingBuilds);
+            this.requestLimiter = limiter;
+        }
+    }
+
+    /**
+     * @param other
+     *            Another entry, or null
+     * @return true if the other entry calls the same remote server as this one
+     */
+    private boolean isSameServer(RemoteJenkinsServer other) {
+        // compared as strings, as URL.equals resolves the host names
+        return other != null && other.getAddress().toString().equals(this.getAddress().toString());
+    }
+
     @Override
     public DescriptorImpl getDescriptor() {
         return (DescriptorImpl) super.getDescriptor();
@@ -143,6 +430,7 @@ public class RemoteJenkinsServer extends AbstractDescribableImpl<RemoteJenkinsSe
             try {
                 HttpURLConnection connection = (HttpURLConnection) host.openConnection();
                 connection.setConnectTimeout(5000);
+                connection.setReadTimeout(5000);
                 connection.connect();
             } catch (Exception e) {
                 return FormValidation.warning("Address looks good, but we were not able to connect to it");
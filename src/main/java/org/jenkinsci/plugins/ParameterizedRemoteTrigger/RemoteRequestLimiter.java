@@ -0,0 +1,297 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Limits how hard all builds together may hit one {@link RemoteJenkinsServer}: how many requests may be in flight at
+ * once, how many may be sent per second, and how many remote builds may be triggered and not finished yet.
+ *
+ * Build steps that would trigger more remote builds than allowed queue up here. When a slot frees up it goes to the
+ * waiting trigger of the local job holding the fewest slots (so that one job triggering many builds can't starve the
+ * others), and between jobs holding as many slots, first come, first served.
+ *
+ * A limit of 0 means "no limit".
+ */
+public class RemoteRequestLimiter {
+
+    // guarded by "this"; they change when the configuration of the server is saved, see "setLimits"
+    private int                        maxConcurrentRequests;
+    private int                        maxRequestsPerSecond;
+    private int                        maxOutstandingBuilds;
+
+    // guarded by "this"
+    private int                        requestsInFlight;
+    private long                       nextRequestTime;
+
+    // guarded by "this"
+    private final List<QueuedTrigger>  queuedTriggers  = new ArrayList<QueuedTrigger>();
+    private final Map<String, Integer> slotsByJob      = new HashMap<String, Integer>();
+    private int                        outstandingBuilds;
+    private long                       sequence;
+    private long                       triggersQueued;
+    private long                       totalQueueTime;
+
+    public RemoteRequestLimiter(int maxConcurrentRequests, int maxRequestsPerSecond, int maxOutstandingBuilds) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        this.maxOutstandingBuilds = maxOutstandingBuilds;
+    }
+
+    /**
+     * Changes the limits. The requests in flight and the build slots held count towards the new limits, and whoever
+     * waits is let through straight away if the new limits allow it.
+     */
+    public synchronized void setLimits(int maxConcurrentRequests, int maxRequestsPerSecond, int maxOutstandingBuilds) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        this.maxOutstandingBuilds = maxOutstandingBuilds;
+        this.notifyAll();
+    }
+
+    /**
+     * Waits until a request may be sent to the remote server. Every call that returns must be followed by a call to
+     * {@link #releaseRequest()} once the response has been read.
+     *
+     * @param deadline
+     *            Deadline of the build step the request is sent for
+     * @throws RemoteBuildDeadline.DeadlineExceededException
+     *             if the deadline passed before the request could be sent
+     * @throws InterruptedException
+     */
+    public void acquireRequest(RemoteBuildDeadline deadline) throws RemoteBuildDeadline.DeadlineExceededException,
+            InterruptedException {
+        long delay = 0;
+
+        synchronized (this) {
+            while (this.maxConcurrentRequests > 0 && this.requestsInFlight >= this.maxConcurrentRequests) {
+                deadline.check();
+                long remaining = deadline.getRemaining();
+                this.wait(remaining == Long.MAX_VALUE ? 0 : remaining);
+            }
+            this.requestsInFlight++;
+
+            if (this.maxRequestsPerSecond > 0) {
+                // requests are spaced out evenly: reserve the next free spot, and wait for it outside of the lock
+                long now = System.currentTimeMillis();
+                long sendAt = Math.max(now, this.nextRequestTime);
+                this.nextRequestTime = sendAt + 1000 / this.maxRequestsPerSecond;
+                delay = sendAt - now;
+            }
+        }
+
+        if (delay > 0) {
+            boolean acquired = false;
+            try {
+                deadline.sleep(delay);
+                acquired = true;
+            } finally {
+                if (!acquired) {
+                    releaseRequest();
+                }
+            }
+        }
+    }
+
+    public synchronized void releaseRequest() {
+        this.requestsInFlight--;
+        this.notifyAll();
+    }
+
+    /**
+     * Waits until the remote server may be given one more build to run.
+     *
+     * @param localJob
+     *            Full name of the local job triggering the build
+     * @param maxWait
+     *            Milliseconds to wait at most
+     * @return the slot, which must be released once the remote build has finished (or will never run), or null if
+     *         no slot came free in time
+     * @throws InterruptedException
+     */
+    public BuildSlot acquireBuildSlot(String localJob, long maxWait) throws InterruptedException {
+        long queued = System.currentTimeMillis();
+        long deadline = maxWait < Long.MAX_VALUE - queued ? queued + maxWait : Long.MAX_VALUE;
+
+        synchronized (this) {
+            QueuedTrigger trigger = new QueuedTrigger(localJob, this.sequence++);
+            this.queuedTriggers.add(trigger);
+            try {
+                while (!(hasFreeSlot() && next() == trigger)) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        return null;
+                    }
+                    this.wait(deadline == Long.MAX_VALUE ? 0 : remaining);
+                }
+            } finally {
+                this.queuedTriggers.remove(trigger);
+                // whoever is next in line may be able to go as well
+                this.notifyAll();
+            }
+
+            this.outstandingBuilds++;
+            Integer held = this.slotsByJob.get(localJob);
+            this.slotsByJob.put(localJob, held == null ? 1 : held + 1);
+
+            long waited = System.currentTimeMillis() - queued;
+            this.triggersQueued++;
+            this.totalQueueTime += waited;
+
+            return new BuildSlot(localJob, waited);
+        }
+    }
+
+    private boolean hasFreeSlot() {
+        return this.maxOutstandingBuilds <= 0 || this.outstandingBuilds < this.maxOutstandingBuilds;
+    }
+
+    /**
+     * @return the queued trigger that gets the next free slot
+     */
+    private QueuedTrigger next() {
+        QueuedTrigger best = null;
+        for (QueuedTrigger trigger : this.queuedTriggers) {
+            if (best == null || compare(trigger, best) < 0) {
+                best = trigger;
+            }
+        }
+        return best;
+    }
+
+    private int compare(QueuedTrigger a, QueuedTrigger b) {
+        int heldA = getSlotsHeld(a.localJob);
+        int heldB = getSlotsHeld(b.localJob);
+        if (heldA != heldB) {
+            return heldA < heldB ? -1 : 1;
+        }
+        return a.sequence < b.sequence ? -1 : 1;
+    }
+
+    private int getSlotsHeld(String localJob) {
+        Integer held = this.slotsByJob.get(localJob);
+        return held == null ? 0 : held;
+    }
+
+    synchronized void releaseBuildSlot(String localJob) {
+        this.outstandingBuilds--;
+        int held = getSlotsHeld(localJob) - 1;
+        if (held > 0) {
+            this.slotsByJob.put(localJob, held);
+        } else {
+            this.slotsByJob.remove(localJob);
+        }
+        this.notifyAll();
+    }
+
+    public synchronized Stats getStats() {
+        long longestWait = 0;
+        long now = System.currentTimeMillis();
+        for (QueuedTrigger trigger : this.queuedTriggers) {
+            longestWait = Math.max(longestWait, now - trigger.queued);
+        }
+        long averageWait = this.triggersQueued == 0 ? 0 : this.totalQueueTime / this.triggersQueued;
+        return new Stats(this.requestsInFlight, this.queuedTriggers.size(), this.outstandingBuilds, longestWait,
+                averageWait);
+    }
+
+    private static class QueuedTrigger {
+        private final String localJob;
+        private final long   sequence;
+        private final long   queued = System.currentTimeMillis();
+
+        QueuedTrigger(String localJob, long sequence) {
+            this.localJob = localJob;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Permission to have one triggered build outstanding on the remote server.
+     */
+    public class BuildSlot {
+        private final String localJob;
+        private final long   waitTime;
+        private boolean      released;
+
+        BuildSlot(String localJob, long waitTime) {
+            this.localJob = localJob;
+            this.waitTime = waitTime;
+        }
+
+        /**
+         * @return milliseconds spent in the queue for this slot
+         */
+        public long getWaitTime() {
+            return this.waitTime;
+        }
+
+        /**
+         * Gives the slot back. Releasing a slot more than once has no effect.
+         */
+        public void release() {
+            synchronized (this) {
+                if (this.released) {
+                    return;
+                }
+                this.released = true;
+            }
+            releaseBuildSlot(this.localJob);
+        }
+    }
+
+    /**
+     * Point-in-time snapshot of the limiter.
+     */
+    public static class Stats {
+        private final int  requestsInFlight;
+        private final int  queuedTriggers;
+        private final int  outstandingBuilds;
+        private final long longestWait;
+        private final long averageWait;
+
+        public Stats(int requestsInFlight, int queuedTriggers, int outstandingBuilds, long longestWait,
+                long averageWait) {
+            this.requestsInFlight = requestsInFlight;
+            this.queuedTriggers = queuedTriggers;
+            this.outstandingBuilds = outstandingBuilds;
+            this.longestWait = longestWait;
+            this.averageWait = averageWait;
+        }
+
+        public int getRequestsInFlight() {
+            return this.requestsInFlight;
+        }
+
+        public int getQueuedTriggers() {
+            return this.queuedTriggers;
+        }
+
+        public int getOutstandingBuilds() {
+            return this.outstandingBuilds;
+        }
+
+        /**
+         * @return milliseconds the trigger that has been queued longest has been waiting so far
+         */
+        public long getLongestWait() {
+            return this.longestWait;
+        }
+
+        /**
+         * @return average milliseconds triggers spent in the queue
+         */
+        public long getAverageWait() {
+            return this.averageWait;
+        }
+
+        @Override
+        public String toString() {
+            return "requests in flight=" + requestsInFlight + ", queued triggers=" + queuedTriggers
+                    + ", outstanding builds=" + outstandingBuilds + ", longest wait=" + longestWait / 1000
+                    + "s, average wait=" + averageWait / 1000 + "s";
+        }
+    }
+}
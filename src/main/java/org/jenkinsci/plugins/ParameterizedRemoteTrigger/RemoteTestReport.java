@@ -0,0 +1,156 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.json.JSONObject;
+
+/**
+ * Summarizes the test report of a remote build: how many tests passed, failed and were skipped, and which were the
+ * first few to fail.
+ *
+ * The test report of a big suite can be tens of MB, mostly made of test cases. The remote server is asked for only
+ * the few fields needed of each case, and the cases are streamed through {@link #element(Object)} as they are parsed
+ * (see {@link JsonProjection#streaming}), so only the failing cases that are kept are ever held in memory, whatever
+ * the size of the suite. Both plain test reports and the aggregated ones of Maven and matrix jobs are understood.
+ */
+public class RemoteTestReport implements JsonProjection.ElementHandler {
+
+    // how many failing test cases are kept, and set in TRIGGERED_TESTS_FAILING_<project name>
+    public static final int     MAX_FAILING_CASES = 10;
+
+    private static final String CASE_FIELDS       = "suites[cases[className,name,status]]";
+    private static final String REPORT_FIELDS     = "failCount,passCount,skipCount,totalCount," + CASE_FIELDS;
+    /**
+     * The "tree" to ask for the test report with.
+     */
+    public static final String  TREE              = REPORT_FIELDS + ",childReports[result[" + CASE_FIELDS + "]]";
+
+    // counted from the cases, in case the report has no totals
+    private int                 passed;
+    private int                 failed;
+    private int                 skipped;
+    private final List<String>  failingCases      = new ArrayList<String>();
+
+    // the totals of the report, once it has been read
+    private int                 passCount         = -1;
+    private int                 failCount         = -1;
+    private int                 skipCount         = -1;
+
+    /**
+     * @return a projection of {@link #TREE} that streams every test case to this report
+     */
+    public JsonProjection getProjection() {
+        return JsonProjection.fromTree(TREE).streaming(this, "suites", "cases")
+                .streaming(this, "childReports", "result", "suites", "cases");
+    }
+
+    public void reset() {
+        this.passed = 0;
+        this.failed = 0;
+        this.skipped = 0;
+        this.failingCases.clear();
+        this.passCount = -1;
+        this.failCount = -1;
+        this.skipCount = -1;
+    }
+
+    public void element(Object element) {
+        if (!(element instanceof JSONObject)) {
+            return;
+        }
+        JSONObject testCase = (JSONObject) element;
+        String status = testCase.optString("status", "");
+        if (status.equals("FAILED") || status.equals("REGRESSION")) {
+            this.failed++;
+            if (this.failingCases.size() < MAX_FAILING_CASES) {
+                this.failingCases.add(testCase.optString("className", "") + "." + testCase.optString("name", ""));
+            }
+        } else if (status.equals("SKIPPED")) {
+            this.skipped++;
+        } else {
+            // PASSED or FIXED
+            this.passed++;
+        }
+    }
+
+    /**
+     * Takes the totals from the parsed report (its cases having been streamed already).
+     *
+     * @param report
+     *            the parsed test report
+     */
+    public void setTotals(JSONObject report) {
+        this.failCount = report.optInt("failCount", -1);
+        this.skipCount = report.optInt("skipCount", -1);
+        this.passCount = report.optInt("passCount", -1);
+        if (this.passCount < 0 && report.has("totalCount") && this.failCount >= 0 && this.skipCount >= 0) {
+            // aggregated reports only have the total
+            this.passCount = report.optInt("totalCount") - this.failCount - this.skipCount;
+        }
+    }
+
+    public int getPassCount() {
+        return this.passCount >= 0 ? this.passCount : this.passed;
+    }
+
+    public int getFailCount() {
+        return this.failCount >= 0 ? this.failCount : this.failed;
+    }
+
+    public int getSkipCount() {
+        return this.skipCount >= 0 ? this.skipCount : this.skipped;
+    }
+
+    public int getTotalCount() {
+        return getPassCount() + getFailCount() + getSkipCount();
+    }
+
+    /**
+     * @return the first {@link #MAX_FAILING_CASES} failing test cases, as "className.name"
+     */
+    public List<String> getFailingCases() {
+        return Collections.unmodifiableList(this.failingCases);
+    }
+
+    /**
+     * Sets the following Environment Variables, next to those of "getEnvVarsMap":
+     *  - TRIGGERED_TESTS_PASSED_<project name>="Number of tests that passed"
+     *  - TRIGGERED_TESTS_FAILED_<project name>="Number of tests that failed"
+     *  - TRIGGERED_TESTS_SKIPPED_<project name>="Number of tests that were skipped"
+     *  - TRIGGERED_TESTS_TOTAL_<project name>="Number of tests"
+     *  - TRIGGERED_TESTS_FAILING_<project name>="Comma separated list of the first failing tests"
+     *
+     * @param jobName
+     * @return the environment variables
+     */
+    public Map<String, String> getEnvVarsMap(String jobName) {
+        String sanitisedJobName = jobName.replaceAll("[^a-zA-Z0-9]+", "_");
+        Map<String, String> envVars = new HashMap<String, String>();
+        envVars.put("TRIGGERED_TESTS_PASSED_" + sanitisedJobName, Integer.toString(getPassCount()));
+        envVars.put("TRIGGERED_TESTS_FAILED_" + sanitisedJobName, Integer.toString(getFailCount()));
+        envVars.put("TRIGGERED_TESTS_SKIPPED_" + sanitisedJobName, Integer.toString(getSkipCount()));
+        envVars.put("TRIGGERED_TESTS_TOTAL_" + sanitisedJobName, Integer.toString(getTotalCount()));
+
+        StringBuilder failing = new StringBuilder();
+        for (String failingCase : this.failingCases) {
+            if (failing.length() > 0) {
+                failing.append(',');
+            }
+            failing.append(failingCase);
+        }
+        envVars.put("TRIGGERED_TESTS_FAILING_" + sanitisedJobName, failing.toString());
+        return envVars;
+    }
+
+    /**
+     * @return a one-line summary, for the build log
+     */
+    public String getSummary() {
+        return getTotalCount() + " tests: " + getPassCount() + " passed, " + getFailCount() + " failed, "
+                + getSkipCount() + " skipped.";
+    }
+}
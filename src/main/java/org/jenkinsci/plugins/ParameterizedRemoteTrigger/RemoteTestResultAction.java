@@ -0,0 +1,89 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import hudson.model.Action;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shows the test results of a remote build on the page of the local build that triggered it. It only holds the
+ * summary (see {@link RemoteTestReport}), which is saved along with the build.
+ */
+public class RemoteTestResultAction implements Action {
+
+    private final String       jobName;
+    private final int          buildNumber;
+    private final String       buildUrl;
+    private final int          passCount;
+    private final int          failCount;
+    private final int          skipCount;
+    private final List<String> failingCases;
+
+    /**
+     * @param jobName
+     *            Name of the remote job
+     * @param buildNumber
+     *            Number of the remote build
+     * @param buildUrl
+     *            Fully qualified URL of the remote build
+     * @param report
+     *            Its test report
+     */
+    public RemoteTestResultAction(String jobName, int buildNumber, String buildUrl, RemoteTestReport report) {
+        this.jobName = jobName;
+        this.buildNumber = buildNumber;
+        this.buildUrl = buildUrl;
+        this.passCount = report.getPassCount();
+        this.failCount = report.getFailCount();
+        this.skipCount = report.getSkipCount();
+        this.failingCases = new ArrayList<String>(report.getFailingCases());
+    }
+
+    public String getJobName() {
+        return this.jobName;
+    }
+
+    public int getBuildNumber() {
+        return this.buildNumber;
+    }
+
+    public String getBuildUrl() {
+        return this.buildUrl;
+    }
+
+    public int getPassCount() {
+        return this.passCount;
+    }
+
+    public int getFailCount() {
+        return this.failCount;
+    }
+
+    public int getSkipCount() {
+        return this.skipCount;
+    }
+
+    public int getTotalCount() {
+        return this.passCount + this.failCount + this.skipCount;
+    }
+
+    /**
+     * @return the first failing test cases, as "className.name"; there may be more than these (see "getFailCount")
+     */
+    public List<String> getFailingCases() {
+        return Collections.unmodifiableList(this.failingCases);
+    }
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return "Remote Test Results";
+    }
+
+    public String getUrlName() {
+        return null;
+    }
+}
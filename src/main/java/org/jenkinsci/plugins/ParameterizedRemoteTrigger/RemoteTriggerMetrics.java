@@ -0,0 +1,290 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * What triggering remote builds costs, since Jenkins was started: per remote server, how long its HTTP calls take,
+ * how many there are, how many fail or are retried and how much they bring back; and per remote job, how long the
+ * builds wait before they are triggered, sit in the remote queue and run, and how many polls that takes.
+ *
+ * Everything is recorded with atomic counters (no locks), and the histograms have a fixed number of buckets, so it
+ * costs next to nothing and memory doesn't grow with the number of samples. It can be read as JSON through
+ * {@link RemoteTriggerMetricsAction}.
+ */
+public final class RemoteTriggerMetrics {
+
+    // jobs of one server to keep apart; any more are counted together, so that metrics can't grow without bounds
+    private static final int                           MAX_JOBS_PER_SERVER = 500;
+    private static final String                        OTHER_JOBS          = "(other)";
+
+    private static final RemoteTriggerMetrics          INSTANCE            = new RemoteTriggerMetrics();
+
+    private final ConcurrentMap<String, ServerMetrics> servers             = new ConcurrentHashMap<String, ServerMetrics>();
+
+    private RemoteTriggerMetrics() {
+    }
+
+    public static RemoteTriggerMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param remoteServer
+     * @return the metrics of the remote server, created on first use
+     */
+    public static ServerMetrics forServer(RemoteJenkinsServer remoteServer) {
+        return INSTANCE.forServer(remoteServer.getDisplayName());
+    }
+
+    /**
+     * @param serverName
+     *            Display name of the remote server
+     * @return the metrics of the remote server, created on first use
+     */
+    public ServerMetrics forServer(String serverName) {
+        String key = serverName == null ? "" : serverName;
+        ServerMetrics metrics = this.servers.get(key);
+        if (metrics == null) {
+            ServerMetrics created = new ServerMetrics();
+            metrics = this.servers.putIfAbsent(key, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * @return all metrics, by remote server
+     */
+    public JSONObject toJSON() {
+        JSONObject servers = new JSONObject();
+        for (Map.Entry<String, ServerMetrics> server : this.servers.entrySet()) {
+            servers.put(server.getKey(), server.getValue().toJSON());
+        }
+        JSONObject json = new JSONObject();
+        json.put("servers", servers);
+        return json;
+    }
+
+    /**
+     * Metrics of one remote server.
+     */
+    public static final class ServerMetrics {
+        private final Histogram                         requestTime = new Histogram();
+        private final AtomicLong                        requests    = new AtomicLong();
+        private final AtomicLong                        failures    = new AtomicLong();
+        private final AtomicLong                        retries     = new AtomicLong();
+        private final AtomicLong                        bytes       = new AtomicLong();
+        private final AtomicLong                        polls       = new AtomicLong();
+        private final ConcurrentMap<String, JobMetrics> jobs        = new ConcurrentHashMap<String, JobMetrics>();
+
+        /**
+         * @param started
+         *            When the call was started, from System.nanoTime()
+         * @param bytesReceived
+         *            Size of the response
+         * @param failed
+         *            Whether the call failed (didn't get a response, or got an error response)
+         */
+        public void recordRequest(long started, long bytesReceived, boolean failed) {
+            this.requestTime.record((System.nanoTime() - started) / 1000000);
+            this.requests.incrementAndGet();
+            this.bytes.addAndGet(bytesReceived);
+            if (failed) {
+                this.failures.incrementAndGet();
+            }
+        }
+
+        /**
+         * A call is being tried again after it failed.
+         */
+        public void recordRetry() {
+            this.retries.incrementAndGet();
+        }
+
+        /**
+         * The status of the builds of a job was polled.
+         */
+        public void recordPoll() {
+            this.polls.incrementAndGet();
+        }
+
+        /**
+         * @param jobName
+         *            Name of the remote job
+         * @return the metrics of the remote job, created on first use
+         */
+        public JobMetrics forJob(String jobName) {
+            String key = jobName == null ? "" : jobName;
+            JobMetrics metrics = this.jobs.get(key);
+            if (metrics == null) {
+                if (this.jobs.size() >= MAX_JOBS_PER_SERVER) {
+                    key = OTHER_JOBS;
+                }
+                JobMetrics created = new JobMetrics();
+                metrics = this.jobs.putIfAbsent(key, created);
+                if (metrics == null) {
+                    metrics = created;
+                }
+            }
+            return metrics;
+        }
+
+        JSONObject toJSON() {
+            JSONObject json = new JSONObject();
+            json.put("requests", this.requests.get());
+            json.put("failures", this.failures.get());
+            json.put("retries", this.retries.get());
+            json.put("bytesReceived", this.bytes.get());
+            json.put("polls", this.polls.get());
+            json.put("requestTime", this.requestTime.toJSON());
+            JSONObject jobs = new JSONObject();
+            for (Map.Entry<String, JobMetrics> job : this.jobs.entrySet()) {
+                jobs.put(job.getKey(), job.getValue().toJSON());
+            }
+            json.put("jobs", jobs);
+            return json;
+        }
+    }
+
+    /**
+     * Metrics of one remote job.
+     */
+    public static final class JobMetrics {
+        private final AtomicLong triggered    = new AtomicLong();
+        private final Histogram  preCheckWait = new Histogram();
+        private final Histogram  queueWait    = new Histogram();
+        private final Histogram  runTime      = new Histogram();
+        private final Histogram  pollsPerWait = new Histogram();
+
+        public void recordTriggered() {
+            this.triggered.incrementAndGet();
+        }
+
+        /**
+         * @param millis
+         *            How long the build step waited for the previous build of the remote job to finish
+         */
+        public void recordPreCheckWait(long millis) {
+            this.preCheckWait.record(millis);
+        }
+
+        /**
+         * @param millis
+         *            How long the remote build took to start once it was triggered
+         */
+        public void recordQueueWait(long millis) {
+            this.queueWait.record(millis);
+        }
+
+        /**
+         * @param millis
+         *            How long the remote build ran (as far as the polls could tell)
+         */
+        public void recordRunTime(long millis) {
+            this.runTime.record(millis);
+        }
+
+        /**
+         * @param polls
+         *            How many polls it took to see the remote build finish
+         */
+        public void recordPollsPerWait(long polls) {
+            this.pollsPerWait.record(polls);
+        }
+
+        JSONObject toJSON() {
+            JSONObject json = new JSONObject();
+            json.put("triggered", this.triggered.get());
+            json.put("preCheckWait", this.preCheckWait.toJSON());
+            json.put("queueWait", this.queueWait.toJSON());
+            json.put("runTime", this.runTime.toJSON());
+            json.put("pollsPerWait", this.pollsPerWait.toJSON());
+            return json;
+        }
+    }
+
+    /**
+     * Distribution of a value (i.e.: a duration in milliseconds), in buckets that double in size: the first holds 0,
+     * the next 1, then 2-3, 4-7, and so on. Percentiles are estimated as the upper bound of their bucket.
+     */
+    static final class Histogram {
+        // 2^40 ms is over 30 years, which is plenty for any duration
+        private static final int     BUCKETS = 42;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong      count   = new AtomicLong();
+        private final AtomicLong      sum     = new AtomicLong();
+        private final AtomicLong      max     = new AtomicLong();
+
+        void record(long value) {
+            value = Math.max(0, value);
+            this.buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value)));
+            this.count.incrementAndGet();
+            this.sum.addAndGet(value);
+            long max;
+            while (value > (max = this.max.get()) && !this.max.compareAndSet(max, value)) {
+                // someone else raised it in the meantime, try again
+            }
+        }
+
+        /**
+         * @return the largest value that goes in the bucket
+         */
+        private static long upperBound(int bucket) {
+            return bucket == 0 ? 0 : (1L << bucket) - 1;
+        }
+
+        private long percentile(long[] counts, long total, double fraction) {
+            long rank = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), this.max.get());
+                }
+            }
+            return this.max.get();
+        }
+
+        JSONObject toJSON() {
+            // the buckets are read one by one while others may still be recording, so the total is taken from them
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = this.buckets.get(i);
+                total += counts[i];
+            }
+
+            JSONObject json = new JSONObject();
+            json.put("count", this.count.get());
+            json.put("sum", this.sum.get());
+            json.put("max", this.max.get());
+            if (total > 0) {
+                json.put("mean", this.sum.get() / Math.max(1, this.count.get()));
+                json.put("p50", percentile(counts, total, 0.5));
+                json.put("p90", percentile(counts, total, 0.9));
+                json.put("p99", percentile(counts, total, 0.99));
+            }
+            JSONArray buckets = new JSONArray();
+            for (int i = 0; i < BUCKETS; i++) {
+                if (counts[i] > 0) {
+                    JSONObject bucket = new JSONObject();
+                    bucket.put("le", upperBound(i));
+                    bucket.put("count", counts[i]);
+                    buckets.add(bucket);
+                }
+            }
+            json.put("buckets", buckets);
+            return json;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import hudson.Extension;
+import hudson.model.RootAction;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import jenkins.model.Jenkins;
+
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Serves the {@link RemoteTriggerMetrics} as JSON, at "/remote-trigger-metrics/" on the controller. Only
+ * administrators can read them, as they name remote servers and jobs. It doesn't show up in the side panel.
+ */
+@Extension
+public class RemoteTriggerMetricsAction implements RootAction {
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return "Remote Trigger Metrics";
+    }
+
+    public String getUrlName() {
+        return "remote-trigger-metrics";
+    }
+
+    public void doIndex(StaplerRequest request, StaplerResponse response) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+
+        response.setContentType("application/json;charset=UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        PrintWriter writer = response.getWriter();
+        writer.print(RemoteTriggerMetrics.get().toJSON().toString(2));
+        writer.flush();
+    }
+}
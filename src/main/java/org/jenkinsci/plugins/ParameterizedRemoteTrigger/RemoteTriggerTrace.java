@@ -0,0 +1,295 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.json.JSONObject;
+
+import org.apache.http.Consts;
+
+/**
+ * Where the time went in one run of a build step: a tree of timed spans, one for every phase (waiting for the previous
+ * build, the build slot, the remote queue, the remote build) and every call to the remote server, down to resolving
+ * its address and opening connections to it.
+ *
+ * Every thread has a current span, and {@link #start(String)} opens a new one below it, so the spans of the HTTP calls
+ * end up below the phase that made them without passing the trace around. Threads that work for the build step (i.e.:
+ * when several remote jobs are triggered at once) start from a span handed to them, see {@link Span#child(String)}
+ * and {@link Span#activate()}. The status poller, whose requests are shared between builds, adds a child span for
+ * each of them below the span of every build step waiting for it. On threads without a current span (i.e.: the
+ * legacy API calls), spans record nothing.
+ *
+ * Once the build step is done, the trace is attached to the build (see {@link RemoteTriggerTraceAction}) and written
+ * to {@link #FILE_NAME} in the build directory, one JSON object per span and line, so that it can be read by other
+ * tools.
+ */
+public class RemoteTriggerTrace {
+
+    /**
+     * Name of the file in the build directory the traces of the build are written to.
+     */
+    public static final String            FILE_NAME  = "remote-trigger-trace.jsonl";
+
+    private static final ThreadLocal<Span> CURRENT    = new ThreadLocal<Span>();
+
+    private final String                   traceId;
+    private final AtomicInteger            nextSpanId = new AtomicInteger();
+    // spans that have ended, in the order they did
+    private final List<Span>               spans      = Collections.synchronizedList(new ArrayList<Span>());
+    private final Span                     root;
+
+    /**
+     * @param name
+     *            Name of the root span
+     */
+    public RemoteTriggerTrace(String name) {
+        this.traceId = UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+        this.root = new Span(this, null, name);
+    }
+
+    public String getTraceId() {
+        return this.traceId;
+    }
+
+    public Span getRoot() {
+        return this.root;
+    }
+
+    /**
+     * Starts a span below the current span of this thread, and makes it the current one until it ends.
+     *
+     * @param name
+     * @return the span, which must be ended (in a finally block)
+     */
+    public static Span start(String name) {
+        return current().child(name).activate();
+    }
+
+    /**
+     * @return the current span of this thread, or one that records nothing if there is none
+     */
+    public static Span current() {
+        Span current = CURRENT.get();
+        return current == null ? Span.NONE : current;
+    }
+
+    /**
+     * @return the spans that have ended, by the time they started at
+     */
+    public List<Span> getSpans() {
+        List<Span> spans;
+        synchronized (this.spans) {
+            spans = new ArrayList<Span>(this.spans);
+        }
+        Collections.sort(spans, new Comparator<Span>() {
+            public int compare(Span a, Span b) {
+                if (a.start != b.start) {
+                    return a.start < b.start ? -1 : 1;
+                }
+                // spans are numbered as they are started, so a parent comes before its children
+                return a.id - b.id;
+            }
+        });
+        return spans;
+    }
+
+    /**
+     * Appends the spans that have ended to {@link #FILE_NAME} in the directory.
+     *
+     * @param dir
+     *            Build directory
+     * @throws IOException
+     */
+    public void writeTo(File dir) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(new File(dir, FILE_NAME), true), Consts.UTF_8);
+        try {
+            for (Span span : getSpans()) {
+                writer.write(span.toJSON().toString());
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * One timed step of the trace.
+     */
+    public static final class Span {
+        static final Span                  NONE       = new Span(null, null, null);
+
+        private final RemoteTriggerTrace   trace;
+        private final Span                 parent;
+        private final int                  id;
+        private final String               name;
+        // wall clock time it started at, for reading the trace; its duration is measured with System.nanoTime()
+        private final long                 start;
+        private final long                 startNanos;
+        private final Map<String, Object>  attributes = new LinkedHashMap<String, Object>();
+
+        // guarded by "this"
+        private long                       duration   = -1;
+        // the span that was current on the thread before this one
+        private Span                       previous;
+
+        private Span(RemoteTriggerTrace trace, Span parent, String name) {
+            this.trace = trace;
+            this.parent = parent;
+            this.id = trace == null ? 0 : trace.nextSpanId.incrementAndGet();
+            this.name = name;
+            this.start = System.currentTimeMillis();
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * @param name
+         * @return a new span below this one; it isn't current on any thread until it is activated
+         */
+        public Span child(String name) {
+            if (this.trace == null) {
+                return NONE;
+            }
+            return new Span(this.trace, this, name);
+        }
+
+        /**
+         * Makes this the current span of this thread, until it ends.
+         *
+         * @return this span
+         */
+        public Span activate() {
+            if (this.trace != null) {
+                synchronized (this) {
+                    this.previous = CURRENT.get();
+                }
+                CURRENT.set(this);
+            }
+            return this;
+        }
+
+        /**
+         * @param key
+         * @param value
+         *            Value to record, or null to record nothing
+         * @return this span
+         */
+        public synchronized Span attribute(String key, Object value) {
+            if (this.trace != null && value != null) {
+                this.attributes.put(key, value);
+            }
+            return this;
+        }
+
+        /**
+         * Ends the span, and makes the span that was current before it the current one again. Ending a span more than
+         * once does nothing.
+         */
+        public void end() {
+            if (this.trace == null) {
+                return;
+            }
+            Span previous;
+            synchronized (this) {
+                if (this.duration >= 0) {
+                    return;
+                }
+                this.duration = (System.nanoTime() - this.startNanos) / 1000000;
+                previous = this.previous;
+            }
+            // spans below this one that were never ended are left behind as well
+            for (Span current = CURRENT.get(); current != null; current = current.parent) {
+                if (current == this) {
+                    if (previous == null) {
+                        CURRENT.remove();
+                    } else {
+                        CURRENT.set(previous);
+                    }
+                    break;
+                }
+            }
+            this.trace.spans.add(this);
+        }
+
+        public String getTraceId() {
+            return this.trace == null ? null : this.trace.traceId;
+        }
+
+        public int getId() {
+            return this.id;
+        }
+
+        /**
+         * @return the id of the parent span, or 0 for the root span
+         */
+        public int getParentId() {
+            return this.parent == null ? 0 : this.parent.id;
+        }
+
+        /**
+         * @return how many spans are above this one
+         */
+        public int getDepth() {
+            int depth = 0;
+            for (Span span = this.parent; span != null; span = span.parent) {
+                depth++;
+            }
+            return depth;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public long getStart() {
+            return this.start;
+        }
+
+        /**
+         * @return milliseconds from the start of the trace to the start of this span
+         */
+        public long getOffset() {
+            return this.trace == null ? 0 : this.start - this.trace.root.start;
+        }
+
+        /**
+         * @return milliseconds the span took, or -1 if it hasn't ended
+         */
+        public synchronized long getDuration() {
+            return this.duration;
+        }
+
+        public synchronized Map<String, Object> getAttributes() {
+            return new LinkedHashMap<String, Object>(this.attributes);
+        }
+
+        JSONObject toJSON() {
+            JSONObject json = new JSONObject();
+            json.put("trace", getTraceId());
+            json.put("span", this.id);
+            json.put("parent", getParentId());
+            json.put("name", this.name);
+            json.put("start", this.start);
+            json.put("duration", getDuration());
+            Map<String, Object> attributes = getAttributes();
+            if (!attributes.isEmpty()) {
+                JSONObject attributesJson = new JSONObject();
+                for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+                    attributesJson.put(attribute.getKey(), attribute.getValue());
+                }
+                json.put("attributes", attributesJson);
+            }
+            return json;
+        }
+    }
+}
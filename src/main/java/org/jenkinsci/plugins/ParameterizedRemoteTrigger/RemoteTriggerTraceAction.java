@@ -0,0 +1,153 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Action;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shows the traces of the remote trigger build steps of a build (see {@link RemoteTriggerTrace}) on a page of the
+ * build. The spans are saved along with the build, up to {@link #MAX_SPANS} of them; the file in the build directory
+ * has all of them.
+ */
+public class RemoteTriggerTraceAction implements Action {
+
+    // how many spans are kept with the build, so that a build step polling for hours doesn't bloat build.xml
+    public static final int   MAX_SPANS = 1000;
+
+    private final List<Entry> entries   = new ArrayList<Entry>();
+    private int               dropped;
+
+    /**
+     * @param build
+     * @return the action of the build, which is added to it if this is the first trace of the build
+     */
+    public static synchronized RemoteTriggerTraceAction forBuild(AbstractBuild<?, ?> build) {
+        RemoteTriggerTraceAction action = build.getAction(RemoteTriggerTraceAction.class);
+        if (action == null) {
+            action = new RemoteTriggerTraceAction();
+            build.addAction(action);
+        }
+        return action;
+    }
+
+    /**
+     * @param trace
+     *            Trace of a build step that is done
+     */
+    public synchronized void add(RemoteTriggerTrace trace) {
+        for (RemoteTriggerTrace.Span span : trace.getSpans()) {
+            if (this.entries.size() >= MAX_SPANS) {
+                this.dropped++;
+            } else {
+                this.entries.add(new Entry(span));
+            }
+        }
+    }
+
+    /**
+     * @return the spans of all traces, each trace ordered by the time they started at
+     */
+    public synchronized List<Entry> getEntries() {
+        return Collections.unmodifiableList(new ArrayList<Entry>(this.entries));
+    }
+
+    /**
+     * @return how many spans were left out, as there were too many to keep
+     */
+    public synchronized int getDropped() {
+        return this.dropped;
+    }
+
+    public String getIconFileName() {
+        return "clock.png";
+    }
+
+    public String getDisplayName() {
+        return "Remote Trigger Trace";
+    }
+
+    public String getUrlName() {
+        return "remoteTriggerTrace";
+    }
+
+    /**
+     * A span as it is kept with the build.
+     */
+    public static class Entry {
+        private final String traceId;
+        private final int    id;
+        private final int    parentId;
+        private final int    depth;
+        private final String name;
+        private final long   start;
+        private final long   offset;
+        private final long   duration;
+        private final String attributes;
+
+        Entry(RemoteTriggerTrace.Span span) {
+            this.traceId = span.getTraceId();
+            this.id = span.getId();
+            this.parentId = span.getParentId();
+            this.depth = span.getDepth();
+            this.name = span.getName();
+            this.start = span.getStart();
+            this.offset = span.getOffset();
+            this.duration = span.getDuration();
+
+            StringBuilder attributes = new StringBuilder();
+            for (Map.Entry<String, Object> attribute : span.getAttributes().entrySet()) {
+                if (attributes.length() > 0) {
+                    attributes.append(", ");
+                }
+                attributes.append(attribute.getKey()).append('=').append(attribute.getValue());
+            }
+            this.attributes = attributes.toString();
+        }
+
+        public String getTraceId() {
+            return this.traceId;
+        }
+
+        public int getId() {
+            return this.id;
+        }
+
+        public int getParentId() {
+            return this.parentId;
+        }
+
+        public int getDepth() {
+            return this.depth;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public long getStart() {
+            return this.start;
+        }
+
+        /**
+         * @return milliseconds from the start of its trace to the start of this span
+         */
+        public long getOffset() {
+            return this.offset;
+        }
+
+        public long getDuration() {
+            return this.duration;
+        }
+
+        /**
+         * @return the attributes, as "key=value, key=value"
+         */
+        public String getAttributes() {
+            return this.attributes;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+/**
+ * Counts the requests made and response bytes received by one build step.
+ */
+public class TransferStatistics {
+
+    private long requests;
+    private long bytes;
+
+    /**
+     * @param requests
+     *            Number of requests made
+     * @param bytes
+     *            Number of response bytes received for them
+     */
+    public synchronized void add(long requests, long bytes) {
+        this.requests += requests;
+        this.bytes += bytes;
+    }
+
+    public synchronized long getRequests() {
+        return this.requests;
+    }
+
+    public synchronized long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * @return one-line summary for the console
+     */
+    public synchronized String getSummary() {
+        return "Received " + this.bytes + " bytes from the remote server in " + this.requests + " requests.";
+    }
+}
@@ -0,0 +1,69 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+/**
+ * Helpers for the "tree" query parameter of the Jenkins remote API, which limits a JSON response to the fields that
+ * are actually needed (i.e.: "tree=building,result" instead of the whole build with all its actions, changesets and
+ * culprits).
+ */
+public class TreeParameter {
+
+    private static final String NAME = "tree=";
+
+    private TreeParameter() {
+    }
+
+    /**
+     * Adds a "tree" parameter to an API URL.
+     * 
+     * @param urlString
+     *            API URL, with or without a query string
+     * @param tree
+     *            fields to fetch, i.e.: "builds[number,result]"
+     * @return the URL with the parameter added
+     */
+    public static String add(String urlString, String tree) {
+        String separator = urlString.indexOf('?') < 0 ? "?" : "&";
+        try {
+            return urlString + separator + NAME + URLEncoder.encode(tree, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param urlString
+     * @return true if the URL has a "tree" parameter
+     */
+    public static boolean isPresent(String urlString) {
+        int query = urlString.indexOf('?');
+        return query >= 0 && (urlString.indexOf("?" + NAME, query) >= 0 || urlString.indexOf("&" + NAME, query) >= 0);
+    }
+
+    /**
+     * Removes the "tree" parameter from an API URL, for remote servers that don't understand it.
+     * 
+     * @param urlString
+     * @return the URL without a "tree" parameter
+     */
+    public static String remove(String urlString) {
+        int query = urlString.indexOf('?');
+        if (query < 0) {
+            return urlString;
+        }
+
+        StringBuilder result = new StringBuilder(urlString.substring(0, query));
+        char separator = '?';
+        for (String parameter : urlString.substring(query + 1).split("&")) {
+            if (parameter.length() == 0 || parameter.startsWith(NAME)) {
+                continue;
+            }
+            result.append(separator).append(parameter);
+            separator = '&';
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,49 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AdaptivePollScheduleTest {
+
+    private static void assertBetween(long min, long max, long delay) {
+        assertTrue("Delay " + delay + " not in [" + min + ", " + max + "]", delay >= min && delay <= max);
+    }
+
+    @Test
+    public void backsOffUpToTheMaximumInterval() {
+        AdaptivePollSchedule schedule = new AdaptivePollSchedule(2, 60);
+        for (int i = 0; i < 100; i++) {
+            assertBetween(1600, 2400, schedule.getDelay(PollSchedule.Phase.NOT_STARTED, 0, 10, -1));
+            assertBetween(6400, 9600, schedule.getDelay(PollSchedule.Phase.NOT_STARTED, 2, 10, -1));
+            assertBetween(55000, 65000, schedule.getDelay(PollSchedule.Phase.NOT_STARTED, 1000, 10, -1));
+        }
+    }
+
+    @Test
+    public void firstPollOfARunningBuildWaitsForItsExpectedDuration() {
+        AdaptivePollSchedule schedule = new AdaptivePollSchedule(2, 60);
+        for (int i = 0; i < 100; i++) {
+            assertBetween(35000, 45000, schedule.getDelay(PollSchedule.Phase.RUNNING, 0, 10, 40000));
+            // the estimate doesn't matter for the polls after that
+            assertBetween(3200, 4800, schedule.getDelay(PollSchedule.Phase.RUNNING, 1, 10, 40000));
+        }
+    }
+
+    @Test
+    public void firstPollOfARunningBuildIsNotTooFarOff() {
+        AdaptivePollSchedule schedule = new AdaptivePollSchedule(2, 60);
+        for (int i = 0; i < 100; i++) {
+            // five maximum intervals, even if the build is expected to take hours
+            assertBetween(295000, 305000, schedule.getDelay(PollSchedule.Phase.RUNNING, 0, 10, 3 * 3600000L));
+        }
+    }
+
+    @Test
+    public void jitterIsBoundedForLongDelays() {
+        AdaptivePollSchedule schedule = new AdaptivePollSchedule(600, 600);
+        for (int i = 0; i < 100; i++) {
+            assertBetween(595000, 605000, schedule.getDelay(PollSchedule.Phase.QUEUED, 0, 10, -1));
+        }
+    }
+}
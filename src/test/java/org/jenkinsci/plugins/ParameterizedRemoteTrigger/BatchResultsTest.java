@@ -0,0 +1,81 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import hudson.FilePath;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BatchResultsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FilePath       file;
+    private FilePath       partFile;
+
+    @Before
+    public void createFiles() {
+        FilePath dir = new FilePath(this.folder.getRoot());
+        this.file = dir.child("results.csv");
+        this.partFile = dir.child("results.csv.part");
+    }
+
+    @Test
+    public void keepsTheAcknowledgedRowsOfAnEarlierRun() throws Exception {
+        this.file.write("row,result,build\n1,SUCCESS,5\n2,FAILED,\n3,TRIGGERED,7\n", "UTF-8");
+
+        BatchResults results = new BatchResults(this.file);
+        assertTrue(results.isAcknowledged(1));
+        assertFalse(results.isAcknowledged(2));
+        assertTrue(results.isAcknowledged(3));
+        assertEquals(2, results.getAcknowledgedCount());
+        results.add(2, BatchResults.SUCCESS, 8);
+        results.close();
+
+        assertEquals("row,result,build\n1,SUCCESS,5\n3,TRIGGERED,7\n2,SUCCESS,8\n", this.file.readToString());
+        assertFalse(this.partFile.exists());
+    }
+
+    @Test
+    public void leavesTheResultFileAloneWhileTheBatchRuns() throws Exception {
+        this.file.write("row,result,build\n1,SUCCESS,5\n", "UTF-8");
+
+        BatchResults results = new BatchResults(this.file);
+        results.add(2, BatchResults.TRIGGERED, -1);
+
+        assertEquals("row,result,build\n1,SUCCESS,5\n", this.file.readToString());
+        assertEquals("row,result,build\n1,SUCCESS,5\n2,TRIGGERED,\n", this.partFile.readToString());
+        results.close();
+    }
+
+    @Test
+    public void startsFromWhatAnAbortedRunLeftBehind() throws Exception {
+        this.file.write("row,result,build\n1,SUCCESS,5\n", "UTF-8");
+        // the run was aborted while it was writing the result of row 3
+        this.partFile.write("row,result,build\n1,SUCCESS,5\n2,SUCCESS,6\n3,SUCC", "UTF-8");
+
+        BatchResults results = new BatchResults(this.file);
+        results.close();
+
+        assertEquals(2, results.getAcknowledgedCount());
+        assertEquals("row,result,build\n1,SUCCESS,5\n2,SUCCESS,6\n", this.file.readToString());
+    }
+
+    @Test
+    public void ignoresWhatARunLeftBehindBeforeItCopiedTheResultFile() throws Exception {
+        this.file.write("row,result,build\n1,SUCCESS,5\n2,SUCCESS,6\n", "UTF-8");
+        this.partFile.write("row,result,build\n1,SUCCESS,5\n", "UTF-8");
+
+        BatchResults results = new BatchResults(this.file);
+        results.close();
+
+        assertEquals(2, results.getAcknowledgedCount());
+        assertEquals("row,result,build\n1,SUCCESS,5\n2,SUCCESS,6\n", this.file.readToString());
+    }
+}
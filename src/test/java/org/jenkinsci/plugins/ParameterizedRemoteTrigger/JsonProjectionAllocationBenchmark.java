@@ -0,0 +1,117 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+
+import net.sf.json.JSONSerializer;
+
+/**
+ * Measures how many bytes reading a job's API response allocates, the way responses used to be read (line by line
+ * into a StringBuilder, then into a String) and with {@link JsonProjection}.
+ *
+ * This is not a test, so it isn't run by the build. Run its main method with the test classpath, on a JVM whose
+ * thread MXBean measures allocations (HotSpot does). The old way is measured both up to the String, and including
+ * the json-lib DOM that used to be built from it.
+ */
+public class JsonProjectionAllocationBenchmark {
+
+    private static final int                             WARMUP   = 20;
+    // json-lib's own parser allocates GBs for the larger responses, and takes minutes doing so
+    private static final int                             DOM_SIZE = 100;
+
+    private static final com.sun.management.ThreadMXBean THREADS  = (com.sun.management.ThreadMXBean)
+                                                                      ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException {
+        // the fields the status poller and the build step ask for
+        JsonProjection builds = JsonProjection.fromTree("builds[number,building,result,timestamp,estimatedDuration]");
+        JsonProjection nextBuildNumber = JsonProjection.fromTree("nextBuildNumber");
+
+        System.out.println("builds  payload  old read  old read + DOM  builds[5 fields]  nextBuildNumber");
+        for (int count : new int[] { 100, 1000, 5000 }) {
+            byte[] job = job(count);
+            boolean dom = count <= DOM_SIZE;
+            for (int i = 0; i < WARMUP; i++) {
+                readLines(job, false);
+                readLines(job, dom);
+                project(job, builds);
+                project(job, nextBuildNumber);
+            }
+            System.out.println(String.format("%6d %6d KB %7d KB %15s %14d KB %13d KB", count, job.length / 1024,
+                    readLines(job, false) / 1024, dom ? readLines(job, true) / 1024 + " KB" : "-",
+                    project(job, builds) / 1024, project(job, nextBuildNumber) / 1024));
+        }
+    }
+
+    private static long allocated() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @param dom
+     *            Whether to build the json-lib DOM from it as well
+     * @return bytes allocated reading the response the way it used to be read
+     */
+    private static long readLines(byte[] response, boolean dom) throws IOException {
+        long before = allocated();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(response), "UTF-8"));
+        StringBuilder body = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            body.append(line);
+        }
+        String json = body.toString();
+        if (json.length() == 0) {
+            throw new IllegalStateException("Empty response");
+        }
+        if (dom) {
+            JSONSerializer.toJSON(json);
+        }
+        return allocated() - before;
+    }
+
+    /**
+     * @return bytes allocated reading the response with the projection
+     */
+    private static long project(byte[] response, JsonProjection projection) throws IOException {
+        long before = allocated();
+        projection.parse(new InputStreamReader(new ByteArrayInputStream(response), "UTF-8"));
+        return allocated() - before;
+    }
+
+    /**
+     * @return a job as "api/json?depth=1" returns it, with the given number of builds of 10 parameters each
+     */
+    private static byte[] job(int builds) throws IOException {
+        StringBuilder json = new StringBuilder("{\"_class\":\"hudson.model.FreeStyleProject\",\"description\":"
+                + "\"a job\",\n\"builds\":[");
+        for (int i = builds; i > 0; i--) {
+            if (i != builds) {
+                json.append(",\n");
+            }
+            json.append("{\"actions\":[{\"causes\":[{\"shortDescription\":\"Started by remote host 10.0.0.1\","
+                    + "\"upstreamBuild\":").append(i).append("}]},{\"parameters\":[");
+            for (int p = 0; p < 10; p++) {
+                if (p > 0) {
+                    json.append(',');
+                }
+                json.append("{\"name\":\"PARAM_").append(p).append("\",\"value\":\"value with \\\"quotes\\\" and "
+                        + "\\u00e9 ").append(i).append("\"}");
+            }
+            json.append("]}],\"artifacts\":[],\"building\":").append(i == builds)
+                    .append(",\"description\":null,\"displayName\":\"#").append(i)
+                    .append("\",\"duration\":123456,\"estimatedDuration\":120000,\"executor\":null,"
+                            + "\"fullDisplayName\":\"job #").append(i)
+                    .append("\",\"id\":\"").append(i).append("\",\"keepLog\":false,\"number\":").append(i)
+                    .append(",\"queueId\":").append(1000 + i)
+                    .append(",\"result\":").append(i == builds ? "null" : "\"SUCCESS\"")
+                    .append(",\"timestamp\":1476000000000,\"url\":\"http://remote/job/job/").append(i)
+                    .append("/\",\"builtOn\":\"\",\"changeSet\":{\"items\":[],\"kind\":null}}");
+        }
+        json.append("],\"nextBuildNumber\":").append(builds + 1).append("}\n");
+        return json.toString().getBytes("UTF-8");
+    }
+}
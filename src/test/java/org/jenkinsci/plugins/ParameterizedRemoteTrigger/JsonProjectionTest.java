@@ -0,0 +1,180 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.junit.Test;
+
+public class JsonProjectionTest {
+
+    private static final String BUILD = "{\"actions\":[{\"causes\":[{\"shortDescription\":"
+            + "\"Started by \\\"x\\\"\"}]},{}],"
+            + "\"building\":false,\"number\":42,\"result\":\"SUCCESS\",\"duration\":3000000000,"
+            + "\"changeSet\":{\"items\":[{\"msg\":\"a [b] {c}\"}]}}";
+
+    private static JSONObject parse(String tree, String json) throws IOException {
+        return JsonProjection.fromTree(tree).parse(new StringReader(json));
+    }
+
+    @Test
+    public void keepsOnlyTheFieldsOfTheTree() throws IOException {
+        JSONObject build = parse("building,result", BUILD);
+
+        assertEquals(2, build.size());
+        assertEquals(Boolean.FALSE, build.get("building"));
+        assertEquals("SUCCESS", build.get("result"));
+    }
+
+    @Test
+    public void keepsNestedFieldsOfArrayElements() throws IOException {
+        JSONObject job = parse("builds[number,result]{0,2}", "{\"builds\":[{\"number\":3,\"result\":null,"
+                + "\"url\":\"u3\"},{\"number\":2,\"result\":\"FAILURE\",\"url\":\"u2\"}],\"name\":\"job\"}");
+
+        assertEquals(1, job.size());
+        JSONArray builds = job.getJSONArray("builds");
+        assertEquals(2, builds.size());
+        assertEquals(3, builds.getJSONObject(0).getInt("number"));
+        assertTrue(builds.getJSONObject(0).getJSONObject("result").isNullObject());
+        assertFalse(builds.getJSONObject(0).has("url"));
+        assertEquals("FAILURE", builds.getJSONObject(1).getString("result"));
+    }
+
+    @Test
+    public void emptyTreeKeepsEverything() throws IOException {
+        assertSame(JsonProjection.ALL, JsonProjection.fromTree(null));
+        assertSame(JsonProjection.ALL, JsonProjection.fromTree(" "));
+
+        JSONObject build = parse(null, BUILD);
+        assertEquals(6, build.size());
+        assertEquals(3000000000L, build.getLong("duration"));
+        assertEquals("Started by \"x\"", build.getJSONArray("actions").getJSONObject(0).getJSONArray("causes")
+                .getJSONObject(0).getString("shortDescription"));
+        assertEquals("a [b] {c}", build.getJSONObject("changeSet").getJSONArray("items").getJSONObject(0)
+                .getString("msg"));
+    }
+
+    @Test
+    public void keepsNestedArraysAndObjects() throws IOException {
+        JSONObject value = parse(null, "{\"m\":[[1,2],[],[{\"a\":[3,{\"b\":{}}]}]],\"o\":{\"p\":{\"q\":[]}}}");
+
+        JSONArray m = value.getJSONArray("m");
+        assertEquals(3, m.size());
+        assertEquals(2, m.getJSONArray(0).getInt(1));
+        assertTrue(m.getJSONArray(1).isEmpty());
+        JSONArray a = m.getJSONArray(2).getJSONObject(0).getJSONArray("a");
+        assertEquals(3, a.getInt(0));
+        assertTrue(a.getJSONObject(1).getJSONObject("b").isEmpty());
+        assertTrue(value.getJSONObject("o").getJSONObject("p").getJSONArray("q").isEmpty());
+    }
+
+    @Test
+    public void readsEscapesAndNumbers() throws IOException {
+        JSONObject value = parse(null, "{ \"s\" : \"caf\\u00e9\\n\\/\", \"i\" : -7, \"d\" : 1.5e3 }");
+
+        assertEquals("caf\u00e9\n/", value.getString("s"));
+        assertEquals(-7, value.getInt("i"));
+        assertEquals(1500.0, value.getDouble("d"), 0.0);
+    }
+
+    @Test
+    public void streamsArrayElementsToTheHandler() throws IOException {
+        final List<Object> cases = new ArrayList<Object>();
+        JsonProjection.ElementHandler handler = new JsonProjection.ElementHandler() {
+            public void reset() {
+                cases.clear();
+            }
+
+            public void element(Object element) {
+                cases.add(element);
+            }
+        };
+        JsonProjection projection = JsonProjection.fromTree("suites[cases[name,status]]").streaming(handler,
+                "suites", "cases");
+        String report = "{\"suites\":[{\"cases\":[{\"name\":\"a\",\"status\":\"PASSED\",\"stdout\":\"...\"},"
+                + "{\"name\":\"b\",\"status\":\"FAILED\"}]},{\"cases\":[{\"name\":\"c\",\"status\":\"SKIPPED\"}]}]}";
+
+        JSONObject parsed = projection.parse(new StringReader(report));
+
+        assertEquals(3, cases.size());
+        assertEquals("a", ((JSONObject) cases.get(0)).getString("name"));
+        assertFalse(((JSONObject) cases.get(0)).has("stdout"));
+        assertEquals("SKIPPED", ((JSONObject) cases.get(2)).getString("status"));
+        assertTrue(parsed.getJSONArray("suites").getJSONObject(0).getJSONArray("cases").isEmpty());
+
+        // a retried call starts over
+        projection.parse(new StringReader(report));
+        assertEquals(3, cases.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void streamingNeedsAFieldOfTheProjection() {
+        JsonProjection.fromTree("suites[name]").streaming(new JsonProjection.ElementHandler() {
+            public void reset() {
+            }
+
+            public void element(Object element) {
+            }
+        }, "suites", "cases");
+    }
+
+    @Test
+    public void rejectsMalformedTrees() {
+        for (String tree : new String[] { "builds[number", "builds{0,2", "builds]" }) {
+            try {
+                JsonProjection.fromTree(tree);
+                fail("Accepted " + tree);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void emptyResponseIsNull() throws IOException {
+        assertNull(parse("result", "  \n"));
+    }
+
+    @Test
+    public void rejectsResponsesThatAreNotObjects() {
+        for (String json : new String[] { "[1,2]", "<html></html>", "{\"result\":", "{\"result\":tru" }) {
+            try {
+                parse("result", json);
+                fail("Accepted " + json);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void readsResponsesLargerThanItsBuffer() throws IOException {
+        StringBuilder json = new StringBuilder("{\"log\":\"");
+        for (int i = 0; i < 100000; i++) {
+            json.append('x');
+        }
+        json.append("\",\"builds\":[");
+        for (int i = 0; i < 5000; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"number\":").append(i).append(",\"junk\":[1,{\"a\":\"]\"}]}");
+        }
+        json.append("],\"result\":\"SUCCESS\"}");
+
+        JSONObject parsed = parse("builds[number],result", json.toString());
+
+        assertEquals(5000, parsed.getJSONArray("builds").size());
+        assertEquals(4999, parsed.getJSONArray("builds").getJSONObject(4999).getInt("number"));
+        assertEquals("SUCCESS", parsed.getString("result"));
+        assertFalse(parsed.has("log"));
+    }
+}
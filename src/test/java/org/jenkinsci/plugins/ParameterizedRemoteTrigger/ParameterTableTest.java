@@ -0,0 +1,117 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ParameterTableTest {
+
+    private static ParameterTable table(String contents, String fileName) throws IOException {
+        return new ParameterTable(new ByteArrayInputStream(contents.getBytes("UTF-8")), fileName);
+    }
+
+    @Test
+    public void readsCsvRowsAgainstTheHeader() throws IOException {
+        ParameterTable table = table("SHARD, REGION\n1, eu\n\n2,us\n", "shards.csv");
+
+        assertEquals(Arrays.asList("SHARD=1", "REGION=eu"), table.next());
+        assertEquals(1, table.getRowNumber());
+        assertEquals(Arrays.asList("SHARD=2", "REGION=us"), table.next());
+        assertEquals(2, table.getRowNumber());
+        assertNull(table.next());
+        table.close();
+    }
+
+    @Test
+    public void readsQuotedCsvValues() throws IOException {
+        ParameterTable table = table("NAME,MESSAGE\n\"a, b\",\"say \"\"hi\"\"\"\nc,\"two\nlines\"\n", "rows.csv");
+
+        assertEquals(Arrays.asList("NAME=a, b", "MESSAGE=say \"hi\""), table.next());
+        assertEquals(Arrays.asList("NAME=c", "MESSAGE=two\nlines"), table.next());
+        assertNull(table.next());
+    }
+
+    @Test
+    public void rowsMayLeaveOutTheLastValues() throws IOException {
+        ParameterTable table = table("A,B,C\n1\n", "rows.csv");
+
+        assertEquals(Arrays.asList("A=1"), table.next());
+    }
+
+    @Test
+    public void rejectsRowsWithMoreValuesThanNames() throws IOException {
+        ParameterTable table = table("A,B\n1,2\n1,2,3\n", "rows.csv");
+        table.next();
+        try {
+            table.next();
+            fail("Accepted a row with too many values");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Line 3 "));
+        }
+    }
+
+    @Test
+    public void rejectsAnUnterminatedQuote() throws IOException {
+        ParameterTable table = table("A\n\"open\n", "rows.csv");
+        try {
+            table.next();
+            fail("Accepted an unterminated quote");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void csvNeedsAHeader() throws IOException {
+        table("\n\n", "rows.csv");
+    }
+
+    @Test
+    public void readsJsonLines() throws IOException {
+        ParameterTable table = table("{\"SHARD\":1,\"REGION\":\"eu\"}\n\n{\"SHARD\":2}\n", "shards.JSONL");
+
+        List<String> first = table.next();
+        assertEquals(new HashSet<String>(Arrays.asList("SHARD=1", "REGION=eu")), new HashSet<String>(first));
+        assertEquals(Arrays.asList("SHARD=2"), table.next());
+        assertEquals(2, table.getRowNumber());
+        assertNull(table.next());
+    }
+
+    @Test
+    public void rejectsJsonLinesThatAreNotObjects() throws IOException {
+        ParameterTable table = table("{\"A\":1}\nnot json\n", "rows.json");
+        table.next();
+        try {
+            table.next();
+            fail("Accepted a line that is not JSON");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Line 2 "));
+        }
+    }
+
+    @Test
+    public void readsOneRowAtATime() throws IOException {
+        StringBuilder csv = new StringBuilder("ROW\n");
+        for (int i = 1; i <= 10000; i++) {
+            csv.append(i).append('\n');
+        }
+        ParameterTable table = table(csv.toString(), "rows.csv");
+
+        int rows = 0;
+        List<String> row;
+        while ((row = table.next()) != null) {
+            rows++;
+            assertEquals(Arrays.asList("ROW=" + rows), row);
+        }
+        assertEquals(10000, rows);
+    }
+}
@@ -0,0 +1,69 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RemoteArtifactDownloaderTest {
+
+    @Test
+    public void singleStarStaysInOneDirectory() {
+        assertTrue(RemoteArtifactDownloader.matches("target/*.jar", "target/plugin.jar"));
+        assertFalse(RemoteArtifactDownloader.matches("target/*.jar", "target/lib/dependency.jar"));
+        assertFalse(RemoteArtifactDownloader.matches("target/*.jar", "target/plugin.jar.sha1"));
+    }
+
+    @Test
+    public void doubleStarCrossesDirectories() {
+        assertTrue(RemoteArtifactDownloader.matches("**/*.xml", "report.xml"));
+        assertTrue(RemoteArtifactDownloader.matches("**/*.xml", "a/b/report.xml"));
+        assertTrue(RemoteArtifactDownloader.matches("reports/**", "reports/a/b.html"));
+        assertFalse(RemoteArtifactDownloader.matches("reports/**", "other/reports/b.html"));
+    }
+
+    @Test
+    public void questionMarkIsOneCharacter() {
+        assertTrue(RemoteArtifactDownloader.matches("log?.txt", "log1.txt"));
+        assertFalse(RemoteArtifactDownloader.matches("log?.txt", "log10.txt"));
+        assertFalse(RemoteArtifactDownloader.matches("a?b", "a/b"));
+    }
+
+    @Test
+    public void anyOfSeveralPatterns() {
+        assertTrue(RemoteArtifactDownloader.matches("target/*.jar, reports/**", "reports/index.html"));
+        assertTrue(RemoteArtifactDownloader.matches("target/*.jar, reports/**", "target/a.jar"));
+        assertFalse(RemoteArtifactDownloader.matches("target/*.jar, reports/**", "build.log"));
+        assertFalse(RemoteArtifactDownloader.matches(" , ", "build.log"));
+    }
+
+    @Test
+    public void otherCharactersAreTakenLiterally() {
+        assertTrue(RemoteArtifactDownloader.matches("a+b(1).[x]", "a+b(1).[x]"));
+        assertFalse(RemoteArtifactDownloader.matches("a.b", "axb"));
+    }
+
+    @Test
+    public void normalizesPathsInsideTheTarget() {
+        assertEquals("a/b.txt", RemoteArtifactDownloader.normalize("a/b.txt"));
+        assertEquals("a/c.txt", RemoteArtifactDownloader.normalize("a/./b/../c.txt"));
+        assertEquals("a/b.txt", RemoteArtifactDownloader.normalize("a//b.txt"));
+        assertEquals("a/b.txt", RemoteArtifactDownloader.normalize("a\\b.txt"));
+        assertEquals("..a/b..", RemoteArtifactDownloader.normalize("..a/b.."));
+    }
+
+    @Test
+    public void rejectsPathsOutsideTheTarget() {
+        assertNull(RemoteArtifactDownloader.normalize("../secret"));
+        assertNull(RemoteArtifactDownloader.normalize("a/../../secret"));
+        assertNull(RemoteArtifactDownloader.normalize("a\\..\\..\\secret"));
+        assertNull(RemoteArtifactDownloader.normalize("/etc/passwd"));
+        assertNull(RemoteArtifactDownloader.normalize("\\\\server\\share"));
+        assertNull(RemoteArtifactDownloader.normalize("C:\\Windows\\win.ini"));
+        assertNull(RemoteArtifactDownloader.normalize("c:relative"));
+        assertNull(RemoteArtifactDownloader.normalize("a/.."));
+        assertNull(RemoteArtifactDownloader.normalize(""));
+    }
+}
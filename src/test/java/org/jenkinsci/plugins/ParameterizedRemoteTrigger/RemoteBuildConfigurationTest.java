@@ -0,0 +1,169 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import hudson.model.Cause;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersAction;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.Result;
+import hudson.model.StringParameterDefinition;
+import hudson.model.StringParameterValue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.json.JSONObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class RemoteBuildConfigurationTest {
+
+    private static final int BUILDS = 16;
+
+    @Rule
+    public JenkinsRule       j      = new JenkinsRule();
+
+    private StubServer       stub;
+
+    @Before
+    public void startStub() throws IOException {
+        this.stub = new StubServer();
+    }
+
+    @After
+    public void stopStub() {
+        this.stub.stop();
+    }
+
+    /**
+     * Many builds of one job run the same (shared) build step at the same time, each with a job name, token and
+     * parameters of its own: every request the remote server gets must carry those of exactly one build.
+     */
+    @Test
+    public void concurrentBuildsOfOneBuildStepSendTheirOwnRequests() throws Exception {
+        JSONObject noAuth = JSONObject.fromObject("{\"authenticationMode\":{\"value\":\"none\"}}");
+        j.jenkins.getDescriptorByType(RemoteBuildConfiguration.DescriptorImpl.class).setRemoteSites(
+                Collections.singletonList(new RemoteJenkinsServer(this.stub.getAddress(), "stub", false, false,
+                        noAuth, 0, 0, 0, 0, 0, 0)));
+
+        RemoteBuildConfiguration step = new RemoteBuildConfiguration("stub", false, "job-$ID", "token-$ID",
+                "ID=$ID\nFIXED=a b", null, null, false, false, false, 10, false, new FixedPollSchedule(), 0, null, 0,
+                null, "", false, null, false);
+
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("ID", "")));
+        project.setConcurrentBuild(true);
+        project.getBuildersList().add(step);
+        j.jenkins.setNumExecutors(BUILDS);
+
+        List<Future<FreeStyleBuild>> builds = new ArrayList<Future<FreeStyleBuild>>();
+        for (int i = 0; i < BUILDS; i++) {
+            builds.add(project.scheduleBuild2(0, new Cause.UserIdCause(), new ParametersAction(
+                    new StringParameterValue("ID", String.valueOf(i)))));
+        }
+        for (Future<FreeStyleBuild> build : builds) {
+            j.assertBuildStatus(Result.SUCCESS, build.get());
+        }
+
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < BUILDS; i++) {
+            expected.add("GET /job/job-" + i + "/api/json/?tree=nextBuildNumber");
+            expected.add("POST /job/job-" + i + "/buildWithParameters?token=token-" + i + "&ID=" + i
+                    + "&FIXED=a%20b&delay=0");
+        }
+        List<String> received = this.stub.getRequests();
+        Collections.sort(expected);
+        Collections.sort(received);
+        assertEquals(expected, received);
+
+        // otherwise the builds did not run at the same time, and nothing was tested
+        assertTrue("Most requests at once: " + this.stub.getMostInFlight(), this.stub.getMostInFlight() > 1);
+    }
+
+    /**
+     * A remote server that answers every job with a next build number, and takes every trigger. It remembers what it
+     * was asked, and answers slowly enough for the requests of concurrent builds to overlap.
+     */
+    private static class StubServer implements HttpHandler {
+        private final HttpServer      server;
+        private final ExecutorService executor      = Executors.newCachedThreadPool();
+        private final List<String>    requests      = Collections.synchronizedList(new ArrayList<String>());
+        private final AtomicInteger   inFlight      = new AtomicInteger();
+        private final AtomicInteger   mostInFlight  = new AtomicInteger();
+
+        StubServer() throws IOException {
+            this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            this.server.createContext("/", this);
+            this.server.setExecutor(this.executor);
+            this.server.start();
+        }
+
+        String getAddress() {
+            return "http://127.0.0.1:" + this.server.getAddress().getPort();
+        }
+
+        List<String> getRequests() {
+            synchronized (this.requests) {
+                return new ArrayList<String>(this.requests);
+            }
+        }
+
+        int getMostInFlight() {
+            return this.mostInFlight.get();
+        }
+
+        void stop() {
+            this.server.stop(0);
+            this.executor.shutdownNow();
+        }
+
+        public void handle(HttpExchange exchange) throws IOException {
+            int now = this.inFlight.incrementAndGet();
+            synchronized (this.mostInFlight) {
+                this.mostInFlight.set(Math.max(this.mostInFlight.get(), now));
+            }
+            try {
+                String query = exchange.getRequestURI().getRawQuery();
+                this.requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getRawPath()
+                        + (query == null ? "" : "?" + query));
+                Thread.sleep(50);
+
+                if (exchange.getRequestMethod().equals("POST")) {
+                    exchange.getResponseHeaders().add("Location", getAddress() + "/queue/item/1/");
+                    exchange.sendResponseHeaders(201, -1);
+                } else {
+                    byte[] body = "{\"nextBuildNumber\":1}".getBytes("UTF-8");
+                    exchange.getResponseHeaders().add("Content-Type", "application/json;charset=UTF-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(body);
+                    out.close();
+                }
+            } catch (InterruptedException e) {
+                exchange.sendResponseHeaders(503, -1);
+            } finally {
+                this.inFlight.decrementAndGet();
+                exchange.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import hudson.FilePath;
+
+import java.util.Collections;
+
+import net.sf.json.JSONObject;
+
+import org.junit.Test;
+
+public class RemoteBuildRequestTest {
+
+    private static RemoteJenkinsServer server(boolean buildTokenRoot, boolean postParameters) throws Exception {
+        return new RemoteJenkinsServer("http://remote.example:8080", "remote", buildTokenRoot, postParameters,
+                new JSONObject(), 0, 0, 0, 0, 0, 0);
+    }
+
+    private static RemoteBuildRequest request(RemoteJenkinsServer server, String jobName, String token,
+            ParameterTemplate.Resolved parameters) {
+        return new RemoteBuildRequest(server, jobName, token, parameters, Collections.<String, FilePath> emptyMap(),
+                !parameters.isEmpty());
+    }
+
+    @Test
+    public void triggersParameterizedJobs() throws Exception {
+        RemoteBuildRequest request = request(server(false, false), "my job", "secret",
+                ParameterTemplate.compile("A=1\nB=x y").resolve(null));
+
+        assertEquals("http://remote.example:8080/job/my%20job/buildWithParameters?token=secret&A=1&B=x%20y&delay=0",
+                request.getTriggerUrl());
+        assertEquals("http://remote.example:8080/job/my%20job", request.getJobUrl());
+        assertNull(request.getTriggerEntity(System.out));
+    }
+
+    @Test
+    public void triggersThroughTheBuildTokenRoot() throws Exception {
+        RemoteBuildRequest request = request(server(true, false), "job", "", ParameterTemplate.compile("")
+                .resolve(null));
+
+        assertEquals("http://remote.example:8080/buildByToken/build?job=job&delay=0", request.getTriggerUrl());
+    }
+
+    @Test
+    public void postsParametersInTheBody() throws Exception {
+        RemoteBuildRequest request = request(server(false, true), "job", "", ParameterTemplate.compile("A=1")
+                .resolve(null));
+
+        assertEquals("http://remote.example:8080/job/job/buildWithParameters?delay=0", request.getTriggerUrl());
+        assertTrue(request.getTriggerEntity(System.out) instanceof FormParametersEntity);
+    }
+}
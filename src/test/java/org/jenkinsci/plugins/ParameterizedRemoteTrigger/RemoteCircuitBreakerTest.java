@@ -0,0 +1,126 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class RemoteCircuitBreakerTest {
+
+    private static RemoteCircuitBreaker openBreaker() {
+        RemoteCircuitBreaker breaker = new RemoteCircuitBreaker();
+        for (int i = 0; i < RemoteCircuitBreaker.FAILURE_THRESHOLD; i++) {
+            breaker.onFailure();
+        }
+        return breaker;
+    }
+
+    @Test
+    public void opensAfterTooManyFailuresInARow() {
+        RemoteCircuitBreaker breaker = new RemoteCircuitBreaker();
+        for (int i = 0; i < RemoteCircuitBreaker.FAILURE_THRESHOLD - 1; i++) {
+            breaker.onFailure();
+        }
+        assertEquals(RemoteCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure();
+        assertEquals(RemoteCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void successStartsTheCountOver() {
+        RemoteCircuitBreaker breaker = new RemoteCircuitBreaker();
+        for (int i = 0; i < RemoteCircuitBreaker.FAILURE_THRESHOLD - 1; i++) {
+            breaker.onFailure();
+        }
+        breaker.onSuccess();
+        for (int i = 0; i < RemoteCircuitBreaker.FAILURE_THRESHOLD - 1; i++) {
+            breaker.onFailure();
+        }
+
+        assertEquals(RemoteCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void callsGiveUpOnAnOpenBreaker() throws InterruptedException {
+        RemoteCircuitBreaker breaker = openBreaker();
+
+        long started = System.currentTimeMillis();
+        try {
+            breaker.acquire(50);
+            fail("The call went through an open breaker");
+        } catch (RemoteCircuitBreaker.CircuitOpenException e) {
+            // expected
+        }
+        assertTrue(System.currentTimeMillis() - started < RemoteCircuitBreaker.MIN_OPEN_TIME / 2);
+    }
+
+    @Test
+    public void letsOneTrialCallThroughOnceTheOpenTimeIsOver() throws Exception {
+        RemoteCircuitBreaker breaker = openBreaker();
+
+        // the open time is jittered between half of it and all of it
+        breaker.acquire(RemoteCircuitBreaker.MIN_OPEN_TIME + 1000);
+        assertEquals(RemoteCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse("Only one trial call at a time", breaker.tryAcquire());
+
+        breaker.onSuccess();
+        assertEquals(RemoteCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void aFailedTrialCallOpensTheBreakerAgain() throws Exception {
+        RemoteCircuitBreaker breaker = openBreaker();
+        breaker.acquire(RemoteCircuitBreaker.MIN_OPEN_TIME + 1000);
+
+        breaker.onFailure();
+
+        assertEquals(RemoteCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void failuresOfCallsMadeBeforeItOpenedDontKeepItOpenLonger() {
+        RemoteCircuitBreaker breaker = openBreaker();
+
+        breaker.onFailure();
+        breaker.onFailure();
+
+        assertEquals(RemoteCircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.toString().contains("times opened=1"));
+    }
+
+    @Test
+    public void retriesAreLimitedByTheBudget() {
+        RemoteCircuitBreaker breaker = new RemoteCircuitBreaker();
+
+        int allowed = 0;
+        for (int i = 0; i < 100; i++) {
+            if (breaker.tryAcquireRetry()) {
+                allowed++;
+            }
+        }
+
+        // the burst, plus whatever refilled while looping
+        assertTrue("Allowed " + allowed, allowed >= 10 && allowed <= 11);
+        assertTrue(breaker.toString().contains("retries over budget=" + (100 - allowed)));
+    }
+
+    @Test
+    public void retryDelaysBackOffUpToTheCap() {
+        RemoteCircuitBreaker breaker = new RemoteCircuitBreaker();
+        for (int i = 0; i < 1000; i++) {
+            long first = breaker.getRetryDelay(1);
+            assertTrue(first >= 0 && first < 500);
+            long third = breaker.getRetryDelay(3);
+            assertTrue(third >= 0 && third < 2000);
+            long late = breaker.getRetryDelay(100);
+            assertTrue(late >= 0 && late < 30000);
+        }
+    }
+}
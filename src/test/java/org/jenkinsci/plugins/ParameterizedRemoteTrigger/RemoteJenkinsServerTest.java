@@ -0,0 +1,68 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import net.sf.json.JSONObject;
+
+import org.junit.Test;
+
+public class RemoteJenkinsServerTest {
+
+    private static RemoteJenkinsServer server(String address) throws Exception {
+        return server(address, 0);
+    }
+
+    private static RemoteJenkinsServer server(String address, int maxOutstandingBuilds) throws Exception {
+        return new RemoteJenkinsServer(address, "remote", false, false, new JSONObject(), 0, 0, 0,
+                maxOutstandingBuilds, 0, 0);
+    }
+
+    @Test
+    public void savingKeepsTheCircuitBreaker() throws Exception {
+        RemoteJenkinsServer previous = server("http://remote.example:8080");
+        RemoteCircuitBreaker breaker = previous.getCircuitBreaker();
+        RemoteJenkinsServer successor = server("http://remote.example:8080");
+
+        previous.retire(successor);
+
+        assertSame(breaker, successor.getCircuitBreaker());
+    }
+
+    @Test
+    public void buildsOfTheReplacedEntryShareTheNewCircuitBreaker() throws Exception {
+        RemoteJenkinsServer previous = server("http://remote.example:8080");
+        RemoteJenkinsServer successor = server("http://remote.example:8080");
+
+        previous.retire(successor);
+
+        assertSame(successor.getCircuitBreaker(), previous.getCircuitBreaker());
+    }
+
+    @Test
+    public void anotherAddressGetsAnotherCircuitBreaker() throws Exception {
+        RemoteJenkinsServer previous = server("http://remote.example:8080");
+        RemoteCircuitBreaker breaker = previous.getCircuitBreaker();
+        RemoteJenkinsServer successor = server("http://other.example:8080");
+
+        previous.retire(successor);
+
+        assertNotSame(breaker, successor.getCircuitBreaker());
+    }
+
+    @Test
+    public void savingKeepsCountingTheOutstandingBuilds() throws Exception {
+        RemoteJenkinsServer previous = server("http://remote.example:8080", 1);
+        previous.getRequestLimiter().acquireBuildSlot("a", 0);
+        RemoteJenkinsServer successor = server("http://remote.example:8080", 2);
+
+        previous.retire(successor);
+
+        // one slot is still held, so only one of the two new ones is free
+        assertNotNull(successor.getRequestLimiter().acquireBuildSlot("b", 0));
+        assertNull(successor.getRequestLimiter().acquireBuildSlot("c", 0));
+        assertSame(successor.getRequestLimiter(), previous.getRequestLimiter());
+    }
+}
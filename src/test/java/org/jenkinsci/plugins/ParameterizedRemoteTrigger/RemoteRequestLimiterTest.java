@@ -0,0 +1,207 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class RemoteRequestLimiterTest {
+
+    private static final long TIMEOUT = 10000;
+
+    /**
+     * Queues a trigger for a build slot on a thread of its own. Once it gets the slot, it records the job in
+     * "order" and gives the slot back straight away.
+     */
+    private static Thread queueTrigger(final RemoteRequestLimiter limiter, final String localJob,
+            final List<String> order) throws InterruptedException {
+        int queued = limiter.getStats().getQueuedTriggers();
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    RemoteRequestLimiter.BuildSlot slot = limiter.acquireBuildSlot(localJob, TIMEOUT);
+                    if (slot != null) {
+                        order.add(localJob);
+                        slot.release();
+                    }
+                } catch (InterruptedException e) {
+                    // the test is over
+                }
+            }
+        });
+        thread.start();
+
+        // the order of the queue is what is being tested, so wait until the trigger is in it
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (limiter.getStats().getQueuedTriggers() == queued && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        return thread;
+    }
+
+    @Test
+    public void aFreedSlotGoesToTheJobHoldingTheFewest() throws InterruptedException {
+        RemoteRequestLimiter limiter = new RemoteRequestLimiter(0, 0, 2);
+        RemoteRequestLimiter.BuildSlot first = limiter.acquireBuildSlot("busy", 0);
+        RemoteRequestLimiter.BuildSlot second = limiter.acquireBuildSlot("busy", 0);
+        assertNotNull(first);
+        assertNotNull(second);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        Thread busy = queueTrigger(limiter, "busy", order);
+        Thread quiet = queueTrigger(limiter, "quiet", order);
+
+        first.release();
+        quiet.join(TIMEOUT);
+        second.release();
+        busy.join(TIMEOUT);
+
+        // "busy" was queued first, but still held a slot when the other one came free
+        assertEquals(Arrays.asList("quiet", "busy"), order);
+    }
+
+    @Test
+    public void jobsHoldingAsManySlotsAreServedInOrder() throws InterruptedException {
+        RemoteRequestLimiter limiter = new RemoteRequestLimiter(0, 0, 1);
+        RemoteRequestLimiter.BuildSlot held = limiter.acquireBuildSlot("a", 0);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        Thread b = queueTrigger(limiter, "b", order);
+        Thread c = queueTrigger(limiter, "c", order);
+        Thread d = queueTrigger(limiter, "d", order);
+
+        held.release();
+        b.join(TIMEOUT);
+        c.join(TIMEOUT);
+        d.join(TIMEOUT);
+
+        assertEquals(Arrays.asList("b", "c", "d"), order);
+        assertEquals(0, limiter.getStats().getOutstandingBuilds());
+    }
+
+    @Test
+    public void givesUpWhenNoSlotComesFreeInTime() throws InterruptedException {
+        RemoteRequestLimiter limiter = new RemoteRequestLimiter(0, 0, 1);
+        limiter.acquireBuildSlot("a", 0);
+
+        assertNull(limiter.acquireBuildSlot("b", 50));
+        assertEquals(0, limiter.getStats().getQueuedTriggers());
+    }
+
+    @Test
+    public void releasingASlotTwiceFreesItOnce() throws InterruptedException {
+        RemoteRequestLimiter limiter = new RemoteRequestLimiter(0, 0, 2);
+        RemoteRequestLimiter.BuildSlot slot = limiter.acquireBuildSlot("a", 0);
+        limiter.acquireBuildSlot("a", 0);
+
+        slot.release();
+        slot.release();
+
+        assertEquals(1, limiter.getStats().getOutstandingBuilds());
+    }
+
+    @Test
+    public void noLimitMeansNoWaiting() throws Exception {
+        RemoteRequestLimiter limiter = new RemoteRequestLimiter(0, 0, 0);
+        for (int i = 0; i < 100; i++) {
+            assertNotNull(limiter.acquireBuildSlot("a", 0));
+            limiter.acquireRequest(RemoteBuildDeadline.NONE);
+        }
+        assertEquals(100, limiter.getStats().getRequestsInFlight());
+    }
+
+    @Test
+    public void limitsTheRequestsInFlight() throws InterruptedException {
+        final RemoteRequestLimiter limiter = new RemoteRequestLimiter(3, 0, 0);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger mostInFlight = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(20);
+
+        for (int i = 0; i < 20; i++) {
+            new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 20; j++) {
+                            limiter.acquireRequest(RemoteBuildDeadline.NONE);
+                            try {
+                                int now = inFlight.incrementAndGet();
+                                synchronized (mostInFlight) {
+                                    mostInFlight.set(Math.max(mostInFlight.get(), now));
+                                }
+                                Thread.sleep(1);
+                            } finally {
+                                inFlight.decrementAndGet();
+                                limiter.releaseRequest();
+                            }
+                        }
+                    } catch (Exception e) {
+                        // the test is over
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        assertTrue(done.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertTrue("Most in flight: " + mostInFlight.get(), mostInFlight.get() <= 3);
+        assertEquals(0, limiter.getStats().getRequestsInFlight());
+    }
+
+    @Test
+    public void spacesOutRequests() throws Exception {
+        RemoteRequestLimiter limiter = new RemoteRequestLimiter(0, 20, 0);
+
+        long started = System.currentTimeMillis();
+        for (int i = 0; i < 11; i++) {
+            limiter.acquireRequest(RemoteBuildDeadline.NONE);
+            limiter.releaseRequest();
+        }
+
+        // the first goes straight away, the next ten 50 ms apart
+        assertTrue(System.currentTimeMillis() - started >= 450);
+    }
+
+    @Test
+    public void givesUpWaitingForARequestAtTheDeadline() throws Exception {
+        RemoteRequestLimiter limiter = new RemoteRequestLimiter(1, 0, 0);
+        limiter.acquireRequest(RemoteBuildDeadline.NONE);
+
+        long started = System.currentTimeMillis();
+        try {
+            limiter.acquireRequest(new RemoteBuildDeadline(50));
+            fail("Sent a request past the deadline");
+        } catch (RemoteBuildDeadline.DeadlineExceededException e) {
+            // expected
+        }
+        assertTrue(System.currentTimeMillis() - started < TIMEOUT);
+        assertEquals(1, limiter.getStats().getRequestsInFlight());
+    }
+
+    @Test
+    public void raisedLimitsLetWaitingTriggersThrough() throws InterruptedException {
+        RemoteRequestLimiter limiter = new RemoteRequestLimiter(0, 0, 1);
+        limiter.acquireBuildSlot("a", 0);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        Thread b = queueTrigger(limiter, "b", order);
+
+        limiter.setLimits(0, 0, 2);
+        b.join(TIMEOUT);
+
+        assertEquals(Arrays.asList("b"), order);
+        // the slot held before the limits changed still counts
+        assertEquals(1, limiter.getStats().getOutstandingBuilds());
+    }
+}
@@ -0,0 +1,44 @@
+package org.jenkinsci.plugins.ParameterizedRemoteTrigger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TreeParameterTest {
+
+    @Test
+    public void addsTheTreeEncoded() {
+        assertEquals("http://host/job/a/api/json?tree=builds%5Bnumber%2Cresult%5D%7B0%2C5%7D",
+                TreeParameter.add("http://host/job/a/api/json", "builds[number,result]{0,5}"));
+        assertEquals("http://host/job/a/api/json?depth=1&tree=result",
+                TreeParameter.add("http://host/job/a/api/json?depth=1", "result"));
+    }
+
+    @Test
+    public void findsTheTreeOnlyInTheQuery() {
+        assertTrue(TreeParameter.isPresent("http://host/api/json?tree=result"));
+        assertTrue(TreeParameter.isPresent("http://host/api/json?depth=1&tree=result"));
+        assertFalse(TreeParameter.isPresent("http://host/api/json"));
+        assertFalse(TreeParameter.isPresent("http://host/api/json?subtree=result"));
+        assertFalse(TreeParameter.isPresent("http://host/job/tree=x/api/json?depth=1"));
+    }
+
+    @Test
+    public void removesOnlyTheTree() {
+        assertEquals("http://host/api/json", TreeParameter.remove("http://host/api/json?tree=result"));
+        assertEquals("http://host/api/json?a=1&b=2", TreeParameter.remove("http://host/api/json?a=1&tree=x&b=2"));
+        assertEquals("http://host/api/json?subtree=x", TreeParameter.remove("http://host/api/json?subtree=x"));
+        assertEquals("http://host/api/json", TreeParameter.remove("http://host/api/json"));
+    }
+
+    @Test
+    public void removeUndoesAdd() {
+        String url = "http://host/job/a/api/json?depth=1";
+        String withTree = TreeParameter.add(url, "builds[number]");
+
+        assertTrue(TreeParameter.isPresent(withTree));
+        assertEquals(url, TreeParameter.remove(withTree));
+    }
+}